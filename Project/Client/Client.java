@@ -1,5 +1,6 @@
 package Project.Client;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -20,10 +21,12 @@ import Project.Client.Interfaces.IMessageEvents;
 import Project.Client.Interfaces.IPhaseEvent;
 import Project.Client.Interfaces.IPointsEvent;
 import Project.Client.Interfaces.IReadyEvent;
+import Project.Client.Interfaces.IReplayEvents;
 import Project.Client.Interfaces.IAwarenessEvent;
 import Project.Client.Interfaces.IRoomEvents;
 import Project.Client.Interfaces.ITimeEvents;
 import Project.Client.Interfaces.ITurnEvent;
+import Project.Common.ClientInfo;
 import Project.Common.Command;
 import Project.Common.ConnectionPayload;
 import Project.Common.Constants;
@@ -31,18 +34,23 @@ import Project.Common.GameMode;
 import Project.Common.GameModePayload;
 import Project.Common.AwayPayload;
 import Project.Common.LoggerUtil;
+import Project.Common.MatchReplay;
+import Project.Common.Metrics;
 import Project.Common.Payload;
 import Project.Common.PayloadType;
 import Project.Common.Phase;
 import Project.Common.PointsPayload;
 import Project.Common.ReadyPayload;
 import Project.Common.RoomAction;
+import Project.Common.RoomMembersPayload;
 import Project.Common.RoomResultPayload;
 import Project.Common.GameOverPayload;
 import Project.Common.TextFX;
 import Project.Common.User;
 import Project.Common.TextFX.Color;
 import Project.Common.TimerPayload;
+import Project.Common.TraceContext;
+import Project.Common.WhisperPayload;
 
 /**
  * Demoing bi-directional communication between client and server in a
@@ -73,6 +81,25 @@ public enum Client {
     private Phase currentPhase = Phase.READY;
     private GameMode currentGameMode = GameMode.RPS_3;
     private boolean currentCooldownEnabled = false;
+    // session resume (reconnect after a dropped connection without a full resync)
+    private volatile String sessionToken = null;
+    private String lastHost = null;
+    private int lastPort = -1;
+    // keeps trying for longer than a server restart plus its resume grace window
+    // (restored seats are only claimable with our token)
+    private final long RESUME_WINDOW_MS = 120_000;
+    private final long RESUME_BACKOFF_MS = 1000;
+    private final long RESUME_MAX_BACKOFF_MS = 5000;
+    // replay playback (see /replay): speed limit and the longest pause played
+    // (before the speed-up) so idle stretches between games don't stall it
+    private final int MAX_REPLAY_SPEED = 64;
+    private final long MAX_REPLAY_PAUSE_MS = 5000;
+    private volatile Thread replayThread = null;
+    // per-hop latency of traced Payloads from the server (microseconds); see /latency
+    private final Metrics.Histogram traceServerToClient = Metrics.INSTANCE
+            .histogram("trace.client.server_to_client_us");
+    private final Metrics.Histogram[] traceEndToEnd = Metrics.INSTANCE.histograms("trace.client.end_to_end_us.",
+            PayloadType.values());
 
     // callback that updates the UI
     private static List<IClientEvents> events = new ArrayList<IClientEvents>();
@@ -128,6 +155,7 @@ public enum Client {
      */
     @Deprecated
     private boolean connect(String address, int port) {
+        stopReplay();
         try {
             server = new Socket(address, port);
             // channel to send to server
@@ -154,7 +182,13 @@ public enum Client {
      * @return true if connection was successful
      */
     public boolean connect(String address, int port, String username) {
+        stopReplay();
+        if (!address.equals(lastHost) || port != lastPort) {
+            sessionToken = null; // the token only means something to the server that issued it
+        }
         myUser.setClientName(username);
+        lastHost = address;
+        lastPort = port;
         try {
             server = new Socket(address, port);
             // channel to send to server
@@ -287,6 +321,52 @@ public enum Client {
             } else if (text.equalsIgnoreCase(Command.READY.command)) {
                 sendReady();
                 wasCommand = true;
+            } else if (text.startsWith(Command.WHISPER.command + Constants.SINGLE_SPACE)) {
+                // format: /w name message
+                String[] parts = text.trim().replaceAll(" +", " ").split(" ", 3);
+                if (parts.length < 3 || parts[2].isBlank()) {
+                    LoggerUtil.INSTANCE
+                            .warning(TextFX.colorize("Usage: /w <name> <message>", Color.RED));
+                    return true;
+                }
+                sendWhisper(parts[1], parts[2]);
+                wasCommand = true;
+            } else if (text.equalsIgnoreCase(Command.LATENCY.command)) {
+                StringBuilder message = new StringBuilder("Latency (microseconds):");
+                Metrics.INSTANCE.snapshot(false).getHistograms().forEach((name, histogram) -> {
+                    if (name.startsWith("trace.client.") && histogram.getCount() > 0) {
+                        message.append("\n").append(name.substring("trace.client.".length())).append(' ')
+                                .append(histogram);
+                    }
+                });
+                LoggerUtil.INSTANCE.info(TextFX.colorize(message.toString(), Color.CYAN));
+                wasCommand = true;
+            } else if (text.trim().equalsIgnoreCase(Command.REPLAY.command)
+                    || text.startsWith(Command.REPLAY.command + Constants.SINGLE_SPACE)) {
+                // format: /replay file [speed] [round or game.round], or /replay stop
+                String[] parts = text.trim().replaceAll(" +", " ").split(" ");
+                if (parts.length > 1 && "stop".equalsIgnoreCase(parts[1])) {
+                    stopReplay();
+                    return true;
+                }
+                try {
+                    if (parts.length < 2) {
+                        throw new NumberFormatException("missing file");
+                    }
+                    int speed = parts.length > 2 ? Integer.parseInt(parts[2]) : 1;
+                    int session = 0;
+                    int round = 0;
+                    if (parts.length > 3) {
+                        String[] position = parts[3].split("\\.", 2);
+                        session = position.length > 1 ? Integer.parseInt(position[0]) : 1;
+                        round = Integer.parseInt(position[position.length - 1]);
+                    }
+                    startReplay(new File(parts[1]), speed, session, round);
+                } catch (NumberFormatException e) {
+                    LoggerUtil.INSTANCE.warning(
+                            TextFX.colorize("Usage: /replay <file> [speed 1-64] [round or game.round]", Color.RED));
+                }
+                wasCommand = true;
             } else if (text.startsWith(Command.EXAMPLE_TURN.command)) {
                 text = text.replace(Command.EXAMPLE_TURN.command, "").trim();
 
@@ -364,6 +444,20 @@ public enum Client {
         sendToServer(payload);
     }
 
+    /**
+     * Sends a private message to a single client
+     * 
+     * @param targetName name of the client to whisper to
+     * @param message
+     * @throws IOException
+     */
+    public void sendWhisper(String targetName, String message) throws IOException {
+        WhisperPayload wp = new WhisperPayload();
+        wp.setTargetName(targetName);
+        wp.setMessage(message);
+        sendToServer(wp);
+    }
+
     /**
      * Sends a reverse message action to the server
      * 
@@ -424,6 +518,7 @@ public enum Client {
      * @throws IOException
      */
     public void sendDisconnect() throws IOException {
+        sessionToken = null; // intentional disconnect, nothing to resume
         Payload payload = new Payload();
         payload.setPayloadType(PayloadType.DISCONNECT);
         sendToServer(payload);
@@ -456,11 +551,16 @@ public enum Client {
         ConnectionPayload payload = new ConnectionPayload();
         payload.setClientName(name);
         payload.setPayloadType(PayloadType.CLIENT_CONNECT);
+        // present the previous session (if any) so the server can restore it
+        payload.setSessionToken(sessionToken);
         sendToServer(payload);
     }
 
     private void sendToServer(Payload payload) throws IOException {
         if (isConnected()) {
+            if (payload.getTrace() == null) {
+                payload.setTrace(TraceContext.start());
+            }
             out.writeObject(payload);
             out.flush(); // good practice to ensure data is written out immediately
         } else {
@@ -480,6 +580,100 @@ public enum Client {
         inputFuture.join();
     }
 
+    /**
+     * Plays a replay file from the start at 1x (the connect screen's Watch Replay)
+     * 
+     * @param file
+     */
+    public void startReplay(File file) {
+        startReplay(file, 1, 0, 0);
+    }
+
+    /**
+     * Plays a replay file recorded by the server (--replays=dir) without a
+     * connection: its events go through processPayload() like live Payloads,
+     * paced by their recorded times at 1x to 64x speed.
+     * 
+     * @param file
+     * @param speed   playback speed (clamped to 1-64)
+     * @param session game of the round to start at (1 for the first)
+     * @param round   round to start at, 0 for the start of the recording
+     */
+    private synchronized void startReplay(File file, int speed, int session, int round) {
+        if (isConnected()) {
+            LoggerUtil.INSTANCE.warning(TextFX.colorize("Disconnect before playing a replay", Color.RED));
+            return;
+        }
+        stopReplay();
+        final int playbackSpeed = Math.max(1, Math.min(MAX_REPLAY_SPEED, speed));
+        MatchReplay.Reader reader;
+        try {
+            reader = new MatchReplay.Reader(file);
+            if (round > 0 && !reader.seek(session, round)) {
+                reader.close();
+                LoggerUtil.INSTANCE.warning(TextFX.colorize(
+                        String.format("Round %s.%s isn't in %s", session, round, file), Color.RED));
+                return;
+            }
+        } catch (IOException e) {
+            error(String.format("Can't play %s: %s", file, e.getMessage()));
+            return;
+        }
+        currentRoom = reader.getRoomName();
+        knownClients.clear();
+        passToUICallback(IReplayEvents.class, e -> e.onReplayStart(reader.getRoomName()));
+        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Playing %s at %sx (/replay stop to stop)",
+                file.getName(), playbackSpeed), Color.GREEN));
+        Thread thread = new Thread(() -> playReplay(reader, playbackSpeed), "Replay");
+        thread.setDaemon(true);
+        replayThread = thread;
+        thread.start();
+    }
+
+    private void playReplay(MatchReplay.Reader reader, int speed) {
+        List<Payload> payloads = new ArrayList<>();
+        try (reader) {
+            long last = reader.getTime();
+            while (replayThread == Thread.currentThread() && reader.next(payloads)) {
+                long pause = Math.min(MAX_REPLAY_PAUSE_MS, reader.getTime() - last) / speed;
+                last = reader.getTime();
+                if (pause > 0) {
+                    Thread.sleep(pause);
+                }
+                payloads.forEach(this::processPayload);
+                payloads.clear();
+            }
+            if (replayThread == Thread.currentThread()) {
+                LoggerUtil.INSTANCE.info(TextFX.colorize("Replay finished", Color.GREEN));
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        } catch (IOException e) {
+            error(String.format("Replay stopped: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Stops the replay (if any) and clears its state
+     */
+    public synchronized void stopReplay() {
+        Thread thread = replayThread;
+        if (thread != null) {
+            replayThread = null;
+            thread.interrupt();
+            knownClients.clear();
+            currentRoom = null;
+            passToUICallback(IReplayEvents.class, e -> e.onReplayEnd());
+        }
+    }
+
+    /**
+     * @return true while a replay is playing or showing its final state
+     */
+    public boolean isReplaying() {
+        return replayThread != null;
+    }
+
     /**
      * Listens for messages from the server
      */
@@ -488,6 +682,7 @@ public enum Client {
             while (isRunning && isConnected()) {
                 Payload fromServer = (Payload) in.readObject(); // blocking read
                 if (fromServer != null) {
+                    recordTrace(fromServer);
                     processPayload(fromServer);
 
                 } else {
@@ -509,6 +704,67 @@ public enum Client {
             closeServerConnection();
         }
         LoggerUtil.INSTANCE.info("listenToServer thread stopped");
+        if (isRunning && sessionToken != null) {
+            resumeSession();
+        }
+    }
+
+    /**
+     * Records the hops of a traced Payload (i.e., our own or another player's
+     * pick that led to this update)
+     * 
+     * @param payload
+     */
+    private void recordTrace(Payload payload) {
+        TraceContext trace = payload.getTrace();
+        if (trace == null) {
+            return;
+        }
+        long received = TraceContext.now();
+        long serverToClient = TraceContext.between(trace.getSent(), received);
+        if (serverToClient >= 0) {
+            traceServerToClient.record(serverToClient);
+        }
+        long endToEnd = TraceContext.between(trace.getOrigin(), received);
+        if (endToEnd >= 0 && trace.getSent() != 0) {
+            traceEndToEnd[payload.getPayloadType().ordinal()].record(endToEnd);
+        }
+    }
+
+    /**
+     * Attempts to reconnect and resume the previous session after the connection
+     * dropped. The server restores our id, room and game seat and only sends what
+     * we missed. Retries with a growing backoff for RESUME_WINDOW_MS (i.e., while
+     * the server restarts); after that the token is kept so a manual connect to
+     * the same server can still claim the seat.
+     */
+    private void resumeSession() {
+        long deadline = System.currentTimeMillis() + RESUME_WINDOW_MS;
+        for (int attempt = 1; isRunning && sessionToken != null; attempt++) {
+            long backoff = Math.min(RESUME_BACKOFF_MS * attempt, RESUME_MAX_BACKOFF_MS);
+            if (System.currentTimeMillis() + backoff > deadline) {
+                break;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            LoggerUtil.INSTANCE.info(TextFX.colorize(
+                    String.format("Attempting to resume session (attempt %s)", attempt), Color.YELLOW));
+            if (connect(lastHost, lastPort, myUser.getClientName())) {
+                return;
+            }
+        }
+        if (isRunning && sessionToken != null) {
+            LoggerUtil.INSTANCE.warning(TextFX.colorize(
+                    "Unable to resume session, connect again to the same server to rejoin", Color.RED));
+            final long myId = myUser.getClientId();
+            knownClients.clear();
+            myUser.reset();
+            passToUICallback(IConnectionEvents.class, e -> e.onClientDisconnect(myId));
+        }
     }
 
     private void processPayload(Payload payload) {
@@ -580,6 +836,13 @@ public enum Client {
             case PayloadType.ELIMINATION:
                 processElimination(payload);
                 break;
+            case PayloadType.WHISPER:
+                processWhisper(payload);
+                break;
+            case PayloadType.ROOM_SNAPSHOT:
+            case PayloadType.ROOM_JOIN_BULK:
+                processRoomMembers(payload);
+                break;
             default:
                 LoggerUtil.INSTANCE.warning(TextFX.colorize("Unhandled payload type", Color.YELLOW));
                 break;
@@ -835,12 +1098,21 @@ public enum Client {
     }
 
     private void processClientData(Payload payload) {
+        ConnectionPayload connectionPayload = (ConnectionPayload) payload;
+        sessionToken = connectionPayload.getSessionToken();
+        if (connectionPayload.isResumed() && isMyClientId(payload.getClientId())) {
+            // same id, room and seat; the server will replay whatever we missed
+            LoggerUtil.INSTANCE.info(TextFX.colorize("Session resumed", Color.GREEN));
+            clientSideGameEvent("Reconnected");
+            return;
+        }
         if (myUser.getClientId() != Constants.DEFAULT_CLIENT_ID) {
             LoggerUtil.INSTANCE.warning(TextFX.colorize("Client ID already set, this shouldn't happen", Color.YELLOW));
-
+            // previous session couldn't be resumed, start fresh
+            knownClients.clear();
         }
         myUser.setClientId(payload.getClientId());
-        myUser.setClientName(((ConnectionPayload) payload).getClientName());// confirmation from Server
+        myUser.setClientName(connectionPayload.getClientName());// confirmation from Server
         knownClients.put(myUser.getClientId(), myUser);
         LoggerUtil.INSTANCE.info(TextFX.colorize("Connected", Color.GREEN));
 
@@ -850,6 +1122,7 @@ public enum Client {
     private void processDisconnect(Payload payload) {
         passToUICallback(IConnectionEvents.class, e -> e.onClientDisconnect(payload.getClientId()));
         if (isMyClientId(payload.getClientId())) {
+            sessionToken = null; // intentional disconnect, nothing to resume
             knownClients.clear();
             myUser.reset();
             LoggerUtil.INSTANCE.info(TextFX.colorize("You disconnected", Color.RED));
@@ -931,6 +1204,42 @@ public enum Client {
         }
     }
 
+    private void processRoomMembers(Payload payload) {
+        if (!(payload instanceof RoomMembersPayload)) {
+            error("Invalid payload subclass for processRoomMembers");
+            return;
+        }
+        RoomMembersPayload rmp = (RoomMembersPayload) payload;
+        final String roomName = rmp.getMessage();
+        if (rmp.getPayloadType() == PayloadType.ROOM_SNAPSHOT) {
+            // we were moved into a new room, replace the whole list
+            knownClients.clear();
+            passToUICallback(IRoomEvents.class, e -> e.onRoomAction(
+                    Constants.DEFAULT_CLIENT_ID, roomName, false, true, false));
+        }
+        if (rmp.getMembers() == null) {
+            return;
+        }
+        for (ClientInfo member : rmp.getMembers()) {
+            final boolean isMe = isMyClientId(member.getClientId());
+            if (isMe) {
+                currentRoom = roomName;
+                knownClients.put(myUser.getClientId(), myUser);
+                LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Joined %s", currentRoom), Color.GREEN));
+            } else if (!knownClients.containsKey(member.getClientId())) {
+                User user = new User();
+                user.setClientId(member.getClientId());
+                user.setClientName(member.getClientName());
+                user.setSpectator(member.isSpectator());
+                knownClients.put(member.getClientId(), user);
+            }
+            // only our own join is announced, the server sends one summary message for
+            // the rest
+            passToUICallback(IRoomEvents.class, e -> e.onRoomAction(
+                    member.getClientId(), roomName, true, !isMe, member.isSpectator()));
+        }
+    }
+
     private void processMessage(Payload payload) {
         LoggerUtil.INSTANCE.info(TextFX.colorize(payload.getMessage(), Color.BLUE));
 
@@ -938,6 +1247,21 @@ public enum Client {
                 payload.getMessage()));
     }
 
+    private void processWhisper(Payload payload) {
+        if (!(payload instanceof WhisperPayload)) {
+            error("Invalid payload subclass for processWhisper");
+            return;
+        }
+        WhisperPayload wp = (WhisperPayload) payload;
+        // the other party may be in a different room so use the names from the payload
+        String message = isMyClientId(wp.getClientId())
+                ? String.format("[Whisper to %s]: %s", wp.getTargetName(), wp.getMessage())
+                : String.format("[Whisper from %s]: %s", wp.getSenderName(), wp.getMessage());
+        LoggerUtil.INSTANCE.info(TextFX.colorize(message, Color.PURPLE));
+
+        passToUICallback(IMessageEvents.class, e -> e.onMessageReceive(Constants.DEFAULT_CLIENT_ID, message));
+    }
+
     private void processReverse(Payload payload) {
         LoggerUtil.INSTANCE.info(TextFX.colorize(payload.getMessage(), Color.PURPLE));
 
@@ -971,6 +1295,7 @@ public enum Client {
      */
     private void close() {
         isRunning = false;
+        sessionToken = null;
         closeServerConnection();
         LoggerUtil.INSTANCE.info("Client terminated");
         // System.exit(0); // Terminate the application
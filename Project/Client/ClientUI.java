@@ -7,6 +7,7 @@ import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -20,6 +21,7 @@ import javax.swing.SwingUtilities;
 import Project.Client.Interfaces.ICardControls;
 import Project.Client.Interfaces.IConnectionEvents;
 import Project.Client.Interfaces.IPhaseEvent;
+import Project.Client.Interfaces.IReplayEvents;
 import Project.Client.Interfaces.IRoomEvents;
 import Project.Client.Views.ChatGameView;
 import Project.Client.Views.ConnectionView;
@@ -30,7 +32,8 @@ import Project.Common.Constants;
 import Project.Common.LoggerUtil;
 import Project.Common.Phase;
 
-public class ClientUI extends JFrame implements ICardControls, IConnectionEvents, IRoomEvents, IPhaseEvent {
+public class ClientUI extends JFrame implements ICardControls, IConnectionEvents, IRoomEvents, IPhaseEvent,
+        IReplayEvents {
     private CardLayout cardLayout = new CardLayout();
     private Container frameContainer;
     private JPanel cardContainer;
@@ -138,8 +141,9 @@ public class ClientUI extends JFrame implements ICardControls, IConnectionEvents
             activeCardViewPanel = (JPanel) panel;
             activeCardViewEnum = Enum.valueOf(CardViewName.class, activeCardViewPanel.getName());
 
-            // internal "redirect" if we're not connected
-            if (!Client.INSTANCE.isMyClientIdSet() && CardViewName.viewRequiresConnection(activeCardViewEnum)) {
+            // internal "redirect" if we're not connected (a replay shows the game views offline)
+            if (!Client.INSTANCE.isMyClientIdSet() && !Client.INSTANCE.isReplaying()
+                    && CardViewName.viewRequiresConnection(activeCardViewEnum)) {
                 showView(CardViewName.CONNECT.name());
                 setSize(getMinimumSize());
                 revalidate();
@@ -189,6 +193,11 @@ public class ClientUI extends JFrame implements ICardControls, IConnectionEvents
         Client.INSTANCE.connect(host, port, username);
     }
 
+    @Override
+    public void watchReplay(File file) {
+        Client.INSTANCE.startReplay(file);
+    }
+
     // UI interface callbacks end
 
     // Client interface callbacks start
@@ -246,6 +255,23 @@ public class ClientUI extends JFrame implements ICardControls, IConnectionEvents
         }
         // Other phases (like IN_PROGRESS) are handled by game views
     }
+
+    @Override
+    public void onReplayStart(String roomName) {
+        currentRoomLabel.setText(String.format("Replay: %s (/replay stop to leave)", roomName));
+        showView(CardViewName.CHAT_GAME_SCREEN);
+        chatGameView.showChatOnlyView();
+        setSize(new Dimension(600, 600));
+        revalidate();
+    }
+
+    @Override
+    public void onReplayEnd() {
+        currentRoomLabel.setText(Constants.NOT_CONNECTED);
+        showView(CardViewName.CONNECT);
+        setSize(getMinimumSize());
+        revalidate();
+    }
     // Client interface callbacks end
 
 }
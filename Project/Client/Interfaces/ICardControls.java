@@ -1,5 +1,7 @@
 package Project.Client.Interfaces;
 
+import java.io.File;
+
 import javax.swing.JPanel;
 
 import Project.Client.CardViewName;
@@ -43,4 +45,11 @@ public interface ICardControls {
      * pass to Client
      */
     void connect();
+
+    /**
+     * Plays a replay file (only while not connected)
+     * 
+     * @param file
+     */
+    void watchReplay(File file);
 }
@@ -0,0 +1,19 @@
+package Project.Client.Interfaces;
+
+/**
+ * Interface for handling replay playback (see /replay).
+ */
+public interface IReplayEvents extends IClientEvents {
+    /**
+     * Triggered when a replay starts playing; its events follow like live ones.
+     *
+     * @param roomName The Room the replay was recorded in.
+     */
+    void onReplayStart(String roomName);
+
+    /**
+     * Triggered when the replay is stopped (not when it finishes, so its final
+     * state stays on screen).
+     */
+    void onReplayEnd();
+}
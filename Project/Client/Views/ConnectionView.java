@@ -4,13 +4,16 @@ import java.awt.BorderLayout;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 import Project.Client.CardViewName;
 import Project.Client.Interfaces.ICardControls;
+import Project.Common.MatchReplay;
 
 public class ConnectionView extends JPanel {
     // Stores the host, port, and username entered by the user
@@ -69,6 +72,13 @@ public class ConnectionView extends JPanel {
         content.add(Box.createVerticalStrut(10));
         content.add(nextButton);
 
+        // Watch Replay button for playing a recorded match without connecting
+        JButton replayButton = new JButton("Watch Replay");
+        replayButton.setAlignmentX(JButton.CENTER_ALIGNMENT);
+        replayButton.addActionListener(_ -> onWatchReplay(controls));
+        content.add(Box.createVerticalStrut(5));
+        content.add(replayButton);
+
         add(content, BorderLayout.CENTER);
     }
 
@@ -120,6 +130,19 @@ public class ConnectionView extends JPanel {
         }
     }
 
+    /**
+     * Handles the Watch Replay button click: lets the user pick a replay file
+     * (recorded by a server started with --replays=dir) and plays it.
+     */
+    private void onWatchReplay(ICardControls controls) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Match replays",
+                MatchReplay.FILE_SUFFIX.substring(1)));
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            controls.watchReplay(chooser.getSelectedFile());
+        }
+    }
+
     // Getters for the username, host and port values entered by the user
     public String getUsername() {
         return username;
@@ -0,0 +1,226 @@
+package Project.Common;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Asynchronous file log handler.
+ * <p>
+ * publish() only claims a slot in a bounded lock-free ring buffer, so logging
+ * threads never wait on file I/O (or on each other). A single background
+ * writer drains the buffer, formats the records and writes them to the file in
+ * batches, rotating it by size like FileHandler does.
+ * </p>
+ * <p>
+ * When the buffer is full the record is either dropped (and counted) or the
+ * caller waits for a free slot, depending on the OverflowPolicy.
+ * </p>
+ */
+public class AsyncLogHandler extends Handler {
+    public enum OverflowPolicy {
+        DROP, // discard the record and count it
+        BLOCK // wait for the writer to free up a slot
+    }
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_BATCH = 512;
+
+    private final AtomicReferenceArray<LogRecord> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(0); // next slot to claim (producers)
+    private volatile long head = 0; // next slot to consume (writer only)
+    private final OverflowPolicy overflowPolicy;
+
+    private final String location;
+    private final long fileSizeLimit;
+    private final int fileCount;
+    private Writer fileWriter;
+    private long written = 0;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * @param location      log file path
+     * @param fileSizeLimit bytes before the file is rotated (0 for no limit)
+     * @param fileCount     number of files to keep (location, location.1, ...)
+     * @param capacity      ring buffer size (rounded up to a power of 2)
+     * @param policy        what to do when the ring buffer is full
+     * @throws IOException
+     */
+    public AsyncLogHandler(String location, long fileSizeLimit, int fileCount, int capacity, OverflowPolicy policy)
+            throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.overflowPolicy = policy == null ? OverflowPolicy.DROP : policy;
+        this.location = location;
+        this.fileSizeLimit = fileSizeLimit;
+        this.fileCount = Math.max(1, fileCount);
+        setFormatter(new SimpleFormatter());
+        openFile();
+        writer = new Thread(this::drainLoop, "AsyncLogWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!running || !isLoggable(record)) {
+            return;
+        }
+        // force lazy fields to be captured on the calling thread
+        record.getSourceClassName();
+        while (true) {
+            long claim = tail.get();
+            if (claim - head >= slots.length()) {
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    dropped.increment();
+                    return;
+                }
+                LockSupport.parkNanos(50_000);
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+            if (tail.compareAndSet(claim, claim + 1)) {
+                slots.set((int) (claim & mask), record);
+                published.increment();
+                return;
+            }
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder batch = new StringBuilder(16 * 1024);
+        while (running || head != tail.get()) {
+            int count = 0;
+            long next = head;
+            LogRecord record;
+            // a claimed slot may not be filled yet; stop the batch there and retry
+            while (count < MAX_BATCH && (record = slots.get((int) (next & mask))) != null) {
+                slots.set((int) (next & mask), null);
+                next++;
+                head = next;
+                count++;
+                try {
+                    batch.append(getFormatter().format(record));
+                } catch (Exception e) {
+                    reportError(null, e, ErrorManager.FORMAT_FAILURE);
+                }
+            }
+            if (count > 0) {
+                write(batch);
+                batch.setLength(0);
+            } else {
+                LockSupport.parkNanos(1_000_000); // nothing to do, check again in 1ms
+            }
+        }
+    }
+
+    private void write(StringBuilder batch) {
+        try {
+            String text = batch.toString();
+            fileWriter.write(text);
+            fileWriter.flush();
+            batches.increment();
+            written += text.length();
+            if (fileSizeLimit > 0 && written >= fileSizeLimit) {
+                rotate();
+            }
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void openFile() throws IOException {
+        File file = new File(location);
+        written = file.exists() ? file.length() : 0;
+        fileWriter = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private void rotate() throws IOException {
+        fileWriter.close();
+        // location.(n-2) -> location.(n-1) ... location -> location.1
+        for (int i = fileCount - 1; i > 0; i--) {
+            File from = new File(i == 1 ? location : location + "." + (i - 1));
+            File to = new File(location + "." + i);
+            if (from.exists()) {
+                to.delete();
+                from.renameTo(to);
+            }
+        }
+        if (fileCount == 1) {
+            new File(location).delete(); // single file, start over
+        }
+        openFile();
+    }
+
+    /**
+     * Waits (up to a second) for the writer to catch up with what's been
+     * published so far
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        while (head < target && writer.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(2000);
+            fileWriter.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    // counters
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return records waiting to be written
+     */
+    public long getBacklog() {
+        return tail.get() - head;
+    }
+}
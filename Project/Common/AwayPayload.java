@@ -17,6 +17,6 @@ public class AwayPayload extends Payload {
 
     @Override
     public String toString() {
-        return super.toString() + String.format(" away=%b", away);
+        return super.toString() + " away=" + away;
     }
 }
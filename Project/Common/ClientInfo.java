@@ -0,0 +1,35 @@
+package Project.Common;
+
+import java.io.Serializable;
+
+/**
+ * Minimal public info of a client used in room member lists
+ */
+public class ClientInfo implements Serializable {
+    private final long clientId;
+    private final String clientName;
+    private final boolean spectator;
+
+    public ClientInfo(long clientId, String clientName, boolean spectator) {
+        this.clientId = clientId;
+        this.clientName = clientName;
+        this.spectator = spectator;
+    }
+
+    public long getClientId() {
+        return clientId;
+    }
+
+    public String getClientName() {
+        return clientName;
+    }
+
+    public boolean isSpectator() {
+        return spectator;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s#%s%s", clientName, clientId, spectator ? " (spectator)" : "");
+    }
+}
@@ -16,7 +16,10 @@ public enum Command {
     LIST_ROOMS("listrooms"),
     READY("ready"),
     EXAMPLE_TURN("turn"),
-    GAME_MODE("gamemode");
+    GAME_MODE("gamemode"),
+    WHISPER("w"),
+    LATENCY("latency"),
+    REPLAY("replay");
 
     private static final HashMap<String, Command> BY_COMMAND = new HashMap<>();
     static {
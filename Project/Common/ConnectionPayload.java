@@ -3,6 +3,8 @@ package Project.Common;
 public class ConnectionPayload extends Payload {
     private String clientName;
     private boolean spectator = false;
+    private String sessionToken;
+    private boolean resumed = false;
 
     /**
      * @return the clientName
@@ -26,11 +28,39 @@ public class ConnectionPayload extends Payload {
         this.spectator = spectator;
     }
 
+    /**
+     * @return the opaque token used to resume this session after a dropped
+     *         connection (null if none was issued/requested)
+     */
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    /**
+     * @param sessionToken the opaque session token
+     */
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    /**
+     * @return true when the server restored a previous session instead of
+     *         creating a new one
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public void setResumed(boolean resumed) {
+        this.resumed = resumed;
+    }
+
     @Override
     public String toString() {
-        return super.toString() +
-            String.format(" ClientName: [%s] spectator=%b",
-                getClientName(), spectator);
+        // Note: the session token is intentionally left out so it doesn't end up in
+        // the logs
+        return super.toString() + " ClientName: [" + getClientName() + "] spectator=" + spectator
+                + " resumed=" + resumed;
     }
 
 }
\ No newline at end of file
@@ -26,6 +26,6 @@ public class EliminationPayload extends Payload {
 
     @Override
     public String toString() {
-        return String.format("EliminationPayload[clientId=%d, eliminated=%b]", clientId, eliminated);
+        return "EliminationPayload[clientId=" + clientId + ", eliminated=" + eliminated + "]";
     }
 }
@@ -0,0 +1,141 @@
+package Project.Common;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom Java Flight Recorder events.
+ * <p>
+ * They cost next to nothing unless a recording with them enabled is running
+ * (i.e., the server's --jfr flag or jcmd JFR.start). Guard any extra work to
+ * fill in fields with shouldCommit().
+ * </p>
+ */
+public final class FlightEvents {
+    private FlightEvents() {
+    }
+
+    @Name("it114.PayloadDecode")
+    @Label("Payload Decode")
+    @Description("Time from the first byte of a Payload arriving to it being deserialized")
+    @Category({ "IT114", "Network" })
+    @StackTrace(false)
+    public static final class PayloadDecode extends Event {
+        @Label("Client Id")
+        public long clientId;
+
+        @Label("Payload Type")
+        public String payloadType;
+
+        @Label("Decode Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long decodeTime;
+    }
+
+    @Name("it114.PayloadDispatch")
+    @Label("Payload Dispatch")
+    @Description("ServerThread.processPayload() handling a received Payload")
+    @Category({ "IT114", "Network" })
+    @StackTrace(false)
+    public static final class PayloadDispatch extends Event {
+        @Label("Client Id")
+        public long clientId;
+
+        @Label("Payload Type")
+        public String payloadType;
+    }
+
+    @Name("it114.RoomBroadcast")
+    @Label("Room Broadcast")
+    @Description("A Room fanning a message out to its members")
+    @Category({ "IT114", "Room" })
+    @StackTrace(false)
+    public static final class RoomBroadcast extends Event {
+        @Label("Room")
+        public String room;
+
+        @Label("Kind")
+        public String kind;
+
+        @Label("Recipients")
+        public int recipients;
+
+        @Label("Message Bytes")
+        @Description("UTF-8 size of the message text")
+        @DataAmount(DataAmount.BYTES)
+        public long messageBytes;
+
+        @Label("Total Bytes")
+        @Description("Message bytes times recipients")
+        @DataAmount(DataAmount.BYTES)
+        public long totalBytes;
+
+        /**
+         * Fills in the fields (only call it once shouldCommit() is true)
+         */
+        public void fill(String room, String kind, int recipients, String message) {
+            this.room = room;
+            this.kind = kind;
+            this.recipients = recipients;
+            this.messageBytes = message == null ? 0
+                    : message.getBytes(java.nio.charset.StandardCharsets.UTF_8).length;
+            this.totalBytes = messageBytes * recipients;
+        }
+    }
+
+    @Name("it114.RoundEnd")
+    @Label("Round End")
+    @Description("GameRoom.onRoundEnd() (eliminations, resolution, points and the transition)")
+    @Category({ "IT114", "Game" })
+    @StackTrace(false)
+    public static final class RoundEnd extends Event {
+        @Label("Room")
+        public String room;
+
+        @Label("Round")
+        public int round;
+    }
+
+    @Name("it114.RoundResolution")
+    @Label("Round Resolution")
+    @Description("Counting the wins of every pick, eliminating and awarding points")
+    @Category({ "IT114", "Game" })
+    @StackTrace(false)
+    public static final class RoundResolution extends Event {
+        @Label("Room")
+        public String room;
+
+        @Label("Round")
+        public int round;
+
+        @Label("Players")
+        public int players;
+
+        @Label("Winners")
+        public int winners;
+    }
+
+    @Name("it114.TimerFired")
+    @Label("Timer Fired")
+    @Description("A TimedEvent tick and how late it ran compared to its schedule")
+    @Category({ "IT114", "Timer" })
+    @StackTrace(false)
+    public static final class TimerFired extends Event {
+        @Label("Remaining")
+        public int remaining;
+
+        @Label("Expired")
+        @Description("True when this tick ran the expiration callback")
+        public boolean expired;
+
+        @Label("Lag")
+        @Timespan(Timespan.NANOSECONDS)
+        public long lag;
+    }
+}
@@ -0,0 +1,42 @@
+package Project.Common;
+
+/**
+ * Source of time and scheduling for the game timers (TimedEvent).
+ * <p>
+ * SYSTEM follows the wall clock and runs tasks on a small shared pool. A
+ * VirtualClock only moves when it's advanced, so tests and simulations can
+ * play whole sessions faster than real time and in a repeatable order.
+ * </p>
+ */
+public interface GameClock {
+    /**
+     * The wall clock, shared by everything that doesn't ask for another one
+     */
+    GameClock SYSTEM = new SystemClock();
+
+    /**
+     * A scheduled task that can be stopped
+     */
+    interface Scheduled {
+        /**
+         * Stops further runs (a run in progress finishes)
+         */
+        void cancel();
+    }
+
+    /**
+     * @return the current time in milliseconds
+     */
+    long millis();
+
+    /**
+     * Runs task every periodMs, the first time after initialDelayMs. Runs of the
+     * same task never overlap.
+     *
+     * @param task           what to run
+     * @param initialDelayMs delay before the first run
+     * @param periodMs       time between the scheduled start of each run
+     * @return handle to cancel the task
+     */
+    Scheduled scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs);
+}
@@ -38,6 +38,6 @@ public class GameModePayload extends Payload {
 
     @Override
     public String toString() {
-        return super.toString() + String.format(" gameMode=%s cooldown=%b", gameMode, cooldownEnabled);
+        return super.toString() + " gameMode=" + gameMode + " cooldown=" + cooldownEnabled;
     }
 }
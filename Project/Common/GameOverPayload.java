@@ -31,6 +31,6 @@ public class GameOverPayload extends Payload {
 
     @Override
     public String toString() {
-        return super.toString() + String.format(" winners=%s message=%s", winners, message);
+        return super.toString() + " winners=" + winners + " message=" + message;
     }
 }
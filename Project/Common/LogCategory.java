@@ -0,0 +1,12 @@
+package Project.Common;
+
+/**
+ * Subsystems that can have their own log level (see
+ * LoggerUtil.setLevel(LogCategory, Level))
+ */
+public enum LogCategory {
+    NETWORK, // per-payload socket traffic and connection lifecycle
+    ROOM, // membership and relay activity
+    GAME, // session/round/turn flow
+    TIMER // timed events
+}
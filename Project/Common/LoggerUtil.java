@@ -1,11 +1,15 @@
 package Project.Common;
 
 import java.io.IOException;
+import java.util.function.Supplier;
 import java.util.logging.FileHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
+import Project.Common.TextFX.Color;
+
 public class LoggerUtil {
     public static final LoggerUtil INSTANCE = new LoggerUtil();
 
@@ -13,6 +17,9 @@ public class LoggerUtil {
         private int fileSizeLimit = 1024 * 1024;
         private int fileCount = 1;
         private String logLocation = "app.log";
+        private boolean async = false;
+        private int asyncCapacity = AsyncLogHandler.DEFAULT_CAPACITY;
+        private AsyncLogHandler.OverflowPolicy overflowPolicy = AsyncLogHandler.OverflowPolicy.DROP;
 
         public void setFileSizeLimit(int bytes) {
             this.fileSizeLimit = bytes;
@@ -37,13 +44,123 @@ public class LoggerUtil {
         public String getLogLocation() {
             return logLocation;
         }
+
+        /**
+         * Writes the log file from a background thread so logging callers never
+         * wait on file I/O (see AsyncLogHandler)
+         *
+         * @param async
+         */
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsyncCapacity(int records) {
+            this.asyncCapacity = records;
+        }
+
+        public int getAsyncCapacity() {
+            return asyncCapacity;
+        }
+
+        public void setOverflowPolicy(AsyncLogHandler.OverflowPolicy policy) {
+            this.overflowPolicy = policy;
+        }
+
+        public AsyncLogHandler.OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
     }
 
     private Logger logger = Logger.getLogger("it114-project");
-    private FileHandler fileHandler = null;
+    private Handler fileHandler = null;
+    // indexed by LogCategory ordinal; stores Level.intValue() so the check is a
+    // plain int compare
+    private final int[] categoryLevels = new int[LogCategory.values().length];
 
     private LoggerUtil() {
         logger.setLevel(Level.ALL);
+        for (LogCategory category : LogCategory.values()) {
+            categoryLevels[category.ordinal()] = Level.INFO.intValue();
+        }
+    }
+
+    /**
+     * Sets the minimum level logged for a category (Level.OFF disables it)
+     *
+     * @param category
+     * @param level
+     */
+    public void setLevel(LogCategory category, Level level) {
+        categoryLevels[category.ordinal()] = level.intValue();
+    }
+
+    public Level getLevel(LogCategory category) {
+        return Level.parse(String.valueOf(categoryLevels[category.ordinal()]));
+    }
+
+    /**
+     * Cheap check to guard building a message
+     *
+     * @param category
+     * @param level
+     * @return true if a record of this level/category would be logged
+     */
+    public boolean isLoggable(LogCategory category, Level level) {
+        int value = level.intValue();
+        int min = categoryLevels[category.ordinal()];
+        return value >= min && min != Level.OFF.intValue() && logger.isLoggable(level);
+    }
+
+    /**
+     * Logs the supplied message only if the category is enabled for the level;
+     * otherwise the Supplier is never called
+     *
+     * @param category
+     * @param level
+     * @param message
+     */
+    public void log(LogCategory category, Level level, Supplier<String> message) {
+        if (isLoggable(category, level)) {
+            logger.log(level, message.get());
+        }
+    }
+
+    /**
+     * Formats (String.format) and colorizes the message only if the category is
+     * enabled for the level
+     *
+     * @param category
+     * @param level
+     * @param color    may be null for no color
+     * @param format
+     * @param args
+     */
+    public void log(LogCategory category, Level level, Color color, String format, Object... args) {
+        if (isLoggable(category, level)) {
+            String message = args.length == 0 ? format : String.format(format, args);
+            logger.log(level, color == null ? message : TextFX.colorize(message, color));
+        }
+    }
+
+    public void info(LogCategory category, Supplier<String> message) {
+        log(category, Level.INFO, message);
+    }
+
+    public void info(LogCategory category, String format, Object... args) {
+        log(category, Level.INFO, null, format, args);
+    }
+
+    public void fine(LogCategory category, Supplier<String> message) {
+        log(category, Level.FINE, message);
+    }
+
+    public void fine(LogCategory category, String format, Object... args) {
+        log(category, Level.FINE, null, format, args);
     }
 
     public void setConfig(LoggerConfig cfg) {
@@ -53,14 +170,36 @@ public class LoggerUtil {
                 logger.removeHandler(fileHandler);
                 fileHandler.close();
             }
-            fileHandler = new FileHandler(cfg.getLogLocation(), cfg.getFileSizeLimit(), cfg.getFileCount(), true);
-            fileHandler.setFormatter(new SimpleFormatter());
+            if (cfg.isAsync()) {
+                fileHandler = new AsyncLogHandler(cfg.getLogLocation(), cfg.getFileSizeLimit(), cfg.getFileCount(),
+                        cfg.getAsyncCapacity(), cfg.getOverflowPolicy());
+            } else {
+                fileHandler = new FileHandler(cfg.getLogLocation(), cfg.getFileSizeLimit(), cfg.getFileCount(), true);
+                fileHandler.setFormatter(new SimpleFormatter());
+            }
             logger.addHandler(fileHandler);
         } catch (IOException e) {
             logger.log(Level.WARNING, "Failed to create log file handler", e);
         }
     }
 
+    /**
+     * @return number of records the async file handler discarded because its
+     *         buffer was full (0 when logging synchronously)
+     */
+    public long getDroppedCount() {
+        return fileHandler instanceof AsyncLogHandler ? ((AsyncLogHandler) fileHandler).getDroppedCount() : 0;
+    }
+
+    /**
+     * Waits for pending records to reach the log file
+     */
+    public void flush() {
+        if (fileHandler != null) {
+            fileHandler.flush();
+        }
+    }
+
     public void info(String msg) {
         logger.info(msg);
     }
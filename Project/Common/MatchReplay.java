@@ -0,0 +1,462 @@
+package Project.Common;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replay file of a Room's games: written by the server's MatchRecorder
+ * (--replays=dir) and played back by the client (/replay).
+ * <p>
+ * A {@code .replay} file is a header (MAGIC, VERSION, room name, start time)
+ * followed by events: an EventType byte, the ms since the previous event
+ * (varint) and the event's fields (ids and numbers as varints, text as UTF).
+ * Every round starts with a KEYFRAME event holding the whole Room state, and
+ * the {@code .replay.idx} file next to it lists the keyframes as fixed
+ * INDEX_ENTRY_SIZE entries (session, round, time, file offset) in order, so a
+ * round is found with a binary search over the index file and played from its
+ * keyframe without reading the events before it.
+ * </p>
+ */
+public final class MatchReplay {
+    public static final String FILE_SUFFIX = ".replay";
+    public static final String INDEX_SUFFIX = ".idx";
+    public static final int MAGIC = 0x52504C59; // "RPLY"
+    public static final int VERSION = 1;
+    // int session, int round, long ms since the start, long file offset
+    public static final int INDEX_ENTRY_SIZE = 24;
+
+    public enum EventType {
+        JOIN, // id, name, flags (SPECTATOR, SYNC)
+        LEAVE, // id
+        READY, // id, ready
+        RESET_READY,
+        PHASE, // Phase ordinal
+        GAME_MODE, // GameMode ordinal, cooldown
+        PICK, // id, choice
+        POINTS, // id, points
+        ELIMINATION, // id, eliminated
+        GAME_EVENT, // text
+        GAME_OVER, // message, winner count, winners
+        KEYFRAME // session, round, Phase, GameMode, cooldown, member count, members (id, name, flags, points)
+    }
+
+    // member flag bits of JOIN and KEYFRAME events
+    public static final int SPECTATOR = 1;
+    public static final int READY = 1 << 1;
+    public static final int ELIMINATED = 1 << 2;
+    public static final int AWAY = 1 << 3;
+    // a JOIN that only updates a member (i.e. turned spectator), no join message
+    public static final int SYNC = 1 << 4;
+
+    private MatchReplay() {
+    }
+
+    /**
+     * @return the index file of a replay file
+     */
+    public static File indexFile(File replay) {
+        return new File(replay.getPath() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Writes an unsigned varint (7 bits per byte, low bits first)
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Writes a signed number as a zigzag varint (small negatives stay short)
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = (int) readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * One keyframe of the index file
+     */
+    public record IndexEntry(int session, int round, long time, long offset) {
+    }
+
+    /**
+     * Reads a replay file as the Payloads a client in the Room received, one
+     * event at a time. Not thread safe.
+     */
+    public static class Reader implements Closeable {
+        private final File file;
+        private final FileInputStream stream;
+        private DataInputStream in;
+        private final String roomName;
+        private final long startMillis;
+        private boolean started = false;
+        // ms since the start of the last event read
+        private long time = 0;
+        // after a seek the time is the keyframe's own (from the index)
+        private boolean seeked = false;
+        // the next keyframe (or the start) replaces the client's Room state
+        private boolean resync = true;
+        private int session = 0;
+        private int round = 0;
+
+        public Reader(File file) throws IOException {
+            this.file = file;
+            this.stream = new FileInputStream(file);
+            this.in = new DataInputStream(new BufferedInputStream(stream));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a replay file");
+                }
+                roomName = in.readUTF();
+                startMillis = in.readLong();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        public String getRoomName() {
+            return roomName;
+        }
+
+        /**
+         * @return epoch millis the recording started at
+         */
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        /**
+         * @return ms since the start of the last event read
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return session of the last keyframe read (0 before the first)
+         */
+        public int getSession() {
+            return session;
+        }
+
+        /**
+         * @return round of the last keyframe read (0 before the first)
+         */
+        public int getRound() {
+            return round;
+        }
+
+        /**
+         * Jumps to the start of a round: binary search over the index file, then
+         * the next event read is the round's keyframe, which syncs the whole Room
+         * state.
+         *
+         * @param session 1 for the Room's first game
+         * @param round   round of that game
+         * @return false if the round isn't in the index (the position is kept)
+         * @throws IOException
+         */
+        public boolean seek(int session, int round) throws IOException {
+            IndexEntry entry = find(indexFile(file), session, round);
+            if (entry == null) {
+                return false;
+            }
+            stream.getChannel().position(entry.offset());
+            in = new DataInputStream(new BufferedInputStream(stream));
+            time = entry.time();
+            seeked = true;
+            started = true;
+            resync = true;
+            return true;
+        }
+
+        /**
+         * Reads the next event
+         *
+         * @param out receives the Payloads a client got for it (none for events
+         *            a client never saw, like the picks)
+         * @return false at the end of the recording (or a torn last event, then
+         *         out may hold part of it)
+         * @throws IOException
+         */
+        public boolean next(List<Payload> out) throws IOException {
+            if (!started) {
+                // from the start: an empty member list, the JOIN events fill it
+                started = true;
+                resync = false;
+                out.add(resetUserList());
+            }
+            int kind;
+            try {
+                kind = in.readByte();
+                long delta = readVarLong(in);
+                if (seeked) {
+                    seeked = false;
+                } else {
+                    time += delta;
+                }
+                read(EventType.values()[kind], out);
+            } catch (EOFException e) {
+                return false;
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Unknown replay event", e);
+            }
+            return true;
+        }
+
+        private void read(EventType type, List<Payload> out) throws IOException {
+            switch (type) {
+                case JOIN: {
+                    long id = readVarLong(in);
+                    String name = in.readUTF();
+                    int flags = in.readByte();
+                    ConnectionPayload cp = connection(id, name, (flags & SPECTATOR) != 0);
+                    if ((flags & SYNC) != 0) {
+                        cp.setPayloadType(PayloadType.SYNC_CLIENT);
+                        out.add(cp);
+                    } else {
+                        cp.setPayloadType(PayloadType.ROOM_JOIN);
+                        out.add(cp);
+                        out.add(message(Constants.DEFAULT_CLIENT_ID, String.format("%s#%s joined the room%s",
+                                name, id, (flags & SPECTATOR) != 0 ? " as a spectator" : "")));
+                    }
+                    break;
+                }
+                case LEAVE: {
+                    ConnectionPayload cp = connection(readVarLong(in), null, false);
+                    cp.setPayloadType(PayloadType.ROOM_LEAVE);
+                    cp.setMessage(roomName);
+                    out.add(cp);
+                    break;
+                }
+                case READY:
+                    out.add(ready(readVarLong(in), in.readBoolean(), PayloadType.READY));
+                    break;
+                case RESET_READY: {
+                    ReadyPayload rp = new ReadyPayload();
+                    rp.setPayloadType(PayloadType.RESET_READY);
+                    out.add(rp);
+                    break;
+                }
+                case PHASE:
+                    out.add(phase(Phase.values()[in.readByte()]));
+                    break;
+                case GAME_MODE:
+                    out.add(gameMode(GameMode.values()[in.readByte()], in.readBoolean()));
+                    break;
+                case PICK:
+                    // clients only learn the picks from the round result
+                    readVarLong(in);
+                    in.readUTF();
+                    break;
+                case POINTS:
+                    out.add(points(readVarLong(in), readVarInt(in)));
+                    break;
+                case ELIMINATION:
+                    out.add(elimination(readVarLong(in), in.readBoolean()));
+                    break;
+                case GAME_EVENT:
+                    out.add(message(Constants.GAME_EVENT_CHANNEL, in.readUTF()));
+                    break;
+                case GAME_OVER: {
+                    GameOverPayload gp = new GameOverPayload();
+                    gp.setMessage(in.readUTF());
+                    int count = (int) readVarLong(in);
+                    List<String> winners = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        winners.add(in.readUTF());
+                    }
+                    gp.setWinners(winners);
+                    out.add(gp);
+                    break;
+                }
+                case KEYFRAME:
+                    readKeyframe(out);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void readKeyframe(List<Payload> out) throws IOException {
+            session = (int) readVarLong(in);
+            round = (int) readVarLong(in);
+            Phase phase = Phase.values()[in.readByte()];
+            GameMode gameMode = GameMode.values()[in.readByte()];
+            boolean cooldown = in.readBoolean();
+            int count = (int) readVarLong(in);
+            List<Payload> sync = resync ? out : new ArrayList<>();
+            // same order as a resync after a resumed session
+            sync.add(resetUserList());
+            sync.add(gameMode(gameMode, cooldown));
+            sync.add(phase(phase));
+            for (int i = 0; i < count; i++) {
+                long id = readVarLong(in);
+                String name = in.readUTF();
+                int flags = in.readByte();
+                int memberPoints = readVarInt(in);
+                ConnectionPayload cp = connection(id, name, (flags & SPECTATOR) != 0);
+                cp.setPayloadType(PayloadType.SYNC_CLIENT);
+                sync.add(cp);
+                sync.add(ready(id, (flags & READY) != 0, PayloadType.SYNC_READY));
+                sync.add(points(id, memberPoints));
+                if ((flags & ELIMINATED) != 0) {
+                    sync.add(elimination(id, true));
+                }
+            }
+            // played in order the state is already there
+            resync = false;
+        }
+
+        private ConnectionPayload resetUserList() {
+            ConnectionPayload cp = connection(Constants.DEFAULT_CLIENT_ID, null, false);
+            cp.setPayloadType(PayloadType.ROOM_JOIN);
+            cp.setMessage(roomName);
+            return cp;
+        }
+
+        private ConnectionPayload connection(long id, String name, boolean spectator) {
+            ConnectionPayload cp = new ConnectionPayload();
+            cp.setClientId(id);
+            cp.setClientName(name);
+            cp.setMessage(roomName);
+            cp.setSpectator(spectator);
+            return cp;
+        }
+
+        private static Payload message(long channel, String text) {
+            Payload p = new Payload();
+            p.setPayloadType(PayloadType.MESSAGE);
+            p.setClientId(channel);
+            p.setMessage(text);
+            return p;
+        }
+
+        private static ReadyPayload ready(long id, boolean ready, PayloadType type) {
+            ReadyPayload rp = new ReadyPayload();
+            rp.setPayloadType(type);
+            rp.setClientId(id);
+            rp.setReady(ready);
+            return rp;
+        }
+
+        private static Payload phase(Phase phase) {
+            Payload p = new Payload();
+            p.setPayloadType(PayloadType.PHASE);
+            p.setMessage(phase.name());
+            return p;
+        }
+
+        private static GameModePayload gameMode(GameMode gameMode, boolean cooldown) {
+            GameModePayload gp = new GameModePayload();
+            gp.setGameMode(gameMode);
+            gp.setCooldownEnabled(cooldown);
+            return gp;
+        }
+
+        private static PointsPayload points(long id, int points) {
+            PointsPayload pp = new PointsPayload();
+            pp.setClientId(id);
+            pp.setPoints(points);
+            return pp;
+        }
+
+        private static EliminationPayload elimination(long id, boolean eliminated) {
+            EliminationPayload ep = new EliminationPayload();
+            ep.setClientId(id);
+            ep.setEliminated(eliminated);
+            return ep;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Binary search of an index file for a round's keyframe (log2 of the number
+     * of rounds reads, the index isn't loaded)
+     *
+     * @return the entry or null if the round wasn't recorded
+     * @throws IOException
+     */
+    public static IndexEntry find(File index, int session, int round) throws IOException {
+        if (!index.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(index, "r")) {
+            // a torn last entry is ignored
+            long low = 0;
+            long high = raf.length() / INDEX_ENTRY_SIZE - 1;
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                IndexEntry entry = readEntry(raf, mid);
+                int cmp = entry.session() != session ? Integer.compare(entry.session(), session)
+                        : Integer.compare(entry.round(), round);
+                if (cmp == 0) {
+                    return entry;
+                } else if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return every entry of an index file, in order
+     * @throws IOException
+     */
+    public static List<IndexEntry> readIndex(File index) throws IOException {
+        List<IndexEntry> entries = new ArrayList<>();
+        if (!index.isFile()) {
+            return entries;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(index, "r")) {
+            long count = raf.length() / INDEX_ENTRY_SIZE;
+            for (long i = 0; i < count; i++) {
+                entries.add(readEntry(raf, i));
+            }
+        }
+        return entries;
+    }
+
+    private static IndexEntry readEntry(RandomAccessFile raf, long position) throws IOException {
+        raf.seek(position * INDEX_ENTRY_SIZE);
+        return new IndexEntry(raf.readInt(), raf.readInt(), raf.readLong(), raf.readLong());
+    }
+}
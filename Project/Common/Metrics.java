@@ -0,0 +1,256 @@
+package Project.Common;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight in-process metrics registry.
+ * <p>
+ * Counters are striped LongAdders and histograms use 64 power-of-2 buckets, so
+ * recording never takes a lock. Look up a Counter/Histogram once (i.e., in a
+ * static field) and keep the reference; the by-name lookup is meant for
+ * registration, not the hot path.
+ * </p>
+ * <p>
+ * snapshot(true) returns the values and resets them so the registry can be
+ * scraped periodically.
+ * </p>
+ */
+public enum Metrics {
+    INSTANCE; // Singleton instance
+
+    /**
+     * Monotonic count (until reset)
+     */
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        private long getAndReset() {
+            return value.sumThenReset();
+        }
+    }
+
+    /**
+     * Distribution of non-negative values (nanoseconds, recipients, bytes, etc).
+     * Bucket i holds values in [2^(i-1), 2^i), bucket 0 holds 0.
+     */
+    public static class Histogram {
+        public static final int BUCKETS = 64;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value))].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        /**
+         * Records the nanoseconds elapsed since start (a System.nanoTime() value)
+         *
+         * @param start
+         */
+        public void recordSince(long start) {
+            record(System.nanoTime() - start);
+        }
+
+        public HistogramSnapshot snapshot(boolean reset) {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = reset ? buckets[i].sumThenReset() : buckets[i].sum();
+            }
+            if (reset) {
+                return new HistogramSnapshot(count.sumThenReset(), sum.sumThenReset(), max.getThenReset(), counts);
+            }
+            return new HistogramSnapshot(count.sum(), sum.sum(), max.get(), counts);
+        }
+    }
+
+    /**
+     * Point-in-time copy of a Histogram
+     */
+    public static class HistogramSnapshot {
+        private final long count;
+        private final long sum;
+        private final long max;
+        private final long[] buckets;
+
+        public HistogramSnapshot(long count, long sum, long max, long[] buckets) {
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.buckets = buckets;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param bucket
+         * @return the largest value that lands in the bucket
+         */
+        public static long upperBound(int bucket) {
+            return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        public long getBucketCount(int bucket) {
+            return buckets[bucket];
+        }
+
+        /**
+         * @param percentile 0-100
+         * @return upper bound of the bucket the percentile falls in (capped at max)
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d", count, getMean(), getPercentile(50),
+                    getPercentile(99), max);
+        }
+    }
+
+    /**
+     * Point-in-time copy of the whole registry (sorted by name)
+     */
+    public static class Snapshot {
+        private final long timestamp = System.currentTimeMillis();
+        private final Map<String, Long> counters = new TreeMap<>();
+        private final Map<String, HistogramSnapshot> histograms = new TreeMap<>();
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+
+        public Map<String, HistogramSnapshot> getHistograms() {
+            return histograms;
+        }
+
+        @Override
+        public String toString() {
+            // only what has been recorded, to keep it readable
+            StringBuilder sb = new StringBuilder();
+            counters.forEach((name, value) -> {
+                if (value != 0) {
+                    sb.append(name).append(' ').append(value).append('\n');
+                }
+            });
+            histograms.forEach((name, value) -> {
+                if (value.getCount() != 0) {
+                    sb.append(name).append(' ').append(value).append('\n');
+                }
+            });
+            return sb.toString();
+        }
+    }
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, k -> new Counter());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    /**
+     * Registers one Counter per enum constant (i.e., per PayloadType), indexed by
+     * ordinal
+     *
+     * @param prefix name prefix, the constant's name is appended
+     * @param keys
+     * @return
+     */
+    public Counter[] counters(String prefix, Enum<?>[] keys) {
+        Counter[] result = new Counter[keys.length];
+        for (Enum<?> key : keys) {
+            result[key.ordinal()] = counter(prefix + key.name());
+        }
+        return result;
+    }
+
+    /**
+     * Registers one Histogram per enum constant, indexed by ordinal
+     *
+     * @param prefix name prefix, the constant's name is appended
+     * @param keys
+     * @return
+     */
+    public Histogram[] histograms(String prefix, Enum<?>[] keys) {
+        Histogram[] result = new Histogram[keys.length];
+        for (Enum<?> key : keys) {
+            result[key.ordinal()] = histogram(prefix + key.name());
+        }
+        return result;
+    }
+
+    /**
+     * @param reset when true every value is reset after it's read
+     * @return the current values
+     */
+    public Snapshot snapshot(boolean reset) {
+        Snapshot snapshot = new Snapshot();
+        counters.forEach((name, counter) -> snapshot.counters.put(name, reset ? counter.getAndReset() : counter.get()));
+        histograms.forEach((name, histogram) -> snapshot.histograms.put(name, histogram.snapshot(reset)));
+        return snapshot;
+    }
+}
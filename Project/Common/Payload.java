@@ -2,10 +2,11 @@ package Project.Common;
 
 import java.io.Serializable;
 
-public class Payload implements Serializable {
+public class Payload implements Serializable, Cloneable {
     private PayloadType payloadType;
     private long clientId;
     private String message;
+    private TraceContext trace; // optional latency trace (null when not traced)
 
     /**
      * @return the payloadType
@@ -49,9 +50,41 @@ public class Payload implements Serializable {
         this.message = message;
     }
 
+    /**
+     * @return the latency trace or null
+     */
+    public TraceContext getTrace() {
+        return trace;
+    }
+
+    /**
+     * @param trace the latency trace to carry
+     */
+    public void setTrace(TraceContext trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Shallow copy carrying its own trace, so a Payload broadcast to several
+     * clients can be traced per recipient
+     *
+     * @param trace the latency trace to carry
+     * @return the copy
+     */
+    public Payload withTrace(TraceContext trace) {
+        try {
+            Payload copy = (Payload) clone();
+            copy.trace = trace;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e); // Payload is Cloneable
+        }
+    }
+
     //bs768, 11/24/2025, toString method for Payload
+    // plain concatenation (not String.format) since this runs for logged traffic
     @Override
     public String toString() {
-        return String.format("Payload[%s] Client Id [%s] Message: [%s]", getPayloadType(), getClientId(), getMessage());
+        return "Payload[" + getPayloadType() + "] Client Id [" + getClientId() + "] Message: [" + getMessage() + "]";
     }
 }   
@@ -32,4 +32,7 @@ public enum PayloadType {
        TIME, // syncs current time of various timers
        POINTS, // syncs points data
        ELIMINATION, // syncs elimination status
+       WHISPER, // private message to a single client
+       ROOM_SNAPSHOT, // full member list of the room the client was moved into
+       ROOM_JOIN_BULK, // several clients joined the room at once (i.e., a closed room migrating)
 }
\ No newline at end of file
@@ -23,6 +23,6 @@ public class PointsPayload extends Payload {
 
     @Override
     public String toString() {
-        return super.toString() + String.format(" points=%d", points);
+        return super.toString() + " points=" + points;
     }
 }
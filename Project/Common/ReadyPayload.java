@@ -23,6 +23,6 @@ public class ReadyPayload extends Payload {
 
     @Override
     public String toString() {
-        return super.toString() + String.format(" isReady=%b", isReady);
+        return super.toString() + " isReady=" + isReady;
     }
 }
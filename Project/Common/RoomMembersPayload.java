@@ -0,0 +1,33 @@
+package Project.Common;
+
+import java.util.List;
+
+/**
+ * Carries several room members in a single Payload.
+ * <p>
+ * ROOM_SNAPSHOT: the full member list of the room the receiver just joined
+ * (replaces the receiver's list).
+ * ROOM_JOIN_BULK: members that joined the receiver's room at once.
+ * The message holds the room name.
+ * </p>
+ */
+public class RoomMembersPayload extends Payload {
+    private List<ClientInfo> members;
+
+    public RoomMembersPayload() {
+        setPayloadType(PayloadType.ROOM_SNAPSHOT);
+    }
+
+    public List<ClientInfo> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<ClientInfo> members) {
+        this.members = members;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " members=" + (members == null ? 0 : members.size());
+    }
+}
@@ -0,0 +1,44 @@
+package Project.Common;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wall clock GameClock (GameClock.SYSTEM). Every timer shares one small pool
+ * of daemon threads instead of starting a java.util.Timer thread each.
+ */
+final class SystemClock implements GameClock {
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    SystemClock() {
+        AtomicInteger count = new AtomicInteger(0);
+        scheduler = new ScheduledThreadPoolExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "GameClock-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // cancelled timers shouldn't linger in the queue until their next run
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public long millis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public Scheduled scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs) {
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                // the executor would drop the remaining runs without a trace
+                LoggerUtil.INSTANCE.severe("GameClock task failed", e);
+                throw e;
+            }
+        }, initialDelayMs, periodMs, TimeUnit.MILLISECONDS);
+        return () -> future.cancel(false);
+    }
+}
@@ -1,42 +1,97 @@
 package Project.Common;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntConsumer;
 
 public class TimedEvent {
-    private final Timer timer = new Timer();
+    // how late each tick ran compared to its schedule, and time spent in the callbacks
+    private static final Metrics.Histogram TICK_LAG_NS = Metrics.INSTANCE.histogram("timer.tick_lag_ns");
+    private static final Metrics.Histogram TICK_NS = Metrics.INSTANCE.histogram("timer.tick_ns");
+    private static final Metrics.Histogram CALLBACK_NS = Metrics.INSTANCE.histogram("timer.callback_ns");
+    private static final Metrics.Counter FIRED = Metrics.INSTANCE.counter("timer.fired");
+    // TimedEvents scheduled and not yet fired/cancelled
+    private static final AtomicInteger ACTIVE = new AtomicInteger(0);
+
+    private final GameClock clock;
+    private volatile GameClock.Scheduled scheduled = null;
+    private final long startMillis;
+    private int ticks = 0; // only touched by the ticks, which never overlap
     private final AtomicInteger remaining;
     private final Runnable callback;
     private IntConsumer tickCallback = null;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+
+    /**
+     * @return number of TimedEvents currently pending
+     */
+    public static int getActiveCount() {
+        return ACTIVE.get();
+    }
 
     public TimedEvent(int seconds, Runnable callback) {
+        this(GameClock.SYSTEM, seconds, callback);
+    }
+
+    /**
+     * Ticks once a second on the given clock, counting down from seconds to 0,
+     * then runs callback
+     *
+     * @param clock    i.e. a VirtualClock to run faster than real time
+     * @param seconds  time until the callback
+     * @param callback what to run when the time is up
+     */
+    public TimedEvent(GameClock clock, int seconds, Runnable callback) {
+        ACTIVE.incrementAndGet();
+        this.clock = clock;
         this.remaining = new AtomicInteger(seconds);
         this.callback = callback;
+        this.startMillis = clock.millis();
         // schedule tick every 1 second
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                int timeLeft = remaining.getAndDecrement();
-                if (timeLeft >= 0) {
-                    if (tickCallback != null) {
-                        try {
-                            tickCallback.accept(timeLeft);
-                        } catch (Exception e) {
-                            // swallow
-                        }
-                    }
-                }
-                if (timeLeft <= 0) {
+        scheduled = clock.scheduleAtFixedRate(this::tick, 0L, 1000L);
+        if (done.get()) {
+            // the first tick already finished it
+            scheduled.cancel();
+        }
+    }
+
+    private void tick() {
+        long lag = (clock.millis() - (startMillis + ticks++ * 1000L)) * 1_000_000L;
+        TICK_LAG_NS.record(lag);
+        FlightEvents.TimerFired fired = new FlightEvents.TimerFired();
+        fired.begin();
+        int timeLeft = remaining.getAndDecrement();
+        try {
+            if (timeLeft >= 0) {
+                if (tickCallback != null) {
+                    long start = System.nanoTime();
                     try {
-                        callback.run();
-                    } finally {
-                        timer.cancel();
+                        tickCallback.accept(timeLeft);
+                    } catch (Exception e) {
+                        // swallow
                     }
+                    TICK_NS.recordSince(start);
                 }
             }
-        }, 0L, 1000L);
+            if (timeLeft <= 0) {
+                FIRED.increment();
+                long start = System.nanoTime();
+                try {
+                    callback.run();
+                } finally {
+                    CALLBACK_NS.recordSince(start);
+                    cancel();
+                }
+            }
+        } finally {
+            fired.end();
+            if (fired.shouldCommit()) {
+                fired.remaining = timeLeft;
+                fired.expired = timeLeft <= 0;
+                fired.lag = lag;
+                fired.commit();
+            }
+        }
     }
 
     public void setTickCallback(IntConsumer tickCallback) {
@@ -44,6 +99,12 @@ public class TimedEvent {
     }
 
     public void cancel() {
-        timer.cancel();
+        if (done.compareAndSet(false, true)) {
+            ACTIVE.decrementAndGet();
+        }
+        GameClock.Scheduled current = scheduled;
+        if (current != null) {
+            current.cancel();
+        }
     }
 }
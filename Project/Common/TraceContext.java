@@ -0,0 +1,146 @@
+package Project.Common;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Optional latency trace carried by a Payload.
+ * <p>
+ * The client stamps the origin when it sends a Payload. The server stamps
+ * when it received it and when its handler finished, and every Payload the
+ * handler produces gets a child trace (same id and origin) stamped when it's
+ * enqueued and when the writer sends it. The receiving client then has every
+ * hop of the click-to-result path.
+ * </p>
+ * <p>
+ * Timestamps are epoch microseconds (0 means the hop wasn't reached).
+ * </p>
+ */
+public class TraceContext implements Serializable {
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+    private final long traceId;
+    private final long origin;
+    private volatile long serverReceive;
+    private volatile long handlerDone;
+    private volatile long enqueue;
+    private volatile long sent;
+    // the incoming trace this one was created from (server-side only)
+    private transient TraceContext parent;
+
+    private TraceContext(long traceId, long origin) {
+        this.traceId = traceId;
+        this.origin = origin;
+    }
+
+    /**
+     * @return the current time in epoch microseconds
+     */
+    public static long now() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+    }
+
+    /**
+     * Starts a new trace at the origin (client-side)
+     *
+     * @return
+     */
+    public static TraceContext start() {
+        return new TraceContext(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, now());
+    }
+
+    /**
+     * @return the trace of the Payload currently being handled on this thread (or
+     *         null)
+     */
+    public static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    public static void setCurrent(TraceContext trace) {
+        if (trace == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(trace);
+        }
+    }
+
+    /**
+     * Creates the trace for a Payload produced while handling this one, stamped
+     * as enqueued now
+     *
+     * @return
+     */
+    public TraceContext child() {
+        TraceContext child = new TraceContext(traceId, origin);
+        child.serverReceive = serverReceive;
+        child.handlerDone = handlerDone;
+        child.enqueue = now();
+        child.parent = this;
+        return child;
+    }
+
+    public void markServerReceive() {
+        serverReceive = now();
+    }
+
+    public void markHandlerDone() {
+        handlerDone = now();
+    }
+
+    /**
+     * Stamps the send time and picks up the handler completion from the parent
+     * (it may have finished after this was enqueued)
+     */
+    public void markSent() {
+        sent = now();
+        if (parent != null && handlerDone == 0) {
+            handlerDone = parent.handlerDone;
+        }
+    }
+
+    /**
+     * @return true if this was created by child() on this process
+     */
+    public boolean hasParent() {
+        return parent != null;
+    }
+
+    public long getTraceId() {
+        return traceId;
+    }
+
+    public long getOrigin() {
+        return origin;
+    }
+
+    public long getServerReceive() {
+        return serverReceive;
+    }
+
+    public long getHandlerDone() {
+        return handlerDone;
+    }
+
+    public long getEnqueue() {
+        return enqueue;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return end - start in microseconds, or -1 if either hop is missing
+     */
+    public static long between(long start, long end) {
+        return start == 0 || end == 0 ? -1 : end - start;
+    }
+
+    @Override
+    public String toString() {
+        return "Trace[" + Long.toHexString(traceId) + "]";
+    }
+}
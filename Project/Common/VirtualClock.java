@@ -0,0 +1,145 @@
+package Project.Common;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * GameClock whose time only moves when advanced. Due tasks run on the thread
+ * that advances the clock, in due time order (ties in scheduling order), with
+ * millis() reporting their due time, so a run is deterministic.
+ * <p>
+ * i.e. a GameRoom built with a VirtualClock plays a 30 second round timer
+ * with a single advance(30_000) call.
+ * </p>
+ */
+public class VirtualClock implements GameClock {
+
+    private class Task implements Scheduled {
+        private final Runnable runnable;
+        private final long periodMs;
+        private final long sequence;
+        private long due;
+        private volatile boolean cancelled = false;
+
+        private Task(Runnable runnable, long due, long periodMs, long sequence) {
+            this.runnable = runnable;
+            this.due = due;
+            this.periodMs = periodMs;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            synchronized (VirtualClock.this) {
+                queue.remove(this);
+            }
+        }
+    }
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>(
+            Comparator.comparingLong((Task t) -> t.due).thenComparingLong(t -> t.sequence));
+    private long now;
+    private long sequence = 0;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * @param startMillis the initial time
+     */
+    public VirtualClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public synchronized long millis() {
+        return now;
+    }
+
+    @Override
+    public synchronized Scheduled scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("periodMs must be positive");
+        }
+        Task scheduled = new Task(task, now + Math.max(0, initialDelayMs), periodMs, sequence++);
+        queue.add(scheduled);
+        return scheduled;
+    }
+
+    /**
+     * @return number of scheduled (not cancelled) tasks
+     */
+    public synchronized int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return due time of the next task, or -1 if nothing is scheduled
+     */
+    public synchronized long getNextDue() {
+        Task next = queue.peek();
+        return next == null ? -1 : next.due;
+    }
+
+    /**
+     * Takes the next task due at or before target and moves the time to it
+     */
+    private synchronized Task poll(long target) {
+        Task next = queue.peek();
+        if (next == null || next.due > target) {
+            return null;
+        }
+        queue.poll();
+        now = Math.max(now, next.due);
+        return next;
+    }
+
+    private void run(Task task) {
+        // tasks may schedule or cancel others, so they run outside the monitor
+        task.runnable.run();
+        synchronized (this) {
+            if (!task.cancelled) {
+                task.due += task.periodMs;
+                queue.add(task);
+            }
+        }
+    }
+
+    /**
+     * Moves the time forward, running every task that comes due on the way
+     *
+     * @param ms how far to move
+     * @return number of task runs
+     */
+    public int advance(long ms) {
+        long target;
+        synchronized (this) {
+            target = now + Math.max(0, ms);
+        }
+        int runs = 0;
+        Task task;
+        while ((task = poll(target)) != null) {
+            run(task);
+            runs++;
+        }
+        synchronized (this) {
+            now = Math.max(now, target);
+        }
+        return runs;
+    }
+
+    /**
+     * Jumps to the next due time and runs everything due then
+     *
+     * @return number of task runs (0 if nothing is scheduled)
+     */
+    public int advanceToNext() {
+        long next = getNextDue();
+        if (next < 0) {
+            return 0;
+        }
+        return advance(next - millis());
+    }
+}
@@ -0,0 +1,46 @@
+package Project.Common;
+
+/**
+ * Private message between two clients.
+ * <p>
+ * Client to Server: targetName and message.
+ * Server to Client: clientId/senderName of who it's from, targetName and
+ * message (the sender receives a copy as confirmation).
+ * </p>
+ */
+public class WhisperPayload extends Payload {
+    private String targetName;
+    private String senderName;
+
+    public WhisperPayload() {
+        setPayloadType(PayloadType.WHISPER);
+    }
+
+    /**
+     * @return the name of the client receiving the whisper
+     */
+    public String getTargetName() {
+        return targetName;
+    }
+
+    public void setTargetName(String targetName) {
+        this.targetName = targetName;
+    }
+
+    /**
+     * @return the display name of the client who sent the whisper (set by the
+     *         server)
+     */
+    public String getSenderName() {
+        return senderName;
+    }
+
+    public void setSenderName(String senderName) {
+        this.senderName = senderName;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " from=" + senderName + " to=" + targetName;
+    }
+}
@@ -0,0 +1,314 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+import Project.Common.TimedEvent;
+import Project.Common.TextFX;
+import Project.Common.TextFX.Color;
+
+/**
+ * Optional monitoring endpoint bound to localhost (enable with
+ * --admin-port=N).
+ * <p>
+ * GET /status - JSON with rooms, connections, threads, timers and metrics<br>
+ * GET /rooms - JSON array of Room.getStatus()<br>
+ * GET /metrics - Prometheus text format
+ * </p>
+ * <p>
+ * Everything is read from concurrent collections, volatile fields and the
+ * Metrics registry so a scrape never takes (or waits for) a Room monitor.
+ * </p>
+ */
+public class AdminServer {
+    private static final String PREFIX = "it114_";
+    private final HttpServer httpServer;
+
+    private void info(String message) {
+        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Admin: %s", message), Color.GREEN));
+    }
+
+    public AdminServer(int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/status", exchange -> respond(exchange, "application/json", statusJson()));
+        httpServer.createContext("/rooms", exchange -> respond(exchange, "application/json", roomsJson()));
+        httpServer.createContext("/metrics",
+                exchange -> respond(exchange, "text/plain; version=0.0.4", prometheusText()));
+        // one daemon thread is plenty for local scrapes and won't keep the JVM alive
+        httpServer.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "AdminServer");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public void start() {
+        httpServer.start();
+        info("Listening on " + httpServer.getAddress());
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        int status = "GET".equalsIgnoreCase(exchange.getRequestMethod()) ? 200 : 405;
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, status == 200 ? bytes.length : -1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (status == 200) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    // snapshots
+    private static Map<String, Object> gauges() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Map<String, Object> gauges = new LinkedHashMap<>();
+        gauges.put("rooms", Server.INSTANCE.getRooms().size());
+        gauges.put("rooms_hibernated", Room.getHibernatedCount());
+        gauges.put("sessions", Server.INSTANCE.getSessionCount());
+        gauges.put("sessions_parked", Server.INSTANCE.getParkedSessionCount());
+        gauges.put("threads", threads.getThreadCount());
+        gauges.put("threads_daemon", threads.getDaemonThreadCount());
+        gauges.put("threads_peak", threads.getPeakThreadCount());
+        gauges.put("timers_active", TimedEvent.getActiveCount());
+        gauges.put("log_dropped", LoggerUtil.INSTANCE.getDroppedCount());
+        // outbound lanes: queued Payloads across connections and the deepest any got
+        OutboundLane[] lanes = OutboundLane.values();
+        long[] depth = new long[lanes.length];
+        int[] maxDepth = new int[lanes.length];
+        for (ServerThread session : Server.INSTANCE.getSessions()) {
+            OutboundQueue outbound = session.getOutboundQueue();
+            for (OutboundLane lane : lanes) {
+                depth[lane.ordinal()] += outbound.getDepth(lane);
+                maxDepth[lane.ordinal()] = Math.max(maxDepth[lane.ordinal()], outbound.getMaxDepth(lane));
+            }
+        }
+        for (OutboundLane lane : lanes) {
+            String name = lane.name().toLowerCase();
+            gauges.put("outbound_" + name + "_depth", depth[lane.ordinal()]);
+            gauges.put("outbound_" + name + "_max_depth", maxDepth[lane.ordinal()]);
+        }
+        // memory/GC, i.e. for SoakTest to watch for growth over long runs
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauges.put("heap_used_bytes", memory.getHeapMemoryUsage().getUsed());
+        long afterGc = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                afterGc += usage.getUsed();
+            }
+        }
+        gauges.put("heap_after_gc_bytes", afterGc);
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcTime += Math.max(0, gc.getCollectionTime());
+        }
+        gauges.put("gc_count", gcCount);
+        gauges.put("gc_time_ms", gcTime);
+        return gauges;
+    }
+
+    private static String roomsJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (Room room : Server.INSTANCE.getRooms()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            appendObject(json, room.getStatus());
+        }
+        return json.append(']').toString();
+    }
+
+    private static String contentionJson() {
+        StringBuilder json = new StringBuilder("[");
+        RoomWatchdog watchdog = Server.INSTANCE.getRoomWatchdog();
+        if (watchdog != null) {
+            for (RoomWatchdog.Contention room : watchdog.getTopContended(10)) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("room", room.getRoom());
+                values.put("wait_ms", room.getWaitMs());
+                values.put("max_hold_ms", room.getMaxHoldMs());
+                values.put("stalls", room.getStalls());
+                appendObject(json, values);
+            }
+        }
+        return json.append(']').toString();
+    }
+
+    private static String statusJson() {
+        Metrics.Snapshot snapshot = Metrics.INSTANCE.snapshot(false);
+        StringBuilder json = new StringBuilder("{\"time\":").append(snapshot.getTimestamp());
+        json.append(",\"rooms\":").append(roomsJson());
+        json.append(",\"contention\":").append(contentionJson());
+        json.append(",\"gauges\":");
+        appendObject(json, gauges());
+        json.append(",\"counters\":");
+        appendObject(json, new LinkedHashMap<>(snapshot.getCounters()));
+        json.append(",\"histograms\":{");
+        boolean first = true;
+        for (Map.Entry<String, Metrics.HistogramSnapshot> entry : snapshot.getHistograms().entrySet()) {
+            Metrics.HistogramSnapshot histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", histogram.getCount());
+            values.put("mean", Math.round(histogram.getMean()));
+            values.put("p50", histogram.getPercentile(50));
+            values.put("p99", histogram.getPercentile(99));
+            values.put("max", histogram.getMax());
+            appendString(json, entry.getKey());
+            json.append(':');
+            appendObject(json, values);
+        }
+        return json.append("}}").toString();
+    }
+
+    private static void appendObject(StringBuilder json, Map<String, ?> values) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, entry.getKey());
+            json.append(':');
+            Object value = entry.getValue();
+            if (value instanceof Number || value instanceof Boolean) {
+                json.append(value);
+            } else {
+                appendString(json, String.valueOf(value));
+            }
+        }
+        json.append('}');
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 32) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Converts a registry name to a Prometheus metric name and label, i.e.
+     * payload.in.MESSAGE becomes it114_payload_in{type="MESSAGE"}
+     */
+    private static String[] prometheusName(String name) {
+        int last = name.lastIndexOf('.');
+        String tail = last < 0 ? "" : name.substring(last + 1);
+        if (!tail.isEmpty() && tail.equals(tail.toUpperCase())) {
+            return new String[] { PREFIX + sanitize(name.substring(0, last)), "type=\"" + tail + "\"" };
+        }
+        return new String[] { PREFIX + sanitize(name), "" };
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    private static String labels(String... labels) {
+        StringBuilder sb = new StringBuilder();
+        for (String label : labels) {
+            if (!label.isEmpty()) {
+                sb.append(sb.length() == 0 ? "{" : ",").append(label);
+            }
+        }
+        return sb.length() == 0 ? "" : sb.append('}').toString();
+    }
+
+    private static String prometheusText() {
+        StringBuilder text = new StringBuilder();
+        gauges().forEach((name, value) -> {
+            String metric = PREFIX + name;
+            text.append("# TYPE ").append(metric).append(" gauge\n");
+            text.append(metric).append(' ').append(value).append('\n');
+        });
+        text.append("# TYPE ").append(PREFIX).append("room_members gauge\n");
+        for (Room room : Server.INSTANCE.getRooms()) {
+            Map<String, Object> status = room.getStatus();
+            String roomName = room.getName().replace("\\", "\\\\").replace("\"", "\\\"");
+            text.append(PREFIX).append("room_members").append(labels("room=\"" + roomName + "\""))
+                    .append(' ').append(status.get("members")).append('\n');
+        }
+        Metrics.Snapshot snapshot = Metrics.INSTANCE.snapshot(false);
+        String lastType = null;
+        for (Map.Entry<String, Long> entry : snapshot.getCounters().entrySet()) {
+            String[] name = prometheusName(entry.getKey());
+            if (!name[0].equals(lastType)) {
+                text.append("# TYPE ").append(name[0]).append("_total counter\n");
+                lastType = name[0];
+            }
+            text.append(name[0]).append("_total").append(labels(name[1])).append(' ').append(entry.getValue())
+                    .append('\n');
+        }
+        for (Map.Entry<String, Metrics.HistogramSnapshot> entry : snapshot.getHistograms().entrySet()) {
+            String[] name = prometheusName(entry.getKey());
+            Metrics.HistogramSnapshot histogram = entry.getValue();
+            if (!name[0].equals(lastType)) {
+                text.append("# TYPE ").append(name[0]).append(" histogram\n");
+                lastType = name[0];
+            }
+            // cumulative buckets up to the highest one in use
+            int highest = 0;
+            for (int i = 0; i < Metrics.Histogram.BUCKETS; i++) {
+                if (histogram.getBucketCount(i) > 0) {
+                    highest = i;
+                }
+            }
+            long cumulative = 0;
+            for (int i = 0; i <= highest && histogram.getCount() > 0; i++) {
+                cumulative += histogram.getBucketCount(i);
+                text.append(name[0]).append("_bucket")
+                        .append(labels(name[1], "le=\"" + Metrics.HistogramSnapshot.upperBound(i) + "\""))
+                        .append(' ').append(cumulative).append('\n');
+            }
+            text.append(name[0]).append("_bucket").append(labels(name[1], "le=\"+Inf\"")).append(' ')
+                    .append(histogram.getCount()).append('\n');
+            text.append(name[0]).append("_sum").append(labels(name[1])).append(' ').append(histogram.getSum())
+                    .append('\n');
+            text.append(name[0]).append("_count").append(labels(name[1])).append(' ').append(histogram.getCount())
+                    .append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package Project.Server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Remembers when the first byte after arm() was read so the time spent
+ * deserializing a Payload can be told apart from the time spent waiting for it
+ * (ObjectInputStream.readObject() does both in one blocking call).
+ */
+public class ArrivalTimingInputStream extends FilterInputStream {
+    private boolean armed = true;
+    private long arrivalNanos = 0;
+
+    public ArrivalTimingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Starts waiting for the next arrival
+     */
+    public void arm() {
+        armed = true;
+    }
+
+    /**
+     * @return System.nanoTime() of the first byte read since arm() was called
+     */
+    public long getArrivalNanos() {
+        return arrivalNanos;
+    }
+
+    private void stamp(int read) {
+        if (armed && read > 0) {
+            arrivalNanos = System.nanoTime();
+            armed = false;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        stamp(b >= 0 ? 1 : 0);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        stamp(read);
+        return read;
+    }
+}
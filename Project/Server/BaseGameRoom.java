@@ -1,9 +1,17 @@
 package Project.Server;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import Project.Common.Constants;
+import Project.Common.FlightEvents;
+import Project.Common.GameClock;
+import Project.Common.LogCategory;
 import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
 import Project.Common.Phase;
 import Project.Common.TimedEvent;
 import Project.Common.TimerType;
@@ -19,14 +27,49 @@ public abstract class BaseGameRoom extends Room {
 
     private TimedEvent readyTimer = null;
 
+    // drives the game timers; a VirtualClock lets sessions run faster than real time
+    private final GameClock clock;
+
+    // the Room's replay file (does nothing unless the MatchRecorder is open)
+    protected final MatchRecorder.Recording replay;
+
     protected final int MINIMUM_REQUIRED_TO_START = 2;
 
-    protected Phase currentPhase = Phase.READY;
+    // volatile so status snapshots can read it without the Room monitor
+    protected volatile Phase currentPhase = Phase.READY;
 
     protected boolean allowToggleReady = false;
 
+    // broadcast metrics: recipients per broadcast and time spent fanning out
+    private static final Metrics.Histogram GAME_EVENT_FANOUT = Metrics.INSTANCE.histogram("room.game_event.fanout");
+    private static final Metrics.Histogram GAME_EVENT_NS = Metrics.INSTANCE.histogram("room.game_event_ns");
+    private static final Metrics.Histogram TIME_FANOUT = Metrics.INSTANCE.histogram("room.timer.fanout");
+    private static final Metrics.Histogram TIME_NS = Metrics.INSTANCE.histogram("room.timer_ns");
+
     public BaseGameRoom(String name) {
+        this(name, GameClock.SYSTEM);
+    }
+
+    public BaseGameRoom(String name, GameClock clock) {
         super(name);
+        this.clock = clock;
+        this.replay = MatchRecorder.INSTANCE.start(name, clock);
+    }
+
+    /**
+     * @return the clock the game timers run on
+     */
+    protected GameClock getClock() {
+        return clock;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = super.getStatus();
+        status.put("spectators", getSpectatorCount());
+        status.put("phase", currentPhase.name());
+        return status;
     }
 
     /**
@@ -82,8 +125,12 @@ public abstract class BaseGameRoom extends Room {
         if (!isRunning()) { // block action if Room isn't running
             return;
         }
+        boolean joined = !clientsInRoom.containsKey(client.getClientId());
         // do the base Room class logic
         super.addClient(client);
+        if (joined && client.getCurrentRoom() == this) {
+            replay.join(client.getClientId(), client.getClientName(), client.isSpectator(), false);
+        }
         new Thread() {
             @Override
             public void run() {
@@ -99,24 +146,77 @@ public abstract class BaseGameRoom extends Room {
 
     }
 
+    @Override
+    protected synchronized void addClients(List<ServerThread> clients) {
+        if (!isRunning()) { // block action if Room isn't running
+            return;
+        }
+        List<ServerThread> incoming = clients.stream()
+                .filter(client -> !clientsInRoom.containsKey(client.getClientId())).toList();
+        super.addClients(clients);
+        incoming.stream().filter(client -> client.getCurrentRoom() == this).forEach(
+                client -> replay.join(client.getClientId(), client.getClientName(), client.isSpectator(), false));
+        // the snapshot is already queued ahead of anything onClientAdded sends
+        incoming.stream().filter(client -> client.getCurrentRoom() == this).forEach(this::onClientAdded);
+    }
+
     @Override
     protected synchronized void removeClient(ServerThread client) {
         if (!isRunning()) { // block action if Room isn't running
             return;
         }
-        LoggerUtil.INSTANCE.info("Players in room: " + clientsInRoom.size());
+        LoggerUtil.INSTANCE.info(LogCategory.ROOM, "Players in room: %s", clientsInRoom.size());
+        boolean member = clientsInRoom.containsKey(client.getClientId());
         // do the base-class logic
         super.removeClient(client);
+        if (member) {
+            replay.leave(client.getClientId());
+        }
         onClientRemoved(client);
     }
 
+    @Override
+    protected synchronized void resyncClient(ServerThread client) {
+        super.resyncClient(client);
+        onClientAdded(client);
+    }
+
     @Override
     protected synchronized void disconnect(ServerThread client) {
+        boolean member = clientsInRoom.containsKey(client.getClientId());
         super.disconnect(client);
-        LoggerUtil.INSTANCE.info("Players in room: " + clientsInRoom.size());
+        if (member) {
+            replay.leave(client.getClientId());
+        }
+        LoggerUtil.INSTANCE.info(LogCategory.ROOM, "Players in room: %s", clientsInRoom.size());
         onClientRemoved(client);
     }
 
+    /**
+     * Cancels the ready timer and clears the migrating members' game state
+     * (ready, turn, pick, elimination, points) so none of it follows them to the
+     * Lobby
+     */
+    @Override
+    protected void onClosing(List<ServerThread> migrating) {
+        resetReadyTimer();
+        migrating.forEach(client -> {
+            replay.leave(client.getClientId());
+            client.setReady(false);
+            client.setTookTurn(false);
+            client.setChoice(null);
+            client.setEliminated(false);
+            client.setPoints(0);
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        super.close();
+        replay.close();
+    }
+
     /**
      * Cancels any in progress readyTimer
      */
@@ -128,18 +228,68 @@ public abstract class BaseGameRoom extends Room {
         }
     }
 
+    /**
+     * @return true while a game timer is running (the game moves on by itself, so
+     *         the Room can't hibernate)
+     */
+    protected boolean hasActiveTimers() {
+        return readyTimer != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected boolean canHibernate() {
+        return super.canHibernate() && !hasActiveTimers();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void writeState(DataOutputStream out) throws IOException {
+        super.writeState(out);
+        out.writeByte(currentPhase.ordinal());
+        out.writeBoolean(allowToggleReady);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void readState(DataInputStream in, List<MemberState> absent) throws IOException {
+        super.readState(in, absent);
+        currentPhase = Phase.values()[in.readByte()];
+        allowToggleReady = in.readBoolean();
+    }
+
+    /**
+     * Records a member's seat (ready, pick, points, elimination) in the StateLog
+     * after it changed
+     * 
+     * @param player
+     */
+    protected void logMember(ServerThread player) {
+        StateLog.INSTANCE.member(getName(), player);
+    }
+
+    /**
+     * Records every member's seat in the StateLog (after a change to all of them)
+     */
+    protected void logMembers() {
+        if (StateLog.INSTANCE.isEnabled()) {
+            clientsInRoom.values().forEach(this::logMember);
+        }
+    }
+
     /**
      * Starts the ready timer
      * 
      * @param resetOnTry when true, will cancel any active readyTimer
      */
-    protected void startReadyTimer(boolean resetOnTry) {
+    protected synchronized void startReadyTimer(boolean resetOnTry) {
         if (resetOnTry) {
             resetReadyTimer();
         }
         if (readyTimer == null) {
-            readyTimer = new TimedEvent(30, () -> {
+            readyTimer = new TimedEvent(clock, 30, () -> {
                 // callback to trigger when ready expires
+                EventJournal.INSTANCE.timerFired(getName(), TimerType.READY);
                 checkReadyStatus();
             });
             readyTimer.setTickCallback((time) -> {
@@ -187,6 +337,30 @@ public abstract class BaseGameRoom extends Room {
     }
 
     protected void sendGameEvent(String str, List<Long> targets) {
+        if (targets == null) {
+            replay.gameEvent(str);
+        }
+        broadcastGameEvent(str, targets);
+    }
+
+    /**
+     * Announces the end of a game: the players get the message as a game event,
+     * the replay keeps the winners with it
+     * 
+     * @param message
+     * @param winners display names of the winners
+     */
+    protected void sendGameOver(String message, List<String> winners) {
+        replay.gameOver(message, winners);
+        broadcastGameEvent(message, null);
+    }
+
+    private void broadcastGameEvent(String str, List<Long> targets) {
+        FlightEvents.RoomBroadcast broadcast = new FlightEvents.RoomBroadcast();
+        broadcast.begin();
+        int recipients = targets == null ? clientsInRoom.size() : targets.size();
+        long start = System.nanoTime();
+        GAME_EVENT_FANOUT.record(recipients);
         clientsInRoom.values().removeIf(spInRoom -> {
             boolean canSend = false;
             if (targets != null) {
@@ -205,6 +379,12 @@ public abstract class BaseGameRoom extends Room {
             }
             return false;
         });
+        GAME_EVENT_NS.recordSince(start);
+        broadcast.end();
+        if (broadcast.shouldCommit()) {
+            broadcast.fill(getName(), "gameEvent", recipients, str);
+            broadcast.commit();
+        }
     }
 
     /**
@@ -214,6 +394,8 @@ public abstract class BaseGameRoom extends Room {
      * @param time      the remaining time or -1 to cancel
      */
     protected void sendCurrentTime(TimerType timerType, int time) {
+        long start = System.nanoTime();
+        TIME_FANOUT.record(clientsInRoom.size());
         clientsInRoom.values().removeIf(spInRoom -> {
             boolean failedToSend = !spInRoom.sendCurrentTime(timerType, time);
             if (failedToSend) {
@@ -221,6 +403,7 @@ public abstract class BaseGameRoom extends Room {
             }
             return failedToSend;
         });
+        TIME_NS.recordSince(start);
     }
 
     /**
@@ -236,6 +419,7 @@ public abstract class BaseGameRoom extends Room {
      * Sends the current phase to all clients
      */
     protected void sendCurrentPhase() {
+        replay.phase(currentPhase);
         clientsInRoom.values().removeIf(spInRoom -> {
             boolean failedToSend = !spInRoom.sendCurrentPhase(currentPhase);
             if (failedToSend) {
@@ -250,6 +434,7 @@ public abstract class BaseGameRoom extends Room {
      * status
      */
     protected void sendResetReadyTrigger() {
+        replay.resetReady();
         clientsInRoom.values().removeIf(spInRoom -> {
             boolean failedToSend = !spInRoom.sendResetReady();
             if (failedToSend) {
@@ -281,6 +466,7 @@ public abstract class BaseGameRoom extends Room {
      * @param isReady
      */
     protected void sendReadyStatus(ServerThread incomingSP, boolean isReady) {
+        replay.ready(incomingSP.getClientId(), incomingSP.isReady());
         clientsInRoom.values().removeIf(spInRoom -> {
             boolean failedToSend = !spInRoom.sendReadyStatus(incomingSP.getClientId(), incomingSP.isReady());
             if (failedToSend) {
@@ -293,6 +479,7 @@ public abstract class BaseGameRoom extends Room {
 
     // receive data from ServerThread (GameRoom specific)
     protected void handleReady(ServerThread sender) {
+        touch();
         try {
             // early exit checks
             checkPlayerInRoom(sender);
@@ -309,6 +496,7 @@ public abstract class BaseGameRoom extends Room {
                 sp = clientsInRoom.get(sender.getClientId());
                 sp.setReady(!sp.isReady());
             }
+            logMember(sp);
             startReadyTimer(false); // <-- triggers the next step when it expires
 
             sendReadyStatus(sp, sp.isReady());
@@ -4,8 +4,15 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.List;
+import java.util.function.Supplier;
 
+import Project.Common.Constants;
+import Project.Common.FlightEvents;
+import Project.Common.Metrics;
 import Project.Common.Payload;
+import Project.Common.PayloadType;
+import Project.Common.TraceContext;
 import Project.Common.User;
 import Project.Common.LoggerUtil;
 
@@ -17,6 +24,34 @@ public abstract class BaseServerThread extends Thread {
     protected Socket client; // communication directly to "my" client
     private User user = new User();
     protected Room currentRoom;
+    private String sessionToken; // opaque token the client can use to resume this session
+    private volatile boolean detached = false; // socket dropped but the session is parked for resume
+    private ReplayBuffer replayBuffer = new ReplayBuffer();
+    // outbound Payloads are written by a dedicated writer in priority order
+    private final OutboundQueue outbound = new OutboundQueue();
+    private Thread writer; // owns out and closes it when it exits
+    // how long a closing connection gets to write what's still queued
+    private static final long FLUSH_TIMEOUT_MS = 500;
+
+    // metrics shared by every connection
+    private static final Metrics.Counter[] PAYLOADS_IN = Metrics.INSTANCE.counters("payload.in.",
+            PayloadType.values());
+    private static final Metrics.Counter[] PAYLOADS_OUT = Metrics.INSTANCE.counters("payload.out.",
+            PayloadType.values());
+    private static final Metrics.Histogram[] PROCESS_NS = Metrics.INSTANCE.histograms("payload.process_ns.",
+            PayloadType.values());
+    private static final Metrics.Histogram SEND_NS = Metrics.INSTANCE.histogram("payload.send_ns");
+    private static final Metrics.Counter SEND_FAILURES = Metrics.INSTANCE.counter("payload.send_failures");
+    private static final Metrics.Counter OUTBOUND_OVERFLOWS = Metrics.INSTANCE.counter("payload.outbound_overflows");
+    private static final Metrics.Counter CONNECTIONS_OPENED = Metrics.INSTANCE.counter("connection.opened");
+    private static final Metrics.Counter CONNECTIONS_CLOSED = Metrics.INSTANCE.counter("connection.closed");
+    // per-hop latency of traced Payloads (microseconds)
+    private static final Metrics.Histogram TRACE_CLIENT_TO_SERVER = Metrics.INSTANCE
+            .histogram("trace.server.client_to_server_us");
+    private static final Metrics.Histogram TRACE_HANDLER = Metrics.INSTANCE.histogram("trace.server.handler_us");
+    private static final Metrics.Histogram TRACE_HANDLER_TO_ENQUEUE = Metrics.INSTANCE
+            .histogram("trace.server.handler_to_enqueue_us");
+    private static final Metrics.Histogram TRACE_QUEUE = Metrics.INSTANCE.histogram("trace.server.queue_us");
 
     /**
      * Returns the current Room associated with this ServerThread
@@ -43,6 +78,18 @@ public abstract class BaseServerThread extends Thread {
         currentRoom = room;
     }
 
+    private static void recordHop(Metrics.Histogram histogram, long start, long end) {
+        long elapsed = TraceContext.between(start, end);
+        if (elapsed >= 0) {
+            histogram.record(elapsed);
+        }
+    }
+
+    private String roomName() {
+        Room room = currentRoom;
+        return room == null ? null : room.getName();
+    }
+
     /**
      * Returns the status of this ServerThread
      * 
@@ -140,6 +187,108 @@ public abstract class BaseServerThread extends Thread {
         this.user.setEliminated(isEliminated);
     }
 
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    protected void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    /**
+     * @return true while the socket is gone but the session is waiting to be
+     *         resumed
+     */
+    public boolean isDetached() {
+        return detached;
+    }
+
+    /**
+     * Takes over the session state of a detached ServerThread (same User, Room
+     * membership and missed Payloads)
+     * 
+     * @param previous the detached ServerThread being resumed
+     */
+    protected void adoptSession(BaseServerThread previous) {
+        this.user = previous.user;
+        this.sessionToken = previous.sessionToken;
+        this.replayBuffer = previous.replayBuffer;
+        // the old instance must not touch the shared state anymore
+        previous.user = new User();
+        previous.replayBuffer = new ReplayBuffer();
+        previous.currentRoom = null;
+        previous.detached = false;
+    }
+
+    /**
+     * Sends the Payloads missed while detached
+     * 
+     * @return false if the replay buffer overflowed and a full resync is needed
+     */
+    protected boolean replayMissed() {
+        if (replayBuffer.isOverflowed()) {
+            replayBuffer.clear();
+            return false;
+        }
+        List<Payload> missed = replayBuffer.drain();
+        info(String.format("Replaying %s missed payload(s)", missed.size()));
+        for (Payload payload : missed) {
+            if (!sendToClient(payload)) {
+                return true; // dropped again, the next resume will pick it up
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Called when the grace window of a detached session runs out; finishes the
+     * disconnect that was deferred when the socket dropped
+     */
+    protected void expireSession() {
+        if (!detached) {
+            return;
+        }
+        detached = false;
+        Room room = currentRoom;
+        if (room != null) {
+            room.handleDisconnect((ServerThread) this);
+        }
+        currentRoom = null;
+        Server.INSTANCE.unregisterSession((ServerThread) this);
+        user.reset();
+        replayBuffer.clear();
+    }
+
+    /**
+     * Attempts to park this session instead of disconnecting it so the client
+     * can resume it
+     * 
+     * @return true if the session was parked
+     */
+    private boolean detach() {
+        if (detached) {
+            return true;
+        }
+        if (sessionToken == null || currentRoom == null
+                || getClientId() == Constants.DEFAULT_CLIENT_ID) {
+            return false;
+        }
+        closeSocket();
+        // the writer has to stop first: a Payload it took but failed to write is
+        // requeued and would miss the drain
+        stopWriter();
+        // whatever didn't make it out yet, then everything sent from now on, is
+        // part of what the client missed (in order)
+        outbound.divert(replayBuffer::add);
+        detached = true;
+        isRunning = false;
+        if (!Server.INSTANCE.parkSession((ServerThread) this)) {
+            detached = false;
+            return false;
+        }
+        return true;
+    }
+
     /**
      * A wrapper method so we don't need to keep typing out the long/complex sysout
      * line inside
@@ -148,6 +297,14 @@ public abstract class BaseServerThread extends Thread {
      */
     protected abstract void info(String message);
 
+    /**
+     * Lazy variant for per-payload logs; the message is only built if NETWORK
+     * logging is enabled
+     *
+     * @param message
+     */
+    protected abstract void info(Supplier<String> message);
+
     /**
      * Triggered when object is fully initialized
      */
@@ -161,26 +318,123 @@ public abstract class BaseServerThread extends Thread {
     protected abstract void processPayload(Payload payload);
 
     /**
-     * Sends the payload over the socket
+     * Queues the payload to be sent over the socket.
+     * <p>
+     * Game-state Payloads are written ahead of queued chat and timer traffic (see
+     * OutboundQueue). A client too slow to drain a full queue of game-state
+     * Payloads has its socket closed; the read loop then handles it like any
+     * other dropped connection, so the session is parked and can resume.
+     * </p>
      * 
      * @param payload
      * @return true if no errors were encountered
      */
     protected boolean sendToClient(Payload payload) {
+        if (detached) {
+            // hold on to it until the client resumes
+            replayBuffer.add(payload);
+            return true;
+        }
         if (!isRunning) {
             return true;
         }
-        try {
-            info("Sending to client: " + payload);
-            out.writeObject(payload);
-            out.flush();
+        TraceContext current = TraceContext.current();
+        if (current != null && payload.getTrace() == null) {
+            // produced while handling a traced Payload; broadcasts share the instance, so
+            // each recipient gets a copy with its own trace
+            TraceContext trace = current.child();
+            payload = payload.withTrace(trace);
+            recordHop(TRACE_HANDLER_TO_ENQUEUE, trace.getServerReceive(), trace.getEnqueue());
+        }
+        if (!outbound.offer(payload)) {
+            if (!outbound.isOverflowed()) {
+                return false;
+            }
+            if (!client.isClosed()) {
+                info(() -> "Outbound queue overflowed, dropping the connection: " + outbound);
+                OUTBOUND_OVERFLOWS.increment();
+                closeSocket();
+            }
+            // not a dead client yet: the read loop handles the disconnect and parks the
+            // session, so the caller mustn't remove it
             return true;
-        } catch (IOException e) {
-            info("Error sending message to client (most likely disconnected)");
-            // comment this out to inspect the stack trace
-            // e.printStackTrace();
-            cleanup();
-            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the outbound lanes of this connection (for queue depth metrics)
+     */
+    public OutboundQueue getOutboundQueue() {
+        return outbound;
+    }
+
+    /**
+     * Drains the OutboundQueue onto the socket until it's closed
+     */
+    private void writeLoop() {
+        try {
+            Payload payload;
+            while ((payload = outbound.take()) != null) {
+                try {
+                    final Payload sending = payload;
+                    info(() -> "Sending to client: " + sending);
+                    TraceContext trace = payload.getTrace();
+                    if (trace != null && trace.hasParent()) {
+                        trace.markSent();
+                        recordHop(TRACE_QUEUE, trace.getEnqueue(), trace.getSent());
+                    }
+                    long start = System.nanoTime();
+                    out.writeObject(payload);
+                    out.flush();
+                    SEND_NS.recordSince(start);
+                    PAYLOADS_OUT[payload.getPayloadType().ordinal()].increment();
+                    EventJournal.INSTANCE.payloadOut(getClientId(), payload, roomName());
+                } catch (IOException e) {
+                    info("Error sending message to client (most likely disconnected)");
+                    SEND_FAILURES.increment();
+                    // comment this out to inspect the stack trace
+                    // e.printStackTrace();
+                    // keep it for a possible resume and let the read loop handle the disconnect
+                    outbound.requeue(payload);
+                    closeSocket();
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // only the writer touches out, so it's closed here rather than by whoever
+            // ends the connection
+            try {
+                out.close();
+            } catch (IOException e) {
+                // already closed
+            }
+            closeSocket();
+        }
+    }
+
+    /**
+     * Stops the writer and waits for it to exit; what it didn't write stays in
+     * the OutboundQueue
+     */
+    private void stopWriter() {
+        Thread stopping = writer;
+        if (stopping == null || stopping == Thread.currentThread()) {
+            return;
+        }
+        stopping.interrupt(); // the socket is closed, so only take() can still block
+        boolean interrupted = Thread.interrupted();
+        while (stopping.isAlive()) {
+            try {
+                stopping.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -202,10 +456,15 @@ public abstract class BaseServerThread extends Thread {
     @Override
     public void run() {
         info("Thread starting");
-        try (ObjectOutputStream out = new ObjectOutputStream(client.getOutputStream());
-                ObjectInputStream in = new ObjectInputStream(client.getInputStream());) {
-            this.out = out;
+        try (ArrivalTimingInputStream arrival = new ArrivalTimingInputStream(client.getInputStream())) {
+            // not closed here: the writer may still be using it (see writeLoop())
+            this.out = new ObjectOutputStream(client.getOutputStream());
+            ObjectInputStream in = new ObjectInputStream(arrival);
             isRunning = true;
+            CONNECTIONS_OPENED.increment();
+            writer = new Thread(this::writeLoop, "Writer-" + getName());
+            writer.setDaemon(true);
+            writer.start();
             new java.util.Timer().schedule(new java.util.TimerTask() {
                 @Override
                 public void run() {
@@ -225,10 +484,46 @@ public abstract class BaseServerThread extends Thread {
              */
             while (isRunning) {
                 try {
+                    arrival.arm();
                     fromClient = (Payload) in.readObject(); // blocking method
                     if (fromClient != null) {
-                        info("Received from my client: " + fromClient);
-                        processPayload(fromClient);
+                        FlightEvents.PayloadDecode decode = new FlightEvents.PayloadDecode();
+                        if (decode.isEnabled()) {
+                            decode.decodeTime = System.nanoTime() - arrival.getArrivalNanos();
+                            decode.clientId = getClientId();
+                            decode.payloadType = fromClient.getPayloadType().name();
+                            decode.commit();
+                        }
+                        final Payload received = fromClient;
+                        info(() -> "Received from my client: " + received);
+                        EventJournal.INSTANCE.payloadIn(getClientId(), fromClient, roomName());
+                        int type = fromClient.getPayloadType().ordinal();
+                        PAYLOADS_IN[type].increment();
+                        FlightEvents.PayloadDispatch dispatch = new FlightEvents.PayloadDispatch();
+                        dispatch.begin();
+                        TraceContext trace = fromClient.getTrace();
+                        if (trace != null) {
+                            trace.markServerReceive();
+                            recordHop(TRACE_CLIENT_TO_SERVER, trace.getOrigin(), trace.getServerReceive());
+                            TraceContext.setCurrent(trace);
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            processPayload(fromClient);
+                        } finally {
+                            if (trace != null) {
+                                trace.markHandlerDone();
+                                recordHop(TRACE_HANDLER, trace.getServerReceive(), trace.getHandlerDone());
+                                TraceContext.setCurrent(null);
+                            }
+                        }
+                        PROCESS_NS[type].recordSince(start);
+                        dispatch.end();
+                        if (dispatch.shouldCommit()) {
+                            dispatch.clientId = getClientId();
+                            dispatch.payloadType = fromClient.getPayloadType().name();
+                            dispatch.commit();
+                        }
                     } else {
                         throw new IOException("Connection interrupted"); // Specific exception for a clean break
                     }
@@ -251,31 +546,65 @@ public abstract class BaseServerThread extends Thread {
             e.printStackTrace();
             info("My Client disconnected");
         } finally {
-            if (currentRoom != null) {
+            CONNECTIONS_CLOSED.increment();
+            if (currentRoom != null && !detach()) {
                 currentRoom.handleDisconnect((ServerThread) this);
             }
             isRunning = false;
-            info("Exited thread loop. Cleaning up connection");
-            cleanup();
+            if (detached) {
+                info("Exited thread loop. Session parked for resume");
+            } else {
+                info("Exited thread loop. Cleaning up connection");
+                cleanup();
+            }
         }
     }
 
     /**
-     * Cleanup method to close the connection and reset the user object
+     * Closes the socket without touching the session state. Safe from any
+     * thread: a write in progress fails and the writer exits.
      */
-    protected void cleanup() {
-        info("ServerThread cleanup() start");
+    private void closeSocket() {
         try {
-            // close server-side end of connection
-            currentRoom = null;
-            out.close();
             client.close();
-            user.reset();
-            info("Closed Server-side Socket");
         } catch (IOException e) {
             info("Client already closed");
         }
+    }
 
+    /**
+     * Cleanup method to close the connection and reset the user object
+     */
+    protected void cleanup() {
+        info("ServerThread cleanup() start");
+        // the writer flushes what's already queued, then closes the stream and socket
+        outbound.close();
+        info(outbound.toString());
+        currentRoom = null;
+        Server.INSTANCE.unregisterSession((ServerThread) this);
+        user.reset();
+        closeAfterFlush();
         info("ServerThread cleanup() end");
     }
+
+    /**
+     * Closes the socket once the writer is done, or after FLUSH_TIMEOUT_MS if the
+     * client stopped reading. Doesn't block, cleanup() may run under a Room's
+     * lock.
+     */
+    private void closeAfterFlush() {
+        Thread flushing = writer;
+        if (flushing == null || !flushing.isAlive()) {
+            closeSocket();
+            return;
+        }
+        Thread.ofVirtual().name("Closer-" + getName()).start(() -> {
+            try {
+                flushing.join(FLUSH_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closeSocket();
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+package Project.Server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import Project.Common.GameClock;
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+
+/**
+ * Periodically checkpoints every GameRoom to a snapshot file so a restarted
+ * Server can restore them (enable with --checkpoint=dir, the interval with
+ * --checkpoint-interval=seconds). The StateLog covers the changes between two
+ * checkpoints.
+ * <p>
+ * Each Room is a {@code <name>.room} file holding its checkpoint() bytes (the
+ * same form a hibernating Room keeps in memory: members, their points and
+ * flags, phase, round, game mode and turn order) behind a small header with a
+ * CRC. Checkpoints are incremental: a Room whose bytes didn't change since the
+ * last run isn't written again. Files are written to a temp file and moved into
+ * place so a crash never leaves a torn snapshot, and the file of a closed Room
+ * is deleted.
+ * </p>
+ * <p>
+ * Rooms aren't stopped: each is only held for the in-memory copy of its state
+ * (hibernating Rooms not at all) and the file I/O happens outside the Room
+ * monitor.
+ * </p>
+ */
+public class Checkpointer {
+    public static final int DEFAULT_INTERVAL_SECONDS = 10;
+    public static final String FILE_SUFFIX = ".room";
+    private static final int MAGIC = 0x524F4F4D; // "ROOM"
+    private static final int VERSION = 1;
+
+    private static final Metrics.Histogram CHECKPOINT_NS = Metrics.INSTANCE.histogram("checkpoint.ns");
+    private static final Metrics.Histogram CHECKPOINT_BYTES = Metrics.INSTANCE.histogram("checkpoint.bytes");
+    private static final Metrics.Counter ROOMS_WRITTEN = Metrics.INSTANCE.counter("checkpoint.rooms_written");
+    private static final Metrics.Counter ROOMS_UNCHANGED = Metrics.INSTANCE.counter("checkpoint.rooms_unchanged");
+    private static final Metrics.Counter FAILURES = Metrics.INSTANCE.counter("checkpoint.failures");
+
+    /**
+     * A Room read back from its snapshot file
+     */
+    public record Snapshot(String roomName, byte[] state) {
+    }
+
+    private final File directory;
+    private final int intervalSeconds;
+    // CRC of the state last written per Room file, to skip unchanged Rooms
+    private final Map<String, Long> written = new HashMap<>();
+    private GameClock.Scheduled scheduled = null;
+
+    /**
+     * @param directory       where the snapshot files go (created if missing)
+     * @param intervalSeconds time between checkpoints
+     * @throws IOException
+     */
+    public Checkpointer(File directory, int intervalSeconds) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create checkpoint directory " + directory);
+        }
+        this.directory = directory;
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Starts checkpointing the Server's Rooms on the given clock
+     *
+     * @param clock
+     */
+    public synchronized void start(GameClock clock) {
+        if (scheduled == null) {
+            long periodMs = intervalSeconds * 1000L;
+            scheduled = clock.scheduleAtFixedRate(this::checkpoint, periodMs, periodMs);
+            LoggerUtil.INSTANCE.info(String.format("Checkpointing rooms to %s every %ss",
+                    directory.getAbsolutePath(), intervalSeconds));
+        }
+    }
+
+    /**
+     * Stops the periodic checkpoints and takes a last one
+     */
+    public synchronized void stop() {
+        if (scheduled != null) {
+            scheduled.cancel();
+            scheduled = null;
+        }
+        checkpoint();
+    }
+
+    /**
+     * Writes the Rooms whose state changed since the last checkpoint and deletes
+     * the files of Rooms that are gone. If every Room was written, the StateLog
+     * segments from before the checkpoint are deleted.
+     *
+     * @return number of Room files written
+     */
+    public synchronized int checkpoint() {
+        long start = System.nanoTime();
+        // everything logged before this is covered by the snapshots below
+        long firstKept = StateLog.INSTANCE.roll();
+        boolean failed = false;
+        int count = 0;
+        Set<String> live = new HashSet<>();
+        for (Room room : Server.INSTANCE.getRooms()) {
+            if (Room.LOBBY.equalsIgnoreCase(room.getName())) {
+                continue;
+            }
+            String fileName = fileName(room.getName());
+            try {
+                byte[] state = room.checkpoint();
+                if (state == null) {
+                    continue; // closed meanwhile
+                }
+                live.add(fileName);
+                long crc = crc(state);
+                Long previous = written.get(fileName);
+                if (previous != null && previous == crc) {
+                    ROOMS_UNCHANGED.increment();
+                    continue;
+                }
+                write(fileName, room.getName(), state, crc);
+                written.put(fileName, crc);
+                count++;
+            } catch (IOException e) {
+                FAILURES.increment();
+                failed = true;
+                live.add(fileName); // keep the previous snapshot
+                LoggerUtil.INSTANCE.severe(String.format("Failed to checkpoint Room %s", room.getName()), e);
+            }
+        }
+        written.keySet().removeIf(fileName -> {
+            if (live.contains(fileName)) {
+                return false;
+            }
+            new File(directory, fileName).delete();
+            return true;
+        });
+        if (!failed) {
+            StateLog.INSTANCE.truncateBefore(firstKept);
+        }
+        CHECKPOINT_NS.recordSince(start);
+        return count;
+    }
+
+    private void write(String fileName, String roomName, byte[] state, long crc) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(state.length + 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(roomName);
+            out.writeInt(state.length);
+            out.writeInt((int) crc);
+            out.write(state);
+        }
+        File target = new File(directory, fileName);
+        File temp = new File(directory, fileName + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bytes.writeTo(out);
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        ROOMS_WRITTEN.increment();
+        CHECKPOINT_BYTES.record(bytes.size());
+    }
+
+    /**
+     * Reads every snapshot file in the directory. Unreadable or corrupt files are
+     * logged and skipped. The snapshots read count as already written, so the
+     * next checkpoint only rewrites Rooms that changed after their restore.
+     *
+     * @return the snapshots
+     */
+    public synchronized List<Snapshot> load() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return snapshots;
+        }
+        for (File file : files) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a room snapshot");
+                }
+                String roomName = in.readUTF();
+                byte[] state = new byte[in.readInt()];
+                int crc = in.readInt();
+                in.readFully(state);
+                if ((int) crc(state) != crc) {
+                    throw new IOException("Checksum mismatch");
+                }
+                snapshots.add(new Snapshot(roomName, state));
+                written.put(file.getName(), crc(state));
+            } catch (IOException e) {
+                LoggerUtil.INSTANCE.warning(String.format("Skipping room snapshot %s: %s", file.getName(),
+                        e.getMessage()));
+            }
+        }
+        return snapshots;
+    }
+
+    private static long crc(byte[] state) {
+        CRC32 crc = new CRC32();
+        crc.update(state);
+        return crc.getValue();
+    }
+
+    private static String fileName(String roomName) {
+        // Room names are case-insensitive, same as the Server's map keys
+        return URLEncoder.encode(roomName.toLowerCase(), StandardCharsets.UTF_8) + FILE_SUFFIX;
+    }
+}
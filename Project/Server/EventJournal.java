@@ -0,0 +1,263 @@
+package Project.Server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+
+/**
+ * Structured binary journal of server events.
+ * <p>
+ * Each event is a fixed 64 byte record (see the RECORD_* offsets) appended to
+ * a memory-mapped segment file. Writers claim a record slot with a single
+ * atomic increment so there's no lock on the hot path; a new segment is mapped
+ * when the current one is full and only the newest {@code maxSegments} files
+ * are kept. Use Project.Tools.JournalDecoder to print the records as JSON
+ * lines.
+ * </p>
+ * <p>
+ * The journal is disabled (every record call is a no-op) until open() is
+ * called.
+ * </p>
+ */
+public enum EventJournal {
+    INSTANCE; // Singleton instance
+
+    public enum EventType {
+        CONNECT, // clientId, text=client name
+        DISCONNECT, // clientId, text=client name
+        RESUME, // clientId, text=client name
+        ROOM_JOIN, // clientId, text=room
+        ROOM_LEAVE, // clientId, text=room
+        PAYLOAD_IN, // clientId, payloadType, value=message length, text=room
+        PAYLOAD_OUT, // clientId, payloadType, value=message length, text=room
+        ROUND_RESULT, // clientId, aux=round, value=wins, flags=1 if round winner, text=room
+        TIMER_FIRED // aux=TimerType ordinal, text=room
+    }
+
+    // record layout (big-endian)
+    public static final int RECORD_SIZE = 64;
+    public static final int RECORD_TIME = 0; // long epoch millis (0 marks the unused tail of a segment)
+    public static final int RECORD_TYPE = 8; // byte EventType ordinal
+    public static final int RECORD_PAYLOAD_TYPE = 9; // byte PayloadType ordinal or -1
+    public static final int RECORD_FLAGS = 10; // short
+    public static final int RECORD_AUX = 12; // int
+    public static final int RECORD_CLIENT_ID = 16; // long
+    public static final int RECORD_VALUE = 24; // long
+    public static final int RECORD_TEXT = 32; // 32 bytes of ASCII, zero padded
+    public static final int TEXT_SIZE = RECORD_SIZE - RECORD_TEXT;
+
+    public static final String SEGMENT_PREFIX = "journal-";
+    public static final String SEGMENT_SUFFIX = ".bin";
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+    /**
+     * One mapped segment file
+     */
+    private static class Segment {
+        private final long sequence;
+        private final MappedByteBuffer buffer;
+        private final int capacity; // in records
+        private final AtomicInteger next = new AtomicInteger(0);
+
+        private Segment(long sequence, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity() / RECORD_SIZE;
+        }
+    }
+
+    private File directory;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private int maxSegments = DEFAULT_MAX_SEGMENTS;
+    private volatile Segment current = null;
+    private volatile boolean enabled = false;
+
+    /**
+     * Starts journaling into the directory (continuing after the newest existing
+     * segment)
+     *
+     * @param directory
+     * @param segmentSize bytes per segment file (rounded down to whole records)
+     * @param maxSegments segment files to keep
+     * @throws IOException
+     */
+    public synchronized void open(File directory, int segmentSize, int maxSegments) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create journal directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = Math.max(RECORD_SIZE, segmentSize / RECORD_SIZE * RECORD_SIZE);
+        this.maxSegments = Math.max(1, maxSegments);
+        long[] existing = listSequences(directory);
+        current = map(existing.length == 0 ? 0 : existing[existing.length - 1] + 1);
+        enabled = true;
+        LoggerUtil.INSTANCE.info(String.format("Journaling events to %s", directory.getAbsolutePath()));
+    }
+
+    public void open(File directory) throws IOException {
+        open(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Flushes the current segment to disk and stops journaling
+     */
+    public synchronized void close() {
+        enabled = false;
+        if (current != null) {
+            current.buffer.force();
+            current = null;
+        }
+    }
+
+    /**
+     * @param directory
+     * @return the segment sequence numbers found in the directory, oldest first
+     */
+    public static long[] listSequences(File directory) {
+        String[] names = directory.list((dir, name) -> name.startsWith(SEGMENT_PREFIX)
+                && name.endsWith(SEGMENT_SUFFIX));
+        if (names == null) {
+            return new long[0];
+        }
+        return Arrays.stream(names).mapToLong(name -> {
+            try {
+                return Long.parseLong(
+                        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }).filter(sequence -> sequence >= 0).sorted().toArray();
+    }
+
+    public static File segmentFile(File directory, long sequence) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private Segment map(long sequence) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(directory, sequence), "rw");
+                FileChannel channel = file.getChannel()) {
+            // the mapping stays valid after the channel is closed
+            return new Segment(sequence, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    /**
+     * Maps the next segment (if another writer hasn't already) and deletes the
+     * oldest ones past maxSegments
+     *
+     * @param full the segment that ran out of space
+     */
+    private synchronized void rotate(Segment full) {
+        if (current != full || !enabled) {
+            return;
+        }
+        try {
+            full.buffer.force();
+            current = map(full.sequence + 1);
+            long[] sequences = listSequences(directory);
+            for (int i = 0; i < sequences.length - maxSegments; i++) {
+                segmentFile(directory, sequences[i]).delete();
+            }
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe("Failed to rotate the event journal, journaling stopped", e);
+            enabled = false;
+        }
+    }
+
+    /**
+     * Appends a record
+     */
+    private void record(EventType type, int payloadType, int flags, int aux, long clientId, long value,
+            String text) {
+        if (!enabled) {
+            return;
+        }
+        while (true) {
+            Segment segment = current;
+            if (segment == null) {
+                return;
+            }
+            int slot = segment.next.getAndIncrement();
+            if (slot >= segment.capacity) {
+                rotate(segment);
+                if (!enabled) {
+                    return;
+                }
+                continue;
+            }
+            // absolute puts only, so writers of different slots don't interfere
+            ByteBuffer buffer = segment.buffer;
+            int base = slot * RECORD_SIZE;
+            buffer.put(base + RECORD_TYPE, (byte) type.ordinal());
+            buffer.put(base + RECORD_PAYLOAD_TYPE, (byte) payloadType);
+            buffer.putShort(base + RECORD_FLAGS, (short) flags);
+            buffer.putInt(base + RECORD_AUX, aux);
+            buffer.putLong(base + RECORD_CLIENT_ID, clientId);
+            buffer.putLong(base + RECORD_VALUE, value);
+            int length = text == null ? 0 : Math.min(text.length(), TEXT_SIZE);
+            for (int i = 0; i < TEXT_SIZE; i++) {
+                char c = i < length ? text.charAt(i) : 0;
+                buffer.put(base + RECORD_TEXT + i, (byte) (c < 128 ? c : '?'));
+            }
+            // written last so a non-zero time means the record is complete
+            buffer.putLong(base + RECORD_TIME, System.currentTimeMillis());
+            return;
+        }
+    }
+
+    // events
+    public void connect(long clientId, String clientName) {
+        record(EventType.CONNECT, -1, 0, 0, clientId, 0, clientName);
+    }
+
+    public void disconnect(long clientId, String clientName) {
+        record(EventType.DISCONNECT, -1, 0, 0, clientId, 0, clientName);
+    }
+
+    public void resume(long clientId, String clientName) {
+        record(EventType.RESUME, -1, 0, 0, clientId, 0, clientName);
+    }
+
+    public void roomJoin(long clientId, String room) {
+        record(EventType.ROOM_JOIN, -1, 0, 0, clientId, 0, room);
+    }
+
+    public void roomLeave(long clientId, String room) {
+        record(EventType.ROOM_LEAVE, -1, 0, 0, clientId, 0, room);
+    }
+
+    public void payloadIn(long clientId, Payload payload, String room) {
+        if (enabled) {
+            record(EventType.PAYLOAD_IN, payload.getPayloadType().ordinal(), 0, 0, clientId,
+                    payload.getMessage() == null ? 0 : payload.getMessage().length(), room);
+        }
+    }
+
+    public void payloadOut(long clientId, Payload payload, String room) {
+        if (enabled) {
+            record(EventType.PAYLOAD_OUT, payload.getPayloadType().ordinal(), 0, 0, clientId,
+                    payload.getMessage() == null ? 0 : payload.getMessage().length(), room);
+        }
+    }
+
+    public void roundResult(String room, int round, long clientId, int wins, boolean roundWinner) {
+        record(EventType.ROUND_RESULT, -1, roundWinner ? 1 : 0, round, clientId, wins, room);
+    }
+
+    public void timerFired(String room, Project.Common.TimerType timerType) {
+        record(EventType.TIMER_FIRED, -1, 0, timerType.ordinal(), 0, 0, room);
+    }
+}
@@ -0,0 +1,292 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import Project.Common.LogCategory;
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+import Project.Common.Payload;
+import Project.Common.TimerType;
+import Project.Common.TraceContext;
+
+/**
+ * Benchmark of Room broadcasts (Room.relay, Room.joinStatusRelay and
+ * BaseGameRoom.sendCurrentTime) against real, running ServerThreads.
+ * <p>
+ * Usage: java Project.Server.FanoutBench [--members=10,100,1000]
+ * [--sizes=32,1024] [--senders=4] [--duration=5] [--backlog=32] [--tcp-nodelay]
+ * (duration in seconds, sizes in characters, backlog in payloads per member)
+ * </p>
+ * <p>
+ * Every member is a ServerThread over a loopback socket whose client end is
+ * read and deserialized by a virtual thread, so a message counts as delivered
+ * once a client decoded it. Sender threads broadcast as fast as the backlog
+ * (enqueued but not yet delivered) allows. Each broadcast carries a trace
+ * stamped when it began, so delivery latency is broadcast start to decode.
+ * Lock wait is the time the senders spent BLOCKED on monitors (the Room's,
+ * plus the OutboundQueues') from the JVM's thread contention monitoring. It
+ * lives in this package for access to the Room/ServerThread internals.
+ * </p>
+ */
+public class FanoutBench {
+    /**
+     * What a sender does on every iteration
+     */
+    public enum Scenario {
+        RELAY, JOIN_STATUS, CURRENT_TIME
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private int[] members = { 10, 100, 1000 };
+    private int[] sizes = { 32, 1024 };
+    private int senders = 4;
+    private long durationMs = 5_000;
+    private int backlogPerMember = 32;
+    private boolean tcpNoDelay = false;
+    private final PrintStream out;
+
+    // delivery side, reset for every run
+    private final LongAdder delivered = new LongAdder();
+    private volatile Metrics.Histogram latency = new Metrics.Histogram();
+
+    public FanoutBench(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * A GameRoom of running ServerThreads and the client ends reading from them
+     */
+    private class LoopbackRoom {
+        private final GameRoom room;
+        private final List<ServerThread> threads = new ArrayList<>();
+        private final List<Socket> clients = new ArrayList<>();
+
+        private LoopbackRoom(int size) throws IOException, InterruptedException {
+            room = new GameRoom("fanout_" + size);
+            try (ServerSocket listener = new ServerSocket(0, size, InetAddress.getLoopbackAddress())) {
+                for (int i = 0; i < size; i++) {
+                    Socket client = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+                    client.setTcpNoDelay(true);
+                    Socket accepted = listener.accept();
+                    // Server doesn't set it, so by default neither do we
+                    accepted.setTcpNoDelay(tcpNoDelay);
+                    ServerThread thread = new ServerThread(accepted, t -> {
+                    });
+                    thread.setClientId(i + 1);
+                    thread.setClientName("member" + i);
+                    thread.start();
+                    ObjectOutputStream handshake = new ObjectOutputStream(client.getOutputStream());
+                    handshake.flush(); // the server side's ObjectInputStream waits for the header
+                    Thread.ofVirtual().start(() -> read(client));
+                    threads.add(thread);
+                    clients.add(client);
+                }
+            }
+            for (ServerThread thread : threads) {
+                while (!thread.isRunning()) {
+                    Thread.sleep(1);
+                }
+            }
+            room.addClients(threads);
+        }
+    }
+
+    private void read(Socket client) {
+        try (ObjectInputStream in = new ObjectInputStream(client.getInputStream())) {
+            while (true) {
+                Payload payload = (Payload) in.readObject();
+                TraceContext trace = payload.getTrace();
+                if (trace != null) {
+                    delivered.increment();
+                    latency.record(TraceContext.between(trace.getServerReceive(), TraceContext.now()));
+                }
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            // closed at the end of the run
+        }
+    }
+
+    /**
+     * @return milliseconds the calling thread has spent BLOCKED on monitors
+     */
+    private static long blockedTime() {
+        return Math.max(0, THREADS.getThreadInfo(Thread.currentThread().threadId()).getBlockedTime());
+    }
+
+    private void broadcast(LoopbackRoom loopback, Scenario scenario, String message, ServerThread joiner,
+            boolean join) {
+        switch (scenario) {
+            case RELAY:
+                ServerThread sender = loopback.threads.get(ThreadLocalRandom.current().nextInt(loopback.threads.size()));
+                loopback.room.relay(sender, message);
+                break;
+            case JOIN_STATUS:
+                // addClient()/removeClient() call it while holding the monitor
+                synchronized (loopback.room) {
+                    loopback.room.joinStatusRelay(joiner, join);
+                }
+                break;
+            case CURRENT_TIME:
+                loopback.room.sendCurrentTime(TimerType.ROUND, ThreadLocalRandom.current().nextInt(30));
+                break;
+        }
+    }
+
+    /**
+     * Payloads one broadcast delivers to every member
+     */
+    private static int payloadsPerMember(Scenario scenario) {
+        return scenario == Scenario.JOIN_STATUS ? 2 : 1;
+    }
+
+    private void run(LoopbackRoom loopback, Scenario scenario, int size) throws InterruptedException {
+        int recipients = loopback.threads.size();
+        String message = "x".repeat(size);
+        // the joiner's name carries the message size for JOIN_STATUS
+        ServerThread joiner = new ServerThread(new Socket(), t -> {
+        });
+        joiner.setClientId(recipients + 1);
+        joiner.setClientName("j".repeat(size));
+        delivered.reset();
+        latency = new Metrics.Histogram();
+        AtomicLong expected = new AtomicLong();
+        LongAdder broadcasts = new LongAdder();
+        long maxBacklog = (long) backlogPerMember * recipients;
+        long deadline = System.currentTimeMillis() + durationMs;
+        LongAdder blockedMs = new LongAdder();
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < senders; i++) {
+            Thread worker = new Thread(() -> {
+                long blockedStart = blockedTime();
+                boolean join = true;
+                while (System.currentTimeMillis() < deadline) {
+                    if (expected.get() - delivered.sum() > maxBacklog) {
+                        // past saturation latency would only measure queueing
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    TraceContext trace = TraceContext.start();
+                    trace.markServerReceive();
+                    TraceContext.setCurrent(trace);
+                    expected.addAndGet((long) recipients * payloadsPerMember(scenario));
+                    broadcast(loopback, scenario, message, joiner, join);
+                    TraceContext.setCurrent(null);
+                    broadcasts.increment();
+                    join = !join;
+                }
+                blockedMs.add(blockedTime() - blockedStart);
+            }, "FanoutSender-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        // let the writers catch up
+        long drainDeadline = System.currentTimeMillis() + 10_000;
+        while (delivered.sum() < expected.get() && System.currentTimeMillis() < drainDeadline) {
+            Thread.sleep(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Metrics.HistogramSnapshot snapshot = latency.snapshot(false);
+        long ops = broadcasts.sum();
+        out.println(String.format("%-13s %7s %6s %10s %14.0f %10s %10s %10s %12.1f %9s", scenario, recipients,
+                scenario == Scenario.CURRENT_TIME ? "-" : size, ops, delivered.sum() / seconds,
+                snapshot.getPercentile(50), snapshot.getPercentile(99), snapshot.getMax(),
+                ops == 0 ? 0.0 : blockedMs.sum() * 1000.0 / ops, expected.get() - delivered.sum()));
+    }
+
+    public void run() throws IOException, InterruptedException {
+        for (LogCategory category : LogCategory.values()) {
+            LoggerUtil.INSTANCE.setLevel(category, Level.OFF);
+        }
+        if (THREADS.isThreadContentionMonitoringSupported()) {
+            THREADS.setThreadContentionMonitoringEnabled(true);
+        }
+        out.println(String.format("senders=%s duration=%ss backlog=%s per member tcpNoDelay=%s", senders,
+                durationMs / 1000.0, backlogPerMember, tcpNoDelay));
+        out.println(String.format("%-13s %7s %6s %10s %14s %10s %10s %10s %12s %9s", "scenario", "members", "size",
+                "broadcasts", "delivered/s", "p50(us)", "p99(us)", "max(us)", "wait us/op", "undeliv."));
+        for (int size : members) {
+            LoopbackRoom loopback = new LoopbackRoom(size);
+            Thread.sleep(200); // let the join traffic drain
+            for (Scenario scenario : Scenario.values()) {
+                if (scenario == Scenario.CURRENT_TIME) {
+                    run(loopback, scenario, 0);
+                    continue;
+                }
+                for (int messageSize : sizes) {
+                    run(loopback, scenario, messageSize);
+                }
+            }
+        }
+        out.println("(latency percentiles are the upper bound of their power-of-two bucket)");
+    }
+
+    private static int[] parseList(String value) {
+        String[] parts = value.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Math.max(1, Integer.parseInt(parts[i].trim()));
+        }
+        return values;
+    }
+
+    private void apply(String arg) {
+        String[] setting = arg.split("=", 2);
+        String value = setting.length > 1 ? setting[1] : "";
+        switch (setting[0]) {
+            case "--members":
+                members = parseList(value);
+                break;
+            case "--sizes":
+                sizes = parseList(value);
+                break;
+            case "--senders":
+                senders = Math.max(1, Integer.parseInt(value));
+                break;
+            case "--duration":
+                durationMs = (long) (Double.parseDouble(value) * 1000);
+                break;
+            case "--tcp-nodelay":
+                tcpNoDelay = true;
+                break;
+            case "--backlog":
+                backlogPerMember = Math.max(1, Integer.parseInt(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + setting[0]);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        FanoutBench bench = new FanoutBench(System.out);
+        for (String arg : args) {
+            try {
+                bench.apply(arg);
+            } catch (Exception e) {
+                System.err.println("Ignoring invalid argument " + arg);
+            }
+        }
+        bench.run();
+        // the rooms are left connected until here (tearing them down runs the game's
+        // cleanup and the Room migration, which need a running Server)
+        System.exit(0);
+    }
+}
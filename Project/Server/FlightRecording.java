@@ -0,0 +1,77 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.Date;
+
+import Project.Common.FlightEvents;
+import Project.Common.LoggerUtil;
+import Project.Common.TextFX;
+import Project.Common.TextFX.Color;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Continuous Java Flight Recorder recording (enable with --jfr or
+ * --jfr=directory).
+ * <p>
+ * Uses the JDK's "default" settings plus the FlightEvents and keeps a rolling
+ * on-disk buffer bounded by size and age. The buffer is written to the
+ * directory when the JVM exits or on demand (console command "jfr").
+ * </p>
+ */
+public class FlightRecording {
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024; // 256MB
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofHours(1);
+
+    private final Path directory;
+    private final Recording recording;
+
+    private void info(String message) {
+        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("JFR: %s", message), Color.GREEN));
+    }
+
+    private static String timestamp() {
+        return new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    }
+
+    public FlightRecording(Path directory) throws IOException, ParseException {
+        this.directory = Files.createDirectories(directory);
+        recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName("it114-continuous");
+        recording.setToDisk(true);
+        recording.setMaxSize(DEFAULT_MAX_SIZE);
+        recording.setMaxAge(DEFAULT_MAX_AGE);
+        // no duration threshold; they're cheap and we want every one
+        recording.enable(FlightEvents.PayloadDecode.class);
+        recording.enable(FlightEvents.PayloadDispatch.class);
+        recording.enable(FlightEvents.RoomBroadcast.class);
+        recording.enable(FlightEvents.RoundEnd.class);
+        recording.enable(FlightEvents.RoundResolution.class);
+        recording.enable(FlightEvents.TimerFired.class);
+        recording.setDestination(directory.resolve(String.format("server-%s.jfr", timestamp())));
+        recording.setDumpOnExit(true);
+    }
+
+    public void start() {
+        recording.start();
+        info(String.format("Continuous recording started, written to %s on exit", recording.getDestination()));
+    }
+
+    /**
+     * Writes what's currently in the buffer without stopping the recording
+     *
+     * @return the file written
+     * @throws IOException
+     */
+    public Path dump() throws IOException {
+        Path file = directory.resolve(String.format("dump-%s.jfr", timestamp()));
+        recording.dump(file);
+        info("Dumped recording to " + file);
+        return file;
+    }
+}
@@ -1,18 +1,25 @@
 package Project.Server;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
 import java.util.stream.Collectors;
 
 import Project.Common.Constants;
+import Project.Common.FlightEvents;
+import Project.Common.GameClock;
 import Project.Common.GameOverPayload;
 import Project.Common.GameMode;
 import Project.Common.GameModePayload;
+import Project.Common.LogCategory;
 import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
 import Project.Common.Phase;
 import Project.Common.TimedEvent;
 import Project.Common.TimerType;
@@ -31,18 +38,60 @@ public class GameRoom extends BaseGameRoom {
     private TimedEvent turnTimer = null;
     private List<ServerThread> turnOrder = new ArrayList<>();
     private long currentTurnClientId = Constants.DEFAULT_CLIENT_ID;
-    private int round = 0;
-    private GameMode gameMode = GameMode.RPS_3; // Default to RPS-3
-    private boolean cooldownEnabled = false; // Track if cooldown is enabled
+    // volatile so status snapshots can read these without the Room monitor
+    private volatile int round = 0;
+    // time spent resolving a round (eliminations, winners, points)
+    private static final Metrics.Histogram ROUND_END_NS = Metrics.INSTANCE.histogram("game.round_end_ns");
+    private volatile GameMode gameMode = GameMode.RPS_3; // Default to RPS-3
+    private volatile boolean cooldownEnabled = false; // Track if cooldown is enabled
     private boolean gameStarted = false; // Track if this is the first round or a subsequent one
+    // the rules run here, this class applies and broadcasts their results
+    private final RulesEngine rules = new RulesEngine();
+    // restored from a checkpoint: the turn order to rebuild once the members
+    // reconnected (or the grace window ran out)
+    private List<Long> restoredTurnOrder = null;
+    private TimedEvent restoreTimer = null;
+    // turn order shuffles and turn points; seeded with the clock to replay a simulation
+    private final Random random;
 
     public GameRoom(String name) {
-        super(name);
+        this(name, GameClock.SYSTEM);
+    }
+
+    /**
+     * @param name  the Room name
+     * @param clock the clock the ready/round/turn timers run on, i.e. a
+     *              VirtualClock to simulate sessions
+     */
+    public GameRoom(String name, GameClock clock) {
+        this(name, clock, new Random());
+    }
+
+    /**
+     * @param name   the Room name
+     * @param clock  the clock the ready/round/turn timers run on
+     * @param random the source of the Room's random decisions, i.e. a seeded
+     *               Random with a VirtualClock for a deterministic simulation
+     */
+    public GameRoom(String name, GameClock clock, Random random) {
+        super(name, clock);
+        this.random = random;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = super.getStatus();
+        status.put("round", round);
+        status.put("gameMode", gameMode.name());
+        status.put("cooldown", cooldownEnabled);
+        return status;
     }
 
     /** {@inheritDoc} */
     @Override
     protected void onClientAdded(ServerThread sp) {
+        onMemberReturned();
         // sync GameRoom state to new client
 
         syncCurrentPhase(sp);
@@ -62,8 +111,9 @@ public class GameRoom extends BaseGameRoom {
     protected void onClientRemoved(ServerThread sp) {
         // added after Summer 2024 Demo
         // Stops the timers so room can clean up
-        LoggerUtil.INSTANCE.info("Player Removed, remaining: " + clientsInRoom.size());
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "Player Removed, remaining: %s", clientsInRoom.size());
         long removedClient = sp.getClientId();
+        StateLog.INSTANCE.leave(getName(), removedClient);
         turnOrder.removeIf(player -> player.getClientId() == sp.getClientId());
         if (clientsInRoom.isEmpty()) {
             resetReadyTimer();
@@ -75,9 +125,173 @@ public class GameRoom extends BaseGameRoom {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected void onClosing(List<ServerThread> migrating) {
+        super.onClosing(migrating);
+        // so no timer fires on the closed Room
+        resetRoundTimer();
+        resetTurnTimer();
+        if (restoreTimer != null) {
+            restoreTimer.cancel();
+            restoreTimer = null;
+        }
+        migrating.forEach(client -> StateLog.INSTANCE.leave(getName(), client.getClientId()));
+        if (!migrating.isEmpty()) {
+            // the last member leaving already ended the session otherwise
+            onSessionEnd();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void onClientReplaced(ServerThread previous, ServerThread resumed) {
+        // keep the resumed player's seat in the turn order
+        turnOrder.replaceAll(player -> player == previous ? resumed : player);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected boolean hasActiveTimers() {
+        return super.hasActiveTimers() || roundTimer != null || turnTimer != null || restoreTimer != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void writeState(DataOutputStream out) throws IOException {
+        super.writeState(out);
+        out.writeInt(round);
+        out.writeByte(gameMode.ordinal());
+        out.writeBoolean(cooldownEnabled);
+        out.writeBoolean(gameStarted);
+        out.writeLong(currentTurnClientId);
+        out.writeInt(turnOrder.size());
+        for (ServerThread player : turnOrder) {
+            out.writeLong(player.getClientId());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void readState(DataInputStream in, List<MemberState> absent) throws IOException {
+        super.readState(in, absent);
+        round = in.readInt();
+        gameMode = GameMode.values()[in.readByte()];
+        cooldownEnabled = in.readBoolean();
+        gameStarted = in.readBoolean();
+        currentTurnClientId = in.readLong();
+        int players = in.readInt();
+        List<Long> ids = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            ids.add(in.readLong());
+        }
+        restoredTurnOrder = ids;
+        rebuildTurnOrder();
+        // absent players may still come back to a restored Room
+        restoredTurnOrder = absent.isEmpty() ? null : ids;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void onRestore(List<MemberState> absent) {
+        if (restoredTurnOrder == null && currentPhase == Phase.IN_PROGRESS) {
+            // recovered from the StateLog alone (no checkpointed turn order), seat them in join order
+            restoredTurnOrder = absent.stream().map(MemberState::clientId).toList();
+        }
+        if (!absent.isEmpty()) {
+            // the game carries on once everyone is back or the grace window ran out
+            restoreTimer = new TimedEvent(getClock(), ResumableSessions.DEFAULT_GRACE_SECONDS,
+                    this::resumeRestoredGame);
+        }
+    }
+
+    /**
+     * Resumes a restored game once the last restored member reconnected
+     */
+    private synchronized void onMemberReturned() {
+        if (restoreTimer != null && getSeatCount() == 0) {
+            resumeRestoredGame();
+        }
+    }
+
+    /**
+     * Picks the restored game back up: the current round gets a fresh round timer
+     * (the members kept the picks they had made, see MemberState), or the ready
+     * timer if anyone was ready. Closes the Room if nobody came back.
+     */
+    private synchronized void resumeRestoredGame() {
+        if (restoreTimer != null) {
+            restoreTimer.cancel();
+            restoreTimer = null;
+        }
+        int missing = clearSeats();
+        if (missing > 0) {
+            LoggerUtil.INSTANCE.info(LogCategory.GAME, "Room %s resuming without %s player(s)", getName(), missing);
+        }
+        rebuildTurnOrder();
+        restoredTurnOrder = null;
+        if (clientsInRoom.isEmpty()) {
+            close();
+            return;
+        }
+        if (currentPhase == Phase.IN_PROGRESS) {
+            replay.keyframe(round, currentPhase, gameMode, cooldownEnabled, clientsInRoom.values());
+            sendGameEvent(String.format("Round %d has resumed", round));
+            startRoundTimer();
+        } else if (clientsInRoom.values().stream().anyMatch(ServerThread::isReady)) {
+            startReadyTimer(false);
+        }
+    }
+
+    /**
+     * Records the phase, round and game mode in the StateLog after they changed
+     */
+    private void logGameState() {
+        StateLog.INSTANCE.game(getName(), currentPhase, round, gameMode, cooldownEnabled, gameStarted);
+    }
+
+    /**
+     * Applies a game state recovered from the StateLog to a restored Room (no
+     * one is connected yet, so nothing is sent)
+     */
+    synchronized void recoverGameState(Phase phase, int round, GameMode gameMode, boolean cooldown,
+            boolean gameStarted) {
+        this.currentPhase = phase;
+        this.round = round;
+        this.gameMode = gameMode;
+        this.cooldownEnabled = cooldown;
+        this.gameStarted = gameStarted;
+    }
+
+    /**
+     * Maps the restored turn order ids to the members in the Room
+     */
+    private void rebuildTurnOrder() {
+        if (restoredTurnOrder == null) {
+            return;
+        }
+        turnOrder = restoredTurnOrder.stream()
+                .map(clientsInRoom::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void onHibernate() {
+        replay.release();
+        turnOrder = new ArrayList<>(0);
+        synchronized (rules) {
+            rules.trim();
+        }
+    }
+
     // timer handlers
     private void startRoundTimer() {
-        roundTimer = new TimedEvent(30, () -> onRoundEnd());
+        roundTimer = new TimedEvent(getClock(), 30, () -> {
+            EventJournal.INSTANCE.timerFired(getName(), TimerType.ROUND);
+            onRoundEnd();
+        });
         roundTimer.setTickCallback((time) -> {
             System.out.println("Round Time: " + time);
             sendCurrentTime(TimerType.ROUND, time);
@@ -93,7 +307,10 @@ public class GameRoom extends BaseGameRoom {
     }
 
     private void startTurnTimer() {
-        turnTimer = new TimedEvent(30, () -> onTurnEnd());
+        turnTimer = new TimedEvent(getClock(), 30, () -> {
+            EventJournal.INSTANCE.timerFired(getName(), TimerType.TURN);
+            onTurnEnd();
+        });
         turnTimer.setTickCallback((time) -> {
             System.out.println("Turn Time: " + time);
             sendCurrentTime(TimerType.TURN, time);
@@ -114,8 +331,9 @@ public class GameRoom extends BaseGameRoom {
     /** {@inheritDoc} */
     @Override
     protected void onSessionStart() {
-        LoggerUtil.INSTANCE.info("onSessionStart() start");
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onSessionStart() start");
         gameStarted = true;
+        replay.sessionStart();
         changePhase(Phase.IN_PROGRESS);
         currentTurnClientId = Constants.DEFAULT_CLIENT_ID;
 
@@ -129,6 +347,7 @@ public class GameRoom extends BaseGameRoom {
                 cp.setSpectator(true);
                 cp.setPayloadType(Project.Common.PayloadType.SYNC_CLIENT);
                 clientsInRoom.values().forEach(client -> client.sendToClient(cp));
+                replay.join(p.getClientId(), p.getDisplayName(), true, true);
 
                 sendGameEvent(String.format("%s is now spectating", p.getDisplayName()));
             }
@@ -138,30 +357,33 @@ public class GameRoom extends BaseGameRoom {
         setTurnOrder();
         round = 0;
         resetEliminationStatus();
-        LoggerUtil.INSTANCE.info("onSessionStart() end");
+        logMembers();
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onSessionStart() end");
         onRoundStart();
     }
 
     /** {@inheritDoc} */
     @Override
     protected void onRoundStart() {
-        LoggerUtil.INSTANCE.info("onRoundStart() start");
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onRoundStart() start");
         resetRoundTimer();
         resetTurnStatus();
         round++;
+        logGameState();
+        replay.keyframe(round, currentPhase, gameMode, cooldownEnabled, clientsInRoom.values());
         sendGameEvent(String.format("Round %d has started", round));
         startRoundTimer(); // Start 30-second round timer
 
         // RPS is simultaneous - all players pick at once, no turns needed
         // Players can now make their choices immediately
 
-        LoggerUtil.INSTANCE.info("onRoundStart() end");
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onRoundStart() end");
     }
 
     /** {@inheritDoc} */
     @Override
     protected void onTurnStart() {
-        LoggerUtil.INSTANCE.info("onTurnStart() start");
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onTurnStart() start");
         resetTurnTimer();
         try {
             ServerThread currentPlayer = getNextPlayer();
@@ -172,7 +394,7 @@ public class GameRoom extends BaseGameRoom {
             e.printStackTrace();
         }
         startTurnTimer();
-        LoggerUtil.INSTANCE.info("onTurnStart() end");
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onTurnStart() end");
     }
 
     // Note: logic between Turn Start and Turn End is typically handled via timers
@@ -180,7 +402,7 @@ public class GameRoom extends BaseGameRoom {
     /** {@inheritDoc} */
     @Override
     protected void onTurnEnd() {
-        LoggerUtil.INSTANCE.info("onTurnEnd() start");
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onTurnEnd() start");
         resetTurnTimer(); // reset timer if turn ended without the time expiring
         try {
             // optionally can use checkAllTookTurn();
@@ -194,7 +416,7 @@ public class GameRoom extends BaseGameRoom {
 
             e.printStackTrace();
         }
-        LoggerUtil.INSTANCE.info("onTurnEnd() end");
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onTurnEnd() end");
     }
 
     // Note: logic between Round Start and Round End is typically handled via timers
@@ -202,30 +424,85 @@ public class GameRoom extends BaseGameRoom {
     /** {@inheritDoc} */
     @Override
     protected void onRoundEnd() {
-        LoggerUtil.INSTANCE.info("onRoundEnd() start");
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onRoundEnd() start");
+        FlightEvents.RoundEnd roundEnd = new FlightEvents.RoundEnd();
+        roundEnd.begin();
+        final int endingRound = round;
+        long start = System.nanoTime();
         resetRoundTimer(); // reset timer if round ended without the time expiring
         resetReadyTimer(); // Reset ready timer so it doesn't expire with 0 ready players
 
-        // NEW: Eliminate players who didn't make a choice
-        eliminateNonPickers();
-
-        // Determine winners and award points
-        determineRoundWinnersAndAwardPoints();
+        boolean sessionOver = resolveRound();
 
-        // Clear choices for next round (but keep players marked as ready)
-        resetChoices();
-
-        LoggerUtil.INSTANCE.info("onRoundEnd() end");
+        ROUND_END_NS.recordSince(start);
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onRoundEnd() end");
 
         // NEW: Check if game should end based on eliminations instead of fixed round
         // count
-        if (shouldEndSession()) {
+        if (sessionOver) {
             onSessionEnd();
         } else {
             // Automatically go to next round without requiring players to mark ready again
             changePhase(Phase.IN_PROGRESS);
             onRoundStart();
         }
+        roundEnd.end();
+        if (roundEnd.shouldCommit()) {
+            roundEnd.room = getName();
+            roundEnd.round = endingRound;
+            roundEnd.commit();
+        }
+    }
+
+    /**
+     * Applies the rules to the current picks: eliminations, round winners and
+     * points (no timers or phase changes, so RoundResolutionBench can drive it)
+     * 
+     * @return true if the session should end
+     */
+    boolean resolveRound() {
+        synchronized (rules) {
+            List<ServerThread> players = loadRules();
+            RulesEngine.RoundResult result = rules.resolveRound();
+
+            // NEW: Eliminate players who didn't make a choice
+            for (int k = 0; k < result.getNonPickerCount(); k++) {
+                ServerThread player = players.get(result.getNonPicker(k));
+                player.setEliminated(true);
+                sendEliminationStatus(player, true);
+                sendGameEvent(String.format("💀 %s was eliminated for not making a choice",
+                        player.getDisplayName()));
+            }
+
+            // Announce the battles, winners and losers
+            announceRoundResult(players, result);
+
+            // Clear choices for next round (but keep players marked as ready)
+            resetChoices();
+            logMembers();
+
+            return result.isSessionOver();
+        }
+    }
+
+    /**
+     * Loads every player in the room into the rules engine (call while holding
+     * its monitor)
+     * 
+     * @return the players by their engine index
+     */
+    private List<ServerThread> loadRules() {
+        List<ServerThread> players = new ArrayList<>(clientsInRoom.values());
+        rules.clear();
+        for (ServerThread player : players) {
+            int flags = (player.isReady() ? RulesEngine.READY : 0)
+                    | (player.isSpectator() ? RulesEngine.SPECTATOR : 0)
+                    | (player.isEliminated() ? RulesEngine.ELIMINATED : 0)
+                    | (player.isAway() ? RulesEngine.AWAY : 0);
+            rules.addPlayer(player.getClientId(), RulesEngine.choiceOrdinal(player.getChoice()), flags,
+                    player.getPoints());
+        }
+        return players;
     }
 
     /**
@@ -252,58 +529,43 @@ public class GameRoom extends BaseGameRoom {
     }
 
     /**
-     * Determines round winners and awards points using round-robin battles
-     * Each player battles every other player
-     * Compares all ready players' choices and determines winner(s)
-     * Excludes spectators, away players, and eliminated players
+     * Applies and broadcasts a resolved round: every battle between the active
+     * players (round-robin), the round winners' points and the eliminations of
+     * the players who won no battle
+     * 
+     * @param players the players by their engine index
+     * @param result  the engine's outcome
      */
-    private void determineRoundWinnersAndAwardPoints() {
-        List<ServerThread> activePlayers = clientsInRoom.values().stream()
-                .filter(p -> p.isReady() && !p.isSpectator() && !p.isEliminated() && !p.isAway())
-                .collect(Collectors.toList());
-
-        if (activePlayers.size() < 2) {
+    private void announceRoundResult(List<ServerThread> players, RulesEngine.RoundResult result) {
+        FlightEvents.RoundResolution resolution = new FlightEvents.RoundResolution();
+        resolution.begin();
+        if (result.isTooFewPlayers()) {
             sendGameEvent("Not enough active players to complete the round");
             return;
         }
 
-        // Get all choices
-        Map<ServerThread, String> playerChoices = new HashMap<>();
-        for (ServerThread player : activePlayers) {
-            String choice = player.getChoice();
-            if (choice == null || choice.trim().isEmpty()) {
-                // This shouldn't happen as eliminateNonPickers() runs first
-                sendGameEvent(String.format("%s did not make a choice", player.getDisplayName()));
-                return;
-            }
-            playerChoices.put(player, choice);
-        }
-
-        // Track wins for each player
-        Map<ServerThread, Integer> wins = new HashMap<>();
-        activePlayers.forEach(p -> wins.put(p, 0));
-
         // Round-robin battles: each player vs every other player
-        for (int i = 0; i < activePlayers.size(); i++) {
-            for (int j = i + 1; j < activePlayers.size(); j++) {
-                ServerThread player1 = activePlayers.get(i);
-                ServerThread player2 = activePlayers.get(j);
-                String choice1 = playerChoices.get(player1);
-                String choice2 = playerChoices.get(player2);
-
-                int result = compareChoices(choice1, choice2);
+        int activeCount = result.getActiveCount();
+        for (int a = 0; a < activeCount; a++) {
+            for (int b = a + 1; b < activeCount; b++) {
+                int first = result.getActive(a);
+                int second = result.getActive(b);
+                ServerThread player1 = players.get(first);
+                ServerThread player2 = players.get(second);
+                String choice1 = player1.getChoice();
+                String choice2 = player2.getChoice();
+
+                int outcome = RulesEngine.compare(rules.getChoice(first), rules.getChoice(second));
 
                 String battleMessage;
-                if (result > 0) {
+                if (outcome > 0) {
                     // Player 1 wins
-                    wins.put(player1, wins.get(player1) + 1);
                     battleMessage = String.format("%s (%s) vs %s (%s) - %s wins!",
                             player1.getDisplayName(), gameMode.getDisplay(choice1),
                             player2.getDisplayName(), gameMode.getDisplay(choice2),
                             player1.getDisplayName());
-                } else if (result < 0) {
+                } else if (outcome < 0) {
                     // Player 2 wins
-                    wins.put(player2, wins.get(player2) + 1);
                     battleMessage = String.format("%s (%s) vs %s (%s) - %s wins!",
                             player1.getDisplayName(), gameMode.getDisplay(choice1),
                             player2.getDisplayName(), gameMode.getDisplay(choice2),
@@ -319,15 +581,17 @@ public class GameRoom extends BaseGameRoom {
             }
         }
 
-        // Find players with most wins
-        int maxWins = wins.values().stream().max(Integer::compare).orElse(0);
-        List<ServerThread> roundWinners = wins.entrySet().stream()
-                .filter(e -> e.getValue() == maxWins && maxWins > 0)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        int maxWins = result.getMaxWins();
+        for (int k = 0; k < activeCount; k++) {
+            int index = result.getActive(k);
+            int wins = rules.getWins(index);
+            EventJournal.INSTANCE.roundResult(getName(), round, rules.getId(index), wins,
+                    wins == maxWins && maxWins > 0);
+        }
 
         // Award points to round winners
-        for (ServerThread winner : roundWinners) {
+        for (int k = 0; k < result.getWinnerCount(); k++) {
+            ServerThread winner = players.get(result.getWinner(k));
             winner.changePoints(1);
             sendPlayerPoints(winner);
             sendGameEvent(String.format("%s wins the round and gets 1 point! (Total: %d)",
@@ -335,47 +599,21 @@ public class GameRoom extends BaseGameRoom {
         }
 
         // Eliminate losers (players with 0 wins)
-        activePlayers.stream()
-                .filter(p -> wins.get(p) == 0)
-                .forEach(loser -> {
-                    loser.setEliminated(true);
-                    sendEliminationStatus(loser, true);
-                    sendGameEvent(String.format("💀 %s has been eliminated!",
-                            loser.getDisplayName()));
-                });
-
-        // Clear choices for next round
-        resetChoices();
-    }
-
-    /**
-     * Compares two Rock-Paper-Scissors choices
-     * 
-     * @return positive if choice1 wins, negative if choice2 wins, 0 if tie
-     */
-    private int compareChoices(String choice1, String choice2) {
-        if (choice1.equals(choice2)) {
-            return 0; // Tie
+        for (int k = 0; k < result.getLoserCount(); k++) {
+            ServerThread loser = players.get(result.getLoser(k));
+            loser.setEliminated(true);
+            sendEliminationStatus(loser, true);
+            sendGameEvent(String.format("💀 %s has been eliminated!",
+                    loser.getDisplayName()));
         }
 
-        // RPS-3: Rock beats Scissors, Scissors beats Paper, Paper beats Rock
-        // RPS-5: Rock beats Scissors & Lizard, Paper beats Rock & Spock,
-        // Scissors beats Paper & Lizard, Lizard beats Spock & Paper,
-        // Spock beats Scissors & Rock
-
-        switch (choice1) {
-            case "r": // Rock
-                return (choice2.equals("s") || choice2.equals("l")) ? 1 : -1;
-            case "p": // Paper
-                return (choice2.equals("r") || choice2.equals("k")) ? 1 : -1;
-            case "s": // Scissors
-                return (choice2.equals("p") || choice2.equals("l")) ? 1 : -1;
-            case "l": // Lizard
-                return (choice2.equals("k") || choice2.equals("p")) ? 1 : -1;
-            case "k": // Spock
-                return (choice2.equals("s") || choice2.equals("r")) ? 1 : -1;
-            default:
-                return 0;
+        resolution.end();
+        if (resolution.shouldCommit()) {
+            resolution.room = getName();
+            resolution.round = round;
+            resolution.players = activeCount;
+            resolution.winners = result.getWinnerCount();
+            resolution.commit();
         }
     }
 
@@ -389,7 +627,7 @@ public class GameRoom extends BaseGameRoom {
     /** {@inheritDoc} */
     @Override
     protected void onSessionEnd() {
-        LoggerUtil.INSTANCE.info("onSessionEnd() start");
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onSessionEnd() start");
         // ensure any pending ready timer is cancelled so it doesn't re-trigger
         resetReadyTimer();
         // also cancel any active round/turn timers to avoid stray callbacks
@@ -397,22 +635,15 @@ public class GameRoom extends BaseGameRoom {
         resetTurnTimer();
         // Determine session winner(s) before clearing state
         // Exclude spectators and away players from contenders
-        java.util.List<ServerThread> contenders = clientsInRoom.values().stream()
-                .filter(p -> !p.isSpectator() && !p.isAway())
-                .collect(Collectors.toList());
-        int topPoints = Integer.MIN_VALUE;
-        for (ServerThread p : contenders) {
-            if (p.getPoints() > topPoints) {
-                topPoints = p.getPoints();
-            }
-        }
-        java.util.List<String> winners = new ArrayList<>();
-        if (topPoints > Integer.MIN_VALUE) {
-            for (ServerThread p : contenders) {
-                if (p.getPoints() == topPoints) {
-                    winners.add(p.getDisplayName());
-                }
+        List<String> winners = new ArrayList<>();
+        int topPoints;
+        synchronized (rules) {
+            List<ServerThread> players = loadRules();
+            int winnerCount = rules.findSessionWinners();
+            for (int k = 0; k < winnerCount; k++) {
+                winners.add(players.get(rules.getSessionWinner(k)).getDisplayName());
             }
+            topPoints = rules.getTopPoints();
         }
 
         // Send game event message to announce winner(s) instead of popup
@@ -425,10 +656,11 @@ public class GameRoom extends BaseGameRoom {
             winnerMessage = String.format("Game Over: Tie between %s with %d point(s)!", String.join(", ", winners),
                     topPoints);
         }
-        sendGameEvent(winnerMessage);
+        sendGameOver(winnerMessage, winners);
 
         // NEW: Send final scoreboard
         sendFinalScoreboard();
+        replay.flush();
 
         // Clear session state
         turnOrder.clear();
@@ -439,7 +671,9 @@ public class GameRoom extends BaseGameRoom {
         resetEliminationStatus(); // NEW: Clear elimination status
         gameStarted = false; // Reset flag so next game starts from round 1
         changePhase(Phase.READY);
-        LoggerUtil.INSTANCE.info("onSessionEnd() end");
+        logMembers();
+        logGameState();
+        LoggerUtil.INSTANCE.info(LogCategory.GAME, "onSessionEnd() end");
     }
     // end lifecycle methods
 
@@ -459,6 +693,7 @@ public class GameRoom extends BaseGameRoom {
     }
 
     private void sendPlayerPoints(ServerThread sp) {
+        replay.points(sp.getClientId(), sp.getPoints());
         clientsInRoom.values().removeIf(spInRoom -> {
             boolean failedToSend = !spInRoom.sendPlayerPoints(sp.getClientId(), sp.getPoints());
             if (failedToSend) {
@@ -508,6 +743,7 @@ public class GameRoom extends BaseGameRoom {
      * @param eliminated true if eliminated, false if restored
      */
     private void sendEliminationStatus(ServerThread player, boolean eliminated) {
+        replay.elimination(player.getClientId(), eliminated);
         clientsInRoom.values().forEach(spInRoom -> {
             boolean failedToSend = !spInRoom.sendEliminationStatus(player.getClientId(), eliminated);
             if (failedToSend) {
@@ -516,36 +752,6 @@ public class GameRoom extends BaseGameRoom {
         });
     }
 
-    /**
-     * Eliminates all players who didn't make a choice before round ended
-     */
-    private void eliminateNonPickers() {
-        clientsInRoom.values().stream()
-                .filter(p -> p.isReady() && !p.isSpectator() && !p.isEliminated() && !p.isAway())
-                .forEach(player -> {
-                    String choice = player.getChoice();
-                    if (choice == null || choice.trim().isEmpty()) {
-                        player.setEliminated(true);
-                        sendEliminationStatus(player, true);
-                        sendGameEvent(String.format("💀 %s was eliminated for not making a choice",
-                                player.getDisplayName()));
-                    }
-                });
-    }
-
-    /**
-     * Checks if the session should end based on number of non-eliminated players
-     * 
-     * @return true if 1 or fewer players remain
-     */
-    private boolean shouldEndSession() {
-        long nonEliminatedCount = clientsInRoom.values().stream()
-                .filter(p -> p.isReady() && !p.isSpectator() && !p.isEliminated() && !p.isAway())
-                .count();
-
-        return nonEliminatedCount <= 1;
-    }
-
     /**
      * Resets elimination status for all players (called on session end)
      */
@@ -603,7 +809,7 @@ public class GameRoom extends BaseGameRoom {
         turnOrder = clientsInRoom.values().stream()
                 .filter(sp -> sp.isReady() && !sp.isSpectator() && !sp.isAway())
                 .collect(Collectors.toList());
-        Collections.shuffle(turnOrder);
+        Collections.shuffle(turnOrder, random);
     }
 
     /**
@@ -696,6 +902,7 @@ public class GameRoom extends BaseGameRoom {
      *                    additional actions or information)
      */
     protected void handleTurnAction(ServerThread currentUser, String exampleText) {
+        touch();
         // check if the client is in the room
         try {
             checkPlayerInRoom(currentUser);
@@ -707,11 +914,12 @@ public class GameRoom extends BaseGameRoom {
                 return;
             }
             // example points
-            int points = new Random().nextInt(4) == 3 ? 1 : 0;
+            int points = random.nextInt(4) == 3 ? 1 : 0;
             sendGameEvent(String.format("%s %s", currentUser.getDisplayName(),
                     points > 0 ? "gained a point" : "didn't gain a point"));
             if (points > 0) {
                 currentUser.changePoints(points);
+                logMember(currentUser);
                 sendPlayerPoints(currentUser);
             }
             currentUser.setTookTurn(true);
@@ -745,6 +953,7 @@ public class GameRoom extends BaseGameRoom {
      *                    choices)
      */
     protected void handlePlayerPick(ServerThread currentUser, String choice) {
+        touch();
         try {
             checkPlayerInRoom(currentUser);
             checkCurrentPhase(currentUser, Phase.IN_PROGRESS);
@@ -752,6 +961,8 @@ public class GameRoom extends BaseGameRoom {
 
             // Store the choice in the user object
             currentUser.setChoice(choice);
+            logMember(currentUser);
+            replay.pick(currentUser.getClientId(), choice);
 
             // Notify all players in the room that this player made a pick
             sendGameEvent(String.format("%s has selected their choice", currentUser.getDisplayName()));
@@ -801,6 +1012,7 @@ public class GameRoom extends BaseGameRoom {
      *                    setting
      */
     protected void handleGameModeChange(ServerThread currentUser, GameModePayload payload) {
+        touch();
         try {
             checkPlayerInRoom(currentUser);
 
@@ -814,12 +1026,13 @@ public class GameRoom extends BaseGameRoom {
             // Update the game mode and cooldown settings
             this.gameMode = payload.getGameMode();
             this.cooldownEnabled = payload.isCooldownEnabled();
+            logGameState();
 
             // Broadcast the change to all clients in the room
             broadcastGameModeChange(gameMode, cooldownEnabled);
 
-            LoggerUtil.INSTANCE
-                    .info(String.format("Game mode changed to %s (cooldown=%b)", gameMode.name(), cooldownEnabled));
+            LoggerUtil.INSTANCE.info(LogCategory.GAME, "Game mode changed to %s (cooldown=%b)", gameMode.name(),
+                    cooldownEnabled);
         } catch (PlayerNotFoundException e) {
             currentUser.sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in the GameRoom to change the game mode");
             LoggerUtil.INSTANCE.severe("handleGameModeChange exception", e);
@@ -836,6 +1049,7 @@ public class GameRoom extends BaseGameRoom {
      * @param cooldownEnabled whether cooldown is enabled
      */
     private void broadcastGameModeChange(GameMode gameMode, boolean cooldownEnabled) {
+        replay.gameMode(gameMode, cooldownEnabled);
         GameModePayload payload = new GameModePayload();
         payload.setGameMode(gameMode);
         payload.setCooldownEnabled(cooldownEnabled);
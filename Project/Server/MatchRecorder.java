@@ -0,0 +1,339 @@
+package Project.Server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+import Project.Common.GameClock;
+import Project.Common.GameMode;
+import Project.Common.LoggerUtil;
+import Project.Common.MatchReplay;
+import Project.Common.MatchReplay.EventType;
+import Project.Common.Metrics;
+import Project.Common.Phase;
+
+/**
+ * Records the games of every GameRoom into a replay file per Room (enable with
+ * --replays=dir), for the client's /replay. See MatchReplay for the format.
+ * <p>
+ * A Room's Recording is created with the Room and its file on the first event,
+ * named after the Room and the time it started. Events are buffered and the
+ * file is flushed at every round's keyframe (before its index entry, so the
+ * index never points past the data), at the end of a game and when the Room
+ * hibernates or closes. A crash loses at most the current round.
+ * </p>
+ * <p>
+ * The recorder is disabled (Rooms get a Recording that does nothing) until
+ * open() is called.
+ * </p>
+ */
+public enum MatchRecorder {
+    INSTANCE; // Singleton instance
+
+    private static final Metrics.Counter EVENTS = Metrics.INSTANCE.counter("replay.events");
+    private static final Metrics.Counter BYTES = Metrics.INSTANCE.counter("replay.bytes");
+    private static final Metrics.Counter KEYFRAMES = Metrics.INSTANCE.counter("replay.keyframes");
+    private static final Metrics.Counter FAILURES = Metrics.INSTANCE.counter("replay.failures");
+
+    private volatile File directory = null;
+
+    /**
+     * Starts recording the Rooms created from now on into the directory
+     *
+     * @param directory
+     * @throws IOException
+     */
+    public synchronized void open(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create replay directory " + directory);
+        }
+        this.directory = directory;
+        LoggerUtil.INSTANCE.info(String.format("Recording replays to %s", directory.getAbsolutePath()));
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * @param roomName
+     * @param clock    times the events (the Room's game clock)
+     * @return the Room's Recording (one that does nothing while disabled)
+     */
+    public Recording start(String roomName, GameClock clock) {
+        File dir = directory;
+        if (dir == null) {
+            return Recording.NONE;
+        }
+        long startMillis = clock.millis();
+        String fileName = String.format("%s-%s%s", URLEncoder.encode(roomName.toLowerCase(), StandardCharsets.UTF_8),
+                startMillis, MatchReplay.FILE_SUFFIX);
+        return new Recording(new File(dir, fileName), roomName, clock, startMillis);
+    }
+
+    /**
+     * Fields of one event
+     */
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * The replay of one Room. Thread safe.
+     */
+    public static class Recording {
+        static final Recording NONE = new Recording(null, null, null, 0);
+
+        private final File file;
+        private final String roomName;
+        private final GameClock clock;
+        private final long startMillis;
+        private DataOutputStream out = null;
+        private DataOutputStream index = null;
+        // file length when out was opened (out.size() counts from there)
+        private long base = 0;
+        // ms since the start of the last event
+        private long lastTime = 0;
+        private int session = 0;
+        private boolean closed = false;
+
+        private Recording(File file, String roomName, GameClock clock, long startMillis) {
+            this.file = file;
+            this.roomName = roomName;
+            this.clock = clock;
+            this.startMillis = startMillis;
+            this.closed = file == null;
+        }
+
+        /**
+         * @return the replay file (null while disabled)
+         */
+        public File getFile() {
+            return file;
+        }
+
+        public void join(long clientId, String clientName, boolean spectator, boolean sync) {
+            write(EventType.JOIN, out -> {
+                MatchReplay.writeVarLong(out, clientId);
+                out.writeUTF(clientName);
+                out.writeByte((spectator ? MatchReplay.SPECTATOR : 0) | (sync ? MatchReplay.SYNC : 0));
+            });
+        }
+
+        public void leave(long clientId) {
+            write(EventType.LEAVE, out -> MatchReplay.writeVarLong(out, clientId));
+        }
+
+        public void ready(long clientId, boolean ready) {
+            write(EventType.READY, out -> {
+                MatchReplay.writeVarLong(out, clientId);
+                out.writeBoolean(ready);
+            });
+        }
+
+        public void resetReady() {
+            write(EventType.RESET_READY, out -> {
+            });
+        }
+
+        public void phase(Phase phase) {
+            write(EventType.PHASE, out -> out.writeByte(phase.ordinal()));
+        }
+
+        public void gameMode(GameMode gameMode, boolean cooldown) {
+            write(EventType.GAME_MODE, out -> {
+                out.writeByte(gameMode.ordinal());
+                out.writeBoolean(cooldown);
+            });
+        }
+
+        public void pick(long clientId, String choice) {
+            write(EventType.PICK, out -> {
+                MatchReplay.writeVarLong(out, clientId);
+                out.writeUTF(choice == null ? "" : choice);
+            });
+        }
+
+        public void points(long clientId, int points) {
+            write(EventType.POINTS, out -> {
+                MatchReplay.writeVarLong(out, clientId);
+                MatchReplay.writeVarInt(out, points);
+            });
+        }
+
+        public void elimination(long clientId, boolean eliminated) {
+            write(EventType.ELIMINATION, out -> {
+                MatchReplay.writeVarLong(out, clientId);
+                out.writeBoolean(eliminated);
+            });
+        }
+
+        public void gameEvent(String text) {
+            write(EventType.GAME_EVENT, out -> out.writeUTF(text));
+        }
+
+        public void gameOver(String message, List<String> winners) {
+            write(EventType.GAME_OVER, out -> {
+                out.writeUTF(message);
+                MatchReplay.writeVarLong(out, winners.size());
+                for (String winner : winners) {
+                    out.writeUTF(winner);
+                }
+            });
+        }
+
+        /**
+         * Counts a new game, the next keyframes are its rounds
+         */
+        public synchronized void sessionStart() {
+            if (!closed) {
+                session++;
+            }
+        }
+
+        /**
+         * Writes the whole Room state as the start of a round and indexes it
+         *
+         * @param round
+         * @param phase
+         * @param gameMode
+         * @param cooldown
+         * @param members  every member of the Room
+         */
+        public synchronized void keyframe(int round, Phase phase, GameMode gameMode, boolean cooldown,
+                Collection<ServerThread> members) {
+            if (closed) {
+                return;
+            }
+            try {
+                ensureOpen();
+                long offset = base + out.size();
+                write(EventType.KEYFRAME, out -> {
+                    MatchReplay.writeVarLong(out, session);
+                    MatchReplay.writeVarLong(out, round);
+                    out.writeByte(phase.ordinal());
+                    out.writeByte(gameMode.ordinal());
+                    out.writeBoolean(cooldown);
+                    MatchReplay.writeVarLong(out, members.size());
+                    for (ServerThread member : members) {
+                        MatchReplay.writeVarLong(out, member.getClientId());
+                        out.writeUTF(member.getClientName());
+                        out.writeByte((member.isSpectator() ? MatchReplay.SPECTATOR : 0)
+                                | (member.isReady() ? MatchReplay.READY : 0)
+                                | (member.isEliminated() ? MatchReplay.ELIMINATED : 0)
+                                | (member.isAway() ? MatchReplay.AWAY : 0));
+                        MatchReplay.writeVarInt(out, member.getPoints());
+                    }
+                });
+                if (closed) {
+                    return; // the write failed
+                }
+                // the data first, so an index entry always points at a whole keyframe
+                out.flush();
+                index.writeInt(session);
+                index.writeInt(round);
+                index.writeLong(lastTime);
+                index.writeLong(offset);
+                index.flush();
+                KEYFRAMES.increment();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Writes the buffered events to the file
+         */
+        public synchronized void flush() {
+            if (out != null) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        /**
+         * Closes the file until the next event (i.e. while the Room hibernates)
+         */
+        public synchronized void release() {
+            if (out != null) {
+                try {
+                    out.close();
+                    index.close();
+                } catch (IOException e) {
+                    fail(e);
+                }
+                out = null;
+                index = null;
+            }
+        }
+
+        /**
+         * Ends the recording (the Room closed)
+         */
+        public synchronized void close() {
+            release();
+            closed = true;
+        }
+
+        private synchronized void write(EventType type, Body body) {
+            if (closed) {
+                return;
+            }
+            try {
+                ensureOpen();
+                int before = out.size();
+                long now = Math.max(lastTime, clock.millis() - startMillis);
+                out.writeByte(type.ordinal());
+                MatchReplay.writeVarLong(out, now - lastTime);
+                body.write(out);
+                lastTime = now;
+                EVENTS.increment();
+                BYTES.add(out.size() - before);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (out != null) {
+                return;
+            }
+            boolean created = !file.exists();
+            base = file.length();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            index = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(MatchReplay.indexFile(file), true)));
+            if (created) {
+                out.writeInt(MatchReplay.MAGIC);
+                out.writeInt(MatchReplay.VERSION);
+                out.writeUTF(roomName);
+                out.writeLong(startMillis);
+            }
+        }
+
+        private void fail(IOException e) {
+            FAILURES.increment();
+            LoggerUtil.INSTANCE.severe(String.format("Stopped recording Room %s to %s", roomName, file), e);
+            closed = true;
+            try {
+                if (out != null) {
+                    out.close();
+                    index.close();
+                }
+            } catch (IOException ignored) {
+                // already failing
+            }
+            out = null;
+            index = null;
+        }
+    }
+}
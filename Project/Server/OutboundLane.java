@@ -0,0 +1,38 @@
+package Project.Server;
+
+import Project.Common.Constants;
+import Project.Common.Payload;
+
+/**
+ * Priority classes for outbound traffic of a single connection.
+ * <p>
+ * Game-state updates are always written before queued chat and timer traffic
+ * (subject to the fairness ratio of the OutboundQueue).
+ * </p>
+ */
+public enum OutboundLane {
+    GAME, // phase, ready, turn, points, elimination, room membership, game events, etc
+    CHAT, // player and server chat messages
+    TIMER; // timer ticks (the next tick supersedes the previous one anyway)
+
+    /**
+     * Determines which lane a Payload travels in
+     *
+     * @param payload
+     * @return
+     */
+    public static OutboundLane forPayload(Payload payload) {
+        switch (payload.getPayloadType()) {
+            case TIME:
+                return TIMER;
+            case MESSAGE:
+                // game events share the MESSAGE type but are part of the game flow
+                return payload.getClientId() == Constants.GAME_EVENT_CHANNEL ? GAME : CHAT;
+            case REVERSE:
+            case WHISPER:
+                return CHAT;
+            default:
+                return GAME;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package Project.Server;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+import Project.Common.Metrics;
+import Project.Common.Payload;
+
+/**
+ * Per-connection outbound queue split into priority lanes (see OutboundLane).
+ * <p>
+ * The GAME lane always goes first. To keep chat/timer traffic from starving
+ * during long bursts of game updates, one lower priority Payload is let
+ * through after every {@code fairnessRatio} consecutive GAME Payloads. CHAT
+ * and TIMER take turns between themselves.
+ * </p>
+ * <p>
+ * The queue holds at most {@code capacity} Payloads. When it's full, the oldest
+ * TIMER, then CHAT, Payload makes room for the new one (a chat/timer Payload is
+ * dropped itself if only GAME Payloads are queued). A GAME Payload that finds
+ * only GAME Payloads ahead of it overflows the queue: it's closed and the
+ * connection is dropped, since the client can't keep up with the game anymore.
+ * </p>
+ */
+public class OutboundQueue {
+    public static final int DEFAULT_FAIRNESS_RATIO = 8;
+    private static volatile int defaultFairnessRatio = DEFAULT_FAIRNESS_RATIO;
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static volatile int defaultCapacity = DEFAULT_CAPACITY;
+    // Payloads shed to make room, per lane, across every connection
+    private static final Metrics.Counter[] DROPPED = Metrics.INSTANCE.counters("payload.outbound_dropped.",
+            OutboundLane.values());
+
+    private final OutboundLane[] lanes = OutboundLane.values();
+    private final ArrayDeque<Payload>[] queues;
+    private final long[] enqueued = new long[lanes.length];
+    private final long[] sent = new long[lanes.length];
+    private final int[] maxDepth = new int[lanes.length];
+    private final long[] dropped = new long[lanes.length];
+    private final int fairnessRatio;
+    private final int capacity;
+    private int gameStreak = 0; // consecutive GAME payloads taken while other lanes waited
+    private int nextLowLane = OutboundLane.CHAT.ordinal();
+    private boolean closed = false;
+    private boolean overflowed = false;
+    private Consumer<Payload> diverted = null; // receives offered Payloads instead of the lanes
+
+    /**
+     * Sets the fairness ratio used by queues created after this call
+     *
+     * @param ratio number of GAME Payloads allowed before one CHAT/TIMER Payload
+     *              must be sent (0 means strict priority)
+     */
+    public static void setDefaultFairnessRatio(int ratio) {
+        defaultFairnessRatio = Math.max(0, ratio);
+    }
+
+    public static int getDefaultFairnessRatio() {
+        return defaultFairnessRatio;
+    }
+
+    /**
+     * Sets the capacity of queues created after this call
+     *
+     * @param capacity most Payloads queued per connection (0 means unbounded)
+     */
+    public static void setDefaultCapacity(int capacity) {
+        defaultCapacity = Math.max(0, capacity);
+    }
+
+    public static int getDefaultCapacity() {
+        return defaultCapacity;
+    }
+
+    public OutboundQueue() {
+        this(defaultFairnessRatio, defaultCapacity);
+    }
+
+    public OutboundQueue(int fairnessRatio) {
+        this(fairnessRatio, defaultCapacity);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public OutboundQueue(int fairnessRatio, int capacity) {
+        this.fairnessRatio = Math.max(0, fairnessRatio);
+        this.capacity = Math.max(0, capacity);
+        queues = new ArrayDeque[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Queues a Payload in its lane
+     *
+     * @param payload
+     * @return false if the queue was closed (or overflowed by this Payload)
+     */
+    public synchronized boolean offer(Payload payload) {
+        if (diverted != null) {
+            diverted.accept(payload);
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        int lane = OutboundLane.forPayload(payload).ordinal();
+        if (capacity > 0 && depth() >= capacity && !makeRoom(lane)) {
+            if (lane != OutboundLane.GAME.ordinal()) {
+                dropped[lane]++;
+                DROPPED[lane].increment();
+                return true;
+            }
+            overflowed = true;
+            close();
+            return false;
+        }
+        queues[lane].add(payload);
+        enqueued[lane]++;
+        maxDepth[lane] = Math.max(maxDepth[lane], queues[lane].size());
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Puts a Payload back at the front of its lane (i.e., the write failed)
+     *
+     * @param payload
+     */
+    public synchronized void requeue(Payload payload) {
+        int lane = OutboundLane.forPayload(payload).ordinal();
+        queues[lane].addFirst(payload);
+        sent[lane]--;
+    }
+
+    /**
+     * Blocks until a Payload is available and returns the next one by priority
+     *
+     * @return the next Payload or null once the queue is closed and drained
+     * @throws InterruptedException
+     */
+    public synchronized Payload take() throws InterruptedException {
+        while (isEmpty()) {
+            if (closed) {
+                return null;
+            }
+            wait();
+        }
+        return poll();
+    }
+
+    private Payload poll() {
+        ArrayDeque<Payload> game = queues[OutboundLane.GAME.ordinal()];
+        boolean lowWaiting = hasLowPriority();
+        if (!game.isEmpty() && (!lowWaiting || fairnessRatio == 0 || gameStreak < fairnessRatio)) {
+            gameStreak = lowWaiting ? gameStreak + 1 : 0;
+            sent[OutboundLane.GAME.ordinal()]++;
+            return game.poll();
+        }
+        gameStreak = 0;
+        // alternate between the lower priority lanes
+        for (int i = 0; i < lanes.length - 1; i++) {
+            int lane = nextLowLane;
+            nextLowLane = nextLowLane + 1 >= lanes.length ? OutboundLane.CHAT.ordinal() : nextLowLane + 1;
+            if (!queues[lane].isEmpty()) {
+                sent[lane]++;
+                return queues[lane].poll();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops the oldest Payload of the lowest priority lane that isn't above the
+     * given lane
+     *
+     * @param lane lane of the Payload that needs room
+     * @return false if nothing could be dropped
+     */
+    private boolean makeRoom(int lane) {
+        for (int i = lanes.length - 1; i >= Math.max(lane, OutboundLane.CHAT.ordinal()); i--) {
+            if (!queues[i].isEmpty()) {
+                queues[i].poll();
+                dropped[i]++;
+                DROPPED[i].increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int depth() {
+        int depth = 0;
+        for (ArrayDeque<Payload> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    private boolean hasLowPriority() {
+        for (int i = OutboundLane.CHAT.ordinal(); i < lanes.length; i++) {
+            if (!queues[i].isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isEmpty() {
+        for (ArrayDeque<Payload> queue : queues) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting Payloads; take() returns null once the remaining ones are
+     * drained
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Removes every queued Payload in priority order
+     *
+     * @param consumer receives each Payload
+     */
+    public synchronized void drainTo(Consumer<Payload> consumer) {
+        for (ArrayDeque<Payload> queue : queues) {
+            while (!queue.isEmpty()) {
+                consumer.accept(queue.poll());
+            }
+        }
+    }
+
+    /**
+     * Hands the queued Payloads, then every Payload offered from now on, to the
+     * consumer instead of the lanes (i.e., the replay buffer of a parked
+     * session). The writer must have stopped taking, so nothing is lost or
+     * reordered in between.
+     *
+     * @param consumer receives each Payload
+     */
+    public synchronized void divert(Consumer<Payload> consumer) {
+        drainTo(consumer);
+        diverted = consumer;
+        close();
+    }
+
+    // metrics
+    public synchronized int getDepth(OutboundLane lane) {
+        return queues[lane.ordinal()].size();
+    }
+
+    public synchronized int getMaxDepth(OutboundLane lane) {
+        return maxDepth[lane.ordinal()];
+    }
+
+    /**
+     * @return true if a GAME Payload didn't fit and closed the queue
+     */
+    public synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getFairnessRatio() {
+        return fairnessRatio;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("OutboundQueue[");
+        for (OutboundLane lane : lanes) {
+            int i = lane.ordinal();
+            sb.append(lane.name()).append(" depth=").append(queues[i].size())
+                    .append(" max=").append(maxDepth[i])
+                    .append(" sent=").append(sent[i]).append("/").append(enqueued[i])
+                    .append(" dropped=").append(dropped[i]);
+            if (i < lanes.length - 1) {
+                sb.append(", ");
+            }
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,78 @@
+package Project.Server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import Project.Common.Payload;
+
+/**
+ * Bounded buffer of Payloads that couldn't be delivered while a session was
+ * detached (socket dropped, waiting for the client to resume).
+ * <p>
+ * If more than {@code capacity} Payloads are missed the buffer is marked as
+ * overflowed and the resumed client gets a full room resync instead of a
+ * replay.
+ * </p>
+ */
+public class ReplayBuffer {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+    private final ArrayDeque<Payload> missed = new ArrayDeque<>();
+    private boolean overflowed = false;
+
+    public ReplayBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ReplayBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Records a Payload the client missed
+     *
+     * @param payload
+     */
+    public synchronized void add(Payload payload) {
+        if (overflowed) {
+            return;
+        }
+        if (missed.size() >= capacity) {
+            // too far behind, a replay won't be cheaper than a resync
+            overflowed = true;
+            missed.clear();
+            return;
+        }
+        missed.add(payload);
+    }
+
+    /**
+     * @return true if the buffer ran out of room and the missed Payloads were
+     *         discarded
+     */
+    public synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+
+    public synchronized int size() {
+        return missed.size();
+    }
+
+    /**
+     * Removes and returns all buffered Payloads in the order they were missed
+     *
+     * @return
+     */
+    public synchronized List<Payload> drain() {
+        List<Payload> drained = new ArrayList<>(missed);
+        missed.clear();
+        return drained;
+    }
+
+    public synchronized void clear() {
+        missed.clear();
+        overflowed = false;
+    }
+}
@@ -0,0 +1,110 @@
+package Project.Server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+import Project.Common.LoggerUtil;
+import Project.Common.TimedEvent;
+
+/**
+ * Tracks ServerThreads whose socket dropped but whose session can still be
+ * resumed by a reconnecting client presenting the matching token.
+ * <p>
+ * A parked session keeps its User state, Room membership and game seat until
+ * either the client resumes it or the grace window expires, at which point the
+ * normal disconnect logic runs.
+ * </p>
+ */
+public class ResumableSessions {
+    public static final int DEFAULT_GRACE_SECONDS = 30;
+
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, ServerThread> detached = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TimedEvent> expirations = new ConcurrentHashMap<>();
+    private volatile int graceSeconds = DEFAULT_GRACE_SECONDS;
+
+    public int getGraceSeconds() {
+        return graceSeconds;
+    }
+
+    public void setGraceSeconds(int graceSeconds) {
+        this.graceSeconds = Math.max(0, graceSeconds);
+    }
+
+    /**
+     * Generates a new opaque, unguessable session token
+     *
+     * @return
+     */
+    public String newToken() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Parks a detached ServerThread until it's resumed or the grace window
+     * expires
+     *
+     * @param serverThread
+     * @return false if the session can't be resumed (no token or no grace window)
+     */
+    public boolean park(ServerThread serverThread) {
+        final String token = serverThread.getSessionToken();
+        if (token == null || graceSeconds <= 0) {
+            return false;
+        }
+        detached.put(token, serverThread);
+        TimedEvent expiration = new TimedEvent(graceSeconds, () -> expire(token));
+        TimedEvent previous = expirations.put(token, expiration);
+        if (previous != null) {
+            previous.cancel();
+        }
+        LoggerUtil.INSTANCE.info(String.format("Session for %s parked for %ss", serverThread.getDisplayName(),
+                graceSeconds));
+        return true;
+    }
+
+    /**
+     * Claims a parked session so it can be taken over by a new connection
+     *
+     * @param token
+     * @return the detached ServerThread or null if there's nothing to resume
+     */
+    public ServerThread claim(String token) {
+        if (token == null) {
+            return null;
+        }
+        ServerThread serverThread = detached.remove(token);
+        TimedEvent expiration = expirations.remove(token);
+        if (expiration != null) {
+            expiration.cancel();
+        }
+        return serverThread;
+    }
+
+    public boolean isParked(String token) {
+        return token != null && detached.containsKey(token);
+    }
+
+    public int size() {
+        return detached.size();
+    }
+
+    private void expire(String token) {
+        expirations.remove(token);
+        ServerThread serverThread = detached.remove(token);
+        if (serverThread != null) {
+            LoggerUtil.INSTANCE.info(String.format("Session for %s expired", serverThread.getDisplayName()));
+            serverThread.expireSession();
+        }
+    }
+
+    /**
+     * Expires every parked session immediately (used on shutdown)
+     */
+    public void expireAll() {
+        detached.keySet().forEach(this::expire);
+    }
+}
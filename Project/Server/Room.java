@@ -1,11 +1,27 @@
 package Project.Server;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
+import Project.Common.ClientInfo;
 import Project.Common.Constants;
+import Project.Common.FlightEvents;
+import Project.Common.LogCategory;
 import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
 import Project.Common.RoomAction;
-import Project.Common.TextFX;
 import Project.Common.TextFX.Color;
 import Project.Exceptions.DuplicateRoomException;
 import Project.Exceptions.RoomNotFoundException;
@@ -13,12 +29,37 @@ import Project.Exceptions.RoomNotFoundException;
 public class Room implements AutoCloseable {
     private final String name;// unique name of the Room
     private volatile boolean isRunning = false;
-    protected final ConcurrentHashMap<Long, ServerThread> clientsInRoom = new ConcurrentHashMap<Long, ServerThread>();
+    // replaced (not cleared) when hibernating, a cleared map keeps its table
+    protected volatile ConcurrentHashMap<Long, ServerThread> clientsInRoom = new ConcurrentHashMap<Long, ServerThread>();
 
     public final static String LOBBY = "lobby";
 
+    // broadcast metrics: recipients per broadcast and time spent fanning out
+    private static final Metrics.Histogram RELAY_FANOUT = Metrics.INSTANCE.histogram("room.relay.fanout");
+    private static final Metrics.Histogram RELAY_NS = Metrics.INSTANCE.histogram("room.relay_ns");
+
+    // hibernation: idle Rooms keep their state as bytes until a member acts again
+    private static final Metrics.Counter HIBERNATIONS = Metrics.INSTANCE.counter("room.hibernations");
+    private static final Metrics.Counter WAKES = Metrics.INSTANCE.counter("room.wakes");
+    private static final Metrics.Histogram WAKE_NS = Metrics.INSTANCE.histogram("room.wake_ns");
+    private static final Metrics.Histogram HIBERNATED_BYTES = Metrics.INSTANCE.histogram("room.hibernated_bytes");
+    private static final AtomicInteger HIBERNATED = new AtomicInteger(0);
+    private volatile long lastActivityMillis = System.currentTimeMillis();
+    private volatile byte[] hibernatedState = null;
+    private volatile int hibernatedMembers = 0;
+    private volatile int hibernatedSpectators = 0;
+    // members of a restored checkpoint who haven't reconnected yet (guarded by
+    // the monitor)
+    private final Map<Long, MemberState> seats = new LinkedHashMap<>();
+
     private void info(String message) {
-        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Room[%s]: %s", name, message), Color.PURPLE));
+        LoggerUtil.INSTANCE.log(LogCategory.ROOM, Level.INFO, Color.PURPLE, "Room[%s]: %s", name, message);
+    }
+
+    private void info(Supplier<String> message) {
+        if (LoggerUtil.INSTANCE.isLoggable(LogCategory.ROOM, Level.INFO)) {
+            info(message.get());
+        }
     }
 
     public Room(String name) {
@@ -35,7 +76,346 @@ public class Room implements AutoCloseable {
         return isRunning;
     }
 
+    /**
+     * Monitoring view of this Room. Only reads volatile/concurrent state so it
+     * never waits on (or blocks) the Room monitor.
+     * 
+     * @return ordered name/value pairs
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("name", name);
+        byte[] hibernated = hibernatedState;
+        status.put("members", hibernated == null ? clientsInRoom.size() : hibernatedMembers);
+        status.put("hibernated", hibernated != null);
+        return status;
+    }
+
+    /**
+     * @return number of Rooms currently hibernating
+     */
+    public static int getHibernatedCount() {
+        return HIBERNATED.get();
+    }
+
+    public boolean isHibernating() {
+        return hibernatedState != null;
+    }
+
+    /**
+     * @return members watching rather than playing (as counted when the Room
+     *         hibernated, its member map is empty until it wakes)
+     */
+    protected long getSpectatorCount() {
+        if (hibernatedState != null) {
+            return hibernatedSpectators;
+        }
+        return clientsInRoom.values().stream().filter(ServerThread::isSpectator).count();
+    }
+
+    /**
+     * Marks member activity; wakes the Room first if it's hibernating. Every
+     * entry point that touches the members or the game state calls it.
+     */
+    protected void touch() {
+        lastActivityMillis = System.currentTimeMillis();
+        if (hibernatedState != null) {
+            wake();
+        }
+    }
+
+    /**
+     * Whether the Room is in a state it can hibernate in (the Lobby never does)
+     */
+    protected boolean canHibernate() {
+        return !Room.LOBBY.equalsIgnoreCase(name);
+    }
+
+    /**
+     * Hibernates the Room if nobody acted for idleMillis: the members and the
+     * subclass state are written to a compact byte form and the live structures
+     * are dropped until the next touch()
+     * 
+     * @param idleMillis
+     * @return true if it hibernated
+     */
+    protected synchronized boolean hibernate(long idleMillis) {
+        if (!isRunning || hibernatedState != null || clientsInRoom.isEmpty()
+                || System.currentTimeMillis() - lastActivityMillis < idleMillis || !canHibernate()) {
+            return false;
+        }
+        byte[] state;
+        try {
+            state = writeState();
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe(String.format("Room %s failed to hibernate", name), e);
+            return false;
+        }
+        hibernatedMembers = clientsInRoom.size();
+        hibernatedSpectators = (int) clientsInRoom.values().stream().filter(ServerThread::isSpectator).count();
+        // a new map allocates its table on the first put (when waking)
+        clientsInRoom = new ConcurrentHashMap<Long, ServerThread>();
+        onHibernate();
+        hibernatedState = state;
+        HIBERNATED.incrementAndGet();
+        HIBERNATIONS.increment();
+        HIBERNATED_BYTES.record(hibernatedState.length);
+        info(() -> String.format("hibernated %s members in %s bytes", hibernatedMembers, hibernatedState.length));
+        return true;
+    }
+
+    private synchronized void wake() {
+        byte[] state = hibernatedState;
+        if (state == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<MemberState> absent = new ArrayList<>();
+        try {
+            readState(state, absent);
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe(String.format("Room %s failed to wake", name), e);
+        }
+        absent.forEach(member -> info(String.format("member %s left while hibernating", member.clientId())));
+        hibernatedState = null;
+        HIBERNATED.decrementAndGet();
+        WAKES.increment();
+        WAKE_NS.recordSince(start);
+        info(() -> String.format("woke up with %s members", clientsInRoom.size()));
+    }
+
+    /**
+     * Snapshot of the Room for a checkpoint (see Checkpointer). A hibernating
+     * Room hands out its hibernated bytes as they are (it isn't woken up);
+     * otherwise the state is written while holding the monitor, which takes
+     * about as long as relaying a message.
+     * 
+     * @return the state bytes or null if the Room is closed
+     * @throws IOException
+     */
+    protected byte[] checkpoint() throws IOException {
+        byte[] state = hibernatedState;
+        if (state != null) {
+            return state;
+        }
+        synchronized (this) {
+            if (!isRunning) {
+                return null;
+            }
+            state = hibernatedState;
+            return state != null ? state : writeState();
+        }
+    }
+
+    /**
+     * Loads a checkpoint() into a new Room (before anyone can join it). The
+     * members aren't connected yet, so each keeps a seat (written to later
+     * checkpoints too) until their client reconnects and claims it.
+     * 
+     * @param state
+     * @return the members of the checkpointed Room
+     * @throws IOException
+     */
+    protected synchronized List<MemberState> restore(byte[] state) throws IOException {
+        List<MemberState> absent = new ArrayList<>();
+        readState(state, absent);
+        absent.forEach(member -> seats.put(member.clientId(), member));
+        onRestore(absent);
+        info(() -> String.format("restored with %s members to reseat", absent.size()));
+        return absent;
+    }
+
+    /**
+     * Finishes a Room created from StateLog records alone (it was created after
+     * the last checkpoint): its recovered seats are reseated like a checkpoint's
+     * members
+     * 
+     * @return the members to reseat
+     */
+    protected synchronized List<MemberState> restoreSeats() {
+        List<MemberState> absent = new ArrayList<>(seats.values());
+        onRestore(absent);
+        info(() -> String.format("recovered with %s members to reseat", absent.size()));
+        return absent;
+    }
+
+    /**
+     * Takes the seat of a restored member whose client reconnected
+     * 
+     * @param clientId
+     * @return the seat or null if there's none (anymore)
+     */
+    protected synchronized MemberState claimSeat(long clientId) {
+        return seats.remove(clientId);
+    }
+
+    /**
+     * Adds or replaces the seat of a member who isn't connected yet (i.e., a
+     * newer state recovered from the StateLog)
+     * 
+     * @param member
+     */
+    protected synchronized void recoverSeat(MemberState member) {
+        if (!clientsInRoom.containsKey(member.clientId())) {
+            seats.put(member.clientId(), member);
+        }
+    }
+
+    /**
+     * Removes the seat of a member who left before the restart
+     * 
+     * @param clientId
+     */
+    protected synchronized void dropSeat(long clientId) {
+        seats.remove(clientId);
+    }
+
+    /**
+     * @return number of restored members who haven't reconnected yet
+     */
+    protected synchronized int getSeatCount() {
+        return seats.size();
+    }
+
+    /**
+     * Gives up on the restored members who haven't reconnected
+     * 
+     * @return number of seats dropped
+     */
+    protected synchronized int clearSeats() {
+        int dropped = seats.size();
+        seats.clear();
+        return dropped;
+    }
+
+    private byte[] writeState() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeState(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void readState(byte[] state, List<MemberState> absent) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            readState(in, absent);
+        }
+    }
+
+    /**
+     * A member as written by writeState(): who they are and their game seat
+     */
+    protected record MemberState(long clientId, String clientName, String sessionToken, boolean ready,
+            boolean spectator, boolean away, boolean eliminated, int points, String choice) {
+
+        private static final int READY = 1;
+        private static final int SPECTATOR = 1 << 1;
+        private static final int AWAY = 1 << 2;
+        private static final int ELIMINATED = 1 << 3;
+
+        static MemberState of(ServerThread client) {
+            return new MemberState(client.getClientId(), client.getClientName(), client.getSessionToken(),
+                    client.isReady(), client.isSpectator(), client.isAway(), client.isEliminated(),
+                    client.getPoints(), client.getChoice());
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(clientId);
+            out.writeUTF(clientName == null ? "" : clientName);
+            out.writeUTF(sessionToken == null ? "" : sessionToken);
+            out.writeByte((ready ? READY : 0) | (spectator ? SPECTATOR : 0) | (away ? AWAY : 0)
+                    | (eliminated ? ELIMINATED : 0));
+            out.writeInt(points);
+            out.writeUTF(choice == null ? "" : choice);
+        }
+
+        static MemberState read(DataInputStream in) throws IOException {
+            long clientId = in.readLong();
+            String clientName = in.readUTF();
+            String sessionToken = in.readUTF();
+            int flags = in.readByte();
+            int points = in.readInt();
+            String choice = in.readUTF();
+            return new MemberState(clientId, clientName, sessionToken.isEmpty() ? null : sessionToken,
+                    (flags & READY) != 0, (flags & SPECTATOR) != 0, (flags & AWAY) != 0,
+                    (flags & ELIMINATED) != 0, points, choice.isEmpty() ? null : choice);
+        }
+
+        /**
+         * Gives a reconnecting client back its seat
+         * 
+         * @param client
+         */
+        protected void applyTo(ServerThread client) {
+            client.setClientId(clientId);
+            client.setReady(ready);
+            client.setSpectator(spectator);
+            client.setAway(away);
+            client.setEliminated(eliminated);
+            client.setPoints(points);
+            client.setChoice(choice);
+        }
+    }
+
+    /**
+     * Writes the Room state used to hibernate and to checkpoint: the members and
+     * their seat (including restored members who haven't reconnected yet), then
+     * whatever subclasses append after calling super
+     * 
+     * @param out
+     * @throws IOException
+     */
+    protected void writeState(DataOutputStream out) throws IOException {
+        List<ServerThread> members = new ArrayList<>(clientsInRoom.values());
+        out.writeInt(members.size() + seats.size());
+        for (ServerThread client : members) {
+            MemberState.of(client).write(out);
+        }
+        for (MemberState member : seats.values()) {
+            member.write(out);
+        }
+    }
+
+    /**
+     * Restores what writeState() wrote, in the same order. Members are looked up
+     * again by id; nobody is notified since, from their point of view, the Room
+     * never went away. Members who aren't connected and in this Room anymore are
+     * added to absent.
+     * 
+     * @param in
+     * @param absent
+     * @throws IOException
+     */
+    protected void readState(DataInputStream in, List<MemberState> absent) throws IOException {
+        int members = in.readInt();
+        for (int i = 0; i < members; i++) {
+            MemberState member = MemberState.read(in);
+            ServerThread client = Server.INSTANCE.findClient(member.clientId());
+            if (client != null && client.getCurrentRoom() == this) {
+                clientsInRoom.put(member.clientId(), client);
+            } else {
+                absent.add(member);
+            }
+        }
+    }
+
+    /**
+     * Hook for subclasses to prepare for the members of a restored checkpoint
+     * 
+     * @param absent the members who will reconnect
+     */
+    protected void onRestore(List<MemberState> absent) {
+    }
+
+    /**
+     * Hook for subclasses to drop their live structures after their state was
+     * written
+     */
+    protected void onHibernate() {
+    }
+
     protected synchronized void addClient(ServerThread client) {
+        touch();
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -45,6 +425,7 @@ public class Room implements AutoCloseable {
         }
         clientsInRoom.put(client.getClientId(), client);
         client.setCurrentRoom(this);
+        EventJournal.INSTANCE.roomJoin(client.getClientId(), name);
         client.sendResetUserList();
         syncExistingClients(client);
         // notify clients of someone joining
@@ -52,7 +433,71 @@ public class Room implements AutoCloseable {
 
     }
 
+    /**
+     * Adds several clients in one step (i.e., migrating a closing Room).
+     * Each incoming client gets a single snapshot of the members and the existing
+     * members get a single "N players joined" delta instead of one full join
+     * sequence per client.
+     * 
+     * @param clients
+     */
+    protected synchronized void addClients(List<ServerThread> clients) {
+        touch();
+        if (!isRunning) { // block action if Room isn't running
+            return;
+        }
+        List<ServerThread> existing = new ArrayList<>(clientsInRoom.values());
+        List<ServerThread> incoming = new ArrayList<>();
+        for (ServerThread client : clients) {
+            if (clientsInRoom.putIfAbsent(client.getClientId(), client) == null) {
+                client.setCurrentRoom(this);
+                EventJournal.INSTANCE.roomJoin(client.getClientId(), name);
+                incoming.add(client);
+            }
+        }
+        if (incoming.isEmpty()) {
+            return;
+        }
+        info(String.format("bulk adding %s clients", incoming.size()));
+        List<ClientInfo> snapshot = toClientInfo(clientsInRoom.values());
+        for (ServerThread client : incoming) {
+            boolean failed = !client.sendRoomMembers(getName(), snapshot, true)
+                    || !client.sendMessage(Constants.DEFAULT_CLIENT_ID, "You joined the room");
+            if (failed) {
+                LoggerUtil.INSTANCE.warning(
+                        String.format("Removing disconnected %s from list", client.getDisplayName()));
+                disconnect(client);
+            }
+        }
+        // the others only hear about the ones that are still here
+        incoming.removeIf(client -> !clientsInRoom.containsKey(client.getClientId()));
+        if (incoming.isEmpty()) {
+            return;
+        }
+        List<ClientInfo> joined = toClientInfo(incoming);
+        final String joinedMessage = incoming.size() == 1
+                ? String.format("%s joined the room", incoming.get(0).getDisplayName())
+                : String.format("%s players joined the room", incoming.size());
+        for (ServerThread client : existing) {
+            boolean failed = !client.sendRoomMembers(getName(), joined, false)
+                    || !client.sendMessage(Constants.DEFAULT_CLIENT_ID, joinedMessage);
+            if (failed) {
+                LoggerUtil.INSTANCE.warning(
+                        String.format("Removing disconnected %s from list", client.getDisplayName()));
+                disconnect(client);
+            }
+        }
+    }
+
+    private static List<ClientInfo> toClientInfo(Collection<ServerThread> clients) {
+        List<ClientInfo> infos = new ArrayList<>(clients.size());
+        clients.forEach(client -> infos
+                .add(new ClientInfo(client.getClientId(), client.getClientName(), client.isSpectator())));
+        return infos;
+    }
+
     protected synchronized void removeClient(ServerThread client) {
+        touch();
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -65,10 +510,55 @@ public class Room implements AutoCloseable {
             // notify clients of someone joining
             joinStatusRelay(removedClient, false);
             clientsInRoom.remove(client.getClientId());
+            EventJournal.INSTANCE.roomLeave(removedClient.getClientId(), name);
             autoCleanup();
         }
     }
 
+    /**
+     * Swaps a detached ServerThread for the connection that resumed its session.
+     * Other members aren't notified since, from their point of view, the client
+     * never left.
+     * 
+     * @param previous the detached ServerThread
+     * @param resumed  the new connection taking over the session
+     */
+    protected synchronized void resumeClient(ServerThread previous, ServerThread resumed) {
+        touch();
+        resumed.adoptSession(previous);
+        clientsInRoom.put(resumed.getClientId(), resumed);
+        resumed.setCurrentRoom(this);
+        resumed.sendClientId(true);
+        onClientReplaced(previous, resumed);
+        if (!resumed.replayMissed()) {
+            info(String.format("%s missed too much, resyncing", resumed.getDisplayName()));
+            resyncClient(resumed);
+        }
+    }
+
+    /**
+     * Hook for subclasses holding their own ServerThread references
+     * 
+     * @param previous
+     * @param resumed
+     */
+    protected void onClientReplaced(ServerThread previous, ServerThread resumed) {
+    }
+
+    /**
+     * Sends the full Room state to a single client (used when a resumed session
+     * missed too much to be replayed)
+     * 
+     * @param client
+     */
+    protected synchronized void resyncClient(ServerThread client) {
+        touch();
+        client.sendResetUserList();
+        client.sendClientInfo(client.getClientId(), client.getClientName(), getName(), RoomAction.JOIN,
+                client.isSpectator(), true);
+        syncExistingClients(client);
+    }
+
     private void syncExistingClients(ServerThread incomingClient) {
         clientsInRoom.values().forEach(serverThread -> {
             if (serverThread.getClientId() != incomingClient.getClientId()) {
@@ -83,7 +573,8 @@ public class Room implements AutoCloseable {
         });
     }
 
-    private void joinStatusRelay(ServerThread client, boolean didJoin) {
+    // package-private for FanoutBench
+    void joinStatusRelay(ServerThread client, boolean didJoin) {
         clientsInRoom.values().removeIf(serverThread -> {
             String formattedMessage = String.format("%s %s the room%s",
 
@@ -129,6 +620,7 @@ public class Room implements AutoCloseable {
      *                server-generated message
      */
     protected synchronized void relay(ServerThread sender, String message) {
+        touch();
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -146,8 +638,13 @@ public class Room implements AutoCloseable {
         // to be sent
         // Note: this uses a lambda expression for each item in the values() collection,
         // it's one way we can safely remove items during iteration
-        info(String.format("sending message to %s recipients: %s", clientsInRoom.size(), formattedMessage));
+        info(() -> String.format("sending message to %s recipients: %s", clientsInRoom.size(), formattedMessage));
 
+        FlightEvents.RoomBroadcast broadcast = new FlightEvents.RoomBroadcast();
+        broadcast.begin();
+        int recipients = clientsInRoom.size();
+        long start = System.nanoTime();
+        RELAY_FANOUT.record(recipients);
         clientsInRoom.values().removeIf(serverThread -> {
             boolean failedToSend = !serverThread.sendMessage(senderId, formattedMessage);
             if (failedToSend) {
@@ -157,6 +654,12 @@ public class Room implements AutoCloseable {
             }
             return failedToSend;
         });
+        RELAY_NS.recordSince(start);
+        broadcast.end();
+        if (broadcast.shouldCommit()) {
+            broadcast.fill(name, "relay", recipients, formattedMessage);
+            broadcast.commit();
+        }
     }
 
     /**
@@ -168,11 +671,13 @@ public class Room implements AutoCloseable {
      * @param client
      */
     protected synchronized void disconnect(ServerThread client) {
+        touch();
         if (!isRunning) { // block action if Room isn't running
             return;
         }
         ServerThread disconnectingServerThread = clientsInRoom.remove(client.getClientId());
         if (disconnectingServerThread != null) {
+            EventJournal.INSTANCE.roomLeave(disconnectingServerThread.getClientId(), name);
 
             clientsInRoom.values().removeIf(serverThread -> {
                 if (serverThread.getClientId() == disconnectingServerThread.getClientId()) {
@@ -197,6 +702,7 @@ public class Room implements AutoCloseable {
     }
 
     protected synchronized void disconnectAll() {
+        touch();
         info("Disconnect All triggered");
         if (!isRunning) {
             return;
@@ -217,21 +723,36 @@ public class Room implements AutoCloseable {
         }
     }
 
+    /**
+     * Hook for subclasses to tear down their state when the Room closes: timers
+     * and the members' per-Room state. The members are already out of
+     * clientsInRoom and move to the Lobby right after.
+     * 
+     * @param migrating the members leaving (empty if the Room closed empty)
+     */
+    protected void onClosing(List<ServerThread> migrating) {
+    }
+
     @Override
     public void close() {
-        // attempt to gracefully close and migrate clients
-        if (!clientsInRoom.isEmpty()) {
+        touch();
+        List<ServerThread> migrating = new ArrayList<>(clientsInRoom.values());
+        if (!migrating.isEmpty()) {
             relay(null, "Room is shutting down, migrating to lobby");
-            info(String.format("migrating %s clients", clientsInRoom.size()));
-            clientsInRoom.values().removeIf(client -> {
-                try {
-                    Server.INSTANCE.joinRoom(Room.LOBBY, client);
-                } catch (RoomNotFoundException e) {
-                    e.printStackTrace();
-                    // TODO, fill in, this shouldn't happen though
-                }
-                return true;
-            });
+            info(String.format("migrating %s clients", migrating.size()));
+        }
+        clientsInRoom.clear();
+        migrating.forEach(client -> EventJournal.INSTANCE.roomLeave(client.getClientId(), name));
+        onClosing(migrating);
+        // attempt to gracefully close and migrate clients
+        if (!migrating.isEmpty()) {
+            try {
+                // move everyone in one step rather than a full join sequence per client
+                Server.INSTANCE.migrateClients(Room.LOBBY, migrating);
+            } catch (RoomNotFoundException e) {
+                e.printStackTrace();
+                // TODO, fill in, this shouldn't happen though
+            }
         }
         Server.INSTANCE.removeRoom(this);
         isRunning = false;
@@ -278,6 +799,7 @@ public class Room implements AutoCloseable {
     }
 
     protected synchronized void handleReverseText(ServerThread sender, String text) {
+        touch();
         StringBuilder sb = new StringBuilder(text);
         sb.reverse();
         String rev = sb.toString();
@@ -285,6 +807,7 @@ public class Room implements AutoCloseable {
     }
 
     protected synchronized void handleMessage(ServerThread sender, String text) {
+        touch();
         // Spectators cannot send messages
         if (sender.isSpectator()) {
             sender.sendMessage(Constants.DEFAULT_CLIENT_ID, "Spectators cannot send messages.");
@@ -298,6 +821,7 @@ public class Room implements AutoCloseable {
      * and relays a small message to the room's event log.
      */
     protected synchronized void handleAway(ServerThread sender, Project.Common.AwayPayload payload) {
+        touch();
         try {
             // update authoritative server-side flag
             sender.setAway(payload.isAway());
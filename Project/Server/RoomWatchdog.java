@@ -0,0 +1,282 @@
+package Project.Server;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+import Project.Common.TextFX;
+import Project.Common.TextFX.Color;
+
+/**
+ * Samples which threads hold, or are blocked on, a Room's monitor (enable with
+ * --room-watchdog or --room-watchdog=thresholdMs).
+ * <p>
+ * Room methods are synchronized and send to clients while holding the
+ * monitor, so one slow Room stalls everyone in it. Every sample the watchdog
+ * reads the state of every thread from the ThreadMXBean, without stack traces
+ * or locked monitors (which would stop the world each time), matches the
+ * monitors BLOCKED threads wait on against the Rooms (by identity hash code)
+ * and tracks how long each wait, and the owner's hold, has lasted. A hold
+ * longer than the threshold is logged once with the owner's stack trace, the
+ * only stack walk. Hold and wait times go to the Metrics registry and the most
+ * contended Rooms are logged every report interval.
+ * </p>
+ * <p>
+ * Only contended holds are seen (a hold nobody waits for stalls nobody), from
+ * the first sample someone waited. Durations are estimates with the sample
+ * interval's resolution.
+ * </p>
+ */
+public class RoomWatchdog extends Thread {
+    public static final long DEFAULT_THRESHOLD_MS = 500;
+    public static final long DEFAULT_REPORT_INTERVAL_MS = 60_000;
+    private static final int STACK_DEPTH = 25;
+    private static final int TOP_ROOMS = 5;
+
+    private static final Metrics.Histogram HOLD_MS = Metrics.INSTANCE.histogram("room.lock.hold_ms");
+    private static final Metrics.Histogram WAIT_MS = Metrics.INSTANCE.histogram("room.lock.wait_ms");
+    private static final Metrics.Counter STALLS = Metrics.INSTANCE.counter("room.lock.stalls");
+    private static final Metrics.Counter BLOCKED_SAMPLES = Metrics.INSTANCE.counter("room.lock.blocked_samples");
+
+    /**
+     * An ongoing hold or wait of one thread on one Room
+     */
+    private static class Observation {
+        private final long threadId;
+        private final String room;
+        private final long since;
+        private long lastSeen;
+        private boolean reported = false;
+
+        private Observation(long threadId, String room, long now) {
+            this.threadId = threadId;
+            this.room = room;
+            this.since = now;
+            this.lastSeen = now;
+        }
+    }
+
+    /**
+     * Contention of one Room during the current report window
+     */
+    public static class Contention {
+        private final String room;
+        private volatile long waitMs = 0;
+        private volatile long maxHoldMs = 0;
+        private volatile int stalls = 0;
+
+        private Contention(String room) {
+            this.room = room;
+        }
+
+        public String getRoom() {
+            return room;
+        }
+
+        public long getWaitMs() {
+            return waitMs;
+        }
+
+        public long getMaxHoldMs() {
+            return maxHoldMs;
+        }
+
+        public int getStalls() {
+            return stalls;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (wait %sms, max hold %sms, %s stall(s))", room, waitMs, maxHoldMs, stalls);
+        }
+    }
+
+    private final long thresholdMs;
+    private final long intervalMs;
+    private final long reportIntervalMs;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    // keyed by thread id and room identity, only touched by the watchdog thread
+    private final Map<String, Observation> holds = new HashMap<>();
+    private final Map<String, Observation> waits = new HashMap<>();
+    private final ConcurrentHashMap<String, Contention> contention = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    private void info(String message) {
+        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Watchdog: %s", message), Color.PURPLE));
+    }
+
+    public RoomWatchdog(long thresholdMs) {
+        this(thresholdMs, DEFAULT_REPORT_INTERVAL_MS);
+    }
+
+    /**
+     * @param thresholdMs      hold time that counts as a stall
+     * @param reportIntervalMs how often the most contended Rooms are logged
+     */
+    public RoomWatchdog(long thresholdMs, long reportIntervalMs) {
+        super("RoomWatchdog");
+        setDaemon(true);
+        this.thresholdMs = Math.max(1, thresholdMs);
+        // a few samples per threshold
+        this.intervalMs = Math.max(10, Math.min(100, this.thresholdMs / 5));
+        this.reportIntervalMs = reportIntervalMs;
+    }
+
+    public void shutdown() {
+        running = false;
+        interrupt();
+    }
+
+    @Override
+    public void run() {
+        info(String.format("Sampling Room monitors every %sms (stall threshold %sms)", intervalMs, thresholdMs));
+        long nextReport = System.currentTimeMillis() + reportIntervalMs;
+        while (running) {
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                sample(System.currentTimeMillis());
+            } catch (Exception e) {
+                LoggerUtil.INSTANCE.warning("Room watchdog sample failed", e);
+            }
+            if (System.currentTimeMillis() >= nextReport) {
+                report();
+                nextReport = System.currentTimeMillis() + reportIntervalMs;
+            }
+        }
+    }
+
+    private static String key(long threadId, int identity) {
+        return threadId + ":" + identity;
+    }
+
+    private Contention contentionOf(String room) {
+        return contention.computeIfAbsent(room, Contention::new);
+    }
+
+    private void sample(long now) {
+        Map<Integer, Room> rooms = new HashMap<>();
+        for (Room room : Server.INSTANCE.getRooms()) {
+            rooms.put(System.identityHashCode(room), room);
+        }
+        if (rooms.isEmpty()) {
+            return;
+        }
+        // states and lock owners only: no safepoint, unlike stack traces or locked monitors
+        ThreadInfo[] infos = threads.getThreadInfo(threads.getAllThreadIds(), 0);
+        Map<String, Integer> waitersByRoom = new HashMap<>();
+        Set<String> seenHolds = new HashSet<>();
+        Set<String> seenWaits = new HashSet<>();
+        for (ThreadInfo thread : infos) {
+            if (thread == null || thread.getThreadState() != Thread.State.BLOCKED) {
+                continue;
+            }
+            LockInfo blockedOn = thread.getLockInfo();
+            Room room = blockedOn == null ? null : rooms.get(blockedOn.getIdentityHashCode());
+            if (room == null || !room.getClass().getName().equals(blockedOn.getClassName())) {
+                continue;
+            }
+            String key = key(thread.getThreadId(), blockedOn.getIdentityHashCode());
+            seenWaits.add(key);
+            waits.computeIfAbsent(key, k -> new Observation(thread.getThreadId(), room.getName(), now)).lastSeen = now;
+            waitersByRoom.merge(room.getName(), 1, Integer::sum);
+            BLOCKED_SAMPLES.increment();
+            contentionOf(room.getName()).waitMs += intervalMs;
+            // whoever owns the monitor is holding the Room
+            long ownerId = thread.getLockOwnerId();
+            String holdKey = key(ownerId, blockedOn.getIdentityHashCode());
+            if (ownerId != -1 && seenHolds.add(holdKey)) {
+                holds.computeIfAbsent(holdKey, k -> new Observation(ownerId, room.getName(), now)).lastSeen = now;
+            }
+        }
+        // holds past the threshold, only these pay for the owner's stack trace
+        for (String key : seenHolds) {
+            Observation hold = holds.get(key);
+            if (!hold.reported && now - hold.since >= thresholdMs) {
+                ThreadInfo owner = threads.getThreadInfo(hold.threadId, STACK_DEPTH);
+                if (owner != null) {
+                    hold.reported = true;
+                    reportStall(hold, owner, waitersByRoom.getOrDefault(hold.room, 0), now);
+                }
+            }
+        }
+        // holds/waits that ended since the last sample
+        finish(holds, seenHolds, HOLD_MS, true);
+        finish(waits, seenWaits, WAIT_MS, false);
+    }
+
+    private void finish(Map<String, Observation> observations, Set<String> seen, Metrics.Histogram histogram,
+            boolean isHold) {
+        Iterator<Map.Entry<String, Observation>> iterator = observations.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Observation> entry = iterator.next();
+            if (!seen.contains(entry.getKey())) {
+                Observation observation = entry.getValue();
+                // seen in at least one sample, so it lasted about one interval more than measured
+                long duration = observation.lastSeen - observation.since + intervalMs;
+                histogram.record(duration);
+                if (isHold) {
+                    Contention room = contentionOf(observation.room);
+                    room.maxHoldMs = Math.max(room.maxHoldMs, duration);
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private void reportStall(Observation hold, ThreadInfo owner, int waiters, long now) {
+        STALLS.increment();
+        Contention room = contentionOf(hold.room);
+        room.stalls++;
+        room.maxHoldMs = Math.max(room.maxHoldMs, now - hold.since);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Room[%s] monitor held for %sms by %s (%s), %s thread(s) blocked", hold.room,
+                now - hold.since, owner.getThreadName(), owner.getThreadState(), waiters));
+        StackTraceElement[] stack = owner.getStackTrace();
+        for (int i = 0; i < Math.min(STACK_DEPTH, stack.length); i++) {
+            sb.append("\n\tat ").append(stack[i]);
+        }
+        if (stack.length >= STACK_DEPTH) {
+            sb.append("\n\t...");
+        }
+        LoggerUtil.INSTANCE.warning(TextFX.colorize(sb.toString(), Color.RED));
+    }
+
+    /**
+     * @param limit
+     * @return the most contended Rooms of the current report window (by wait time,
+     *         then stalls)
+     */
+    public List<Contention> getTopContended(int limit) {
+        List<Contention> sorted = new ArrayList<>(contention.values());
+        sorted.removeIf(c -> c.waitMs == 0 && c.stalls == 0);
+        sorted.sort((a, b) -> a.waitMs != b.waitMs ? Long.compare(b.waitMs, a.waitMs)
+                : Integer.compare(b.stalls, a.stalls));
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    /**
+     * Logs the most contended Rooms and starts a new window
+     */
+    private void report() {
+        List<Contention> top = getTopContended(TOP_ROOMS);
+        if (!top.isEmpty()) {
+            info("Most contended rooms: " + top);
+        }
+        contention.clear();
+    }
+}
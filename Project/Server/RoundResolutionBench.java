@@ -0,0 +1,255 @@
+package Project.Server;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import Project.Common.GameMode;
+import Project.Common.GameModePayload;
+import Project.Common.LogCategory;
+import Project.Common.LoggerUtil;
+
+/**
+ * Benchmark of round resolution (eliminations, wins and scoring) over
+ * synthetic rooms, measured two ways.
+ * <p>
+ * Usage: java Project.Server.RoundResolutionBench [--sizes=2,10,100,1000,10000]
+ * [--budget=10] [--seed=1] [--path=both|rules|room] (budget in seconds per
+ * size and mode)
+ * </p>
+ * <p>
+ * rules: a RulesEngine loaded with one row per player. Each round deals every
+ * row a random pick and then times resolveRound() and clearChoices() alone, so
+ * the numbers are the cost of the rules, linear in the room size.
+ * </p>
+ * <p>
+ * room: a GameRoom of ServerThreads that are never started, so every send is
+ * a no-op. Each round gives every player a random pick and then times
+ * GameRoom.resolveRound(): loading the rules, the rules and building the game
+ * events. It announces one battle per pair to every member, so the cost grows
+ * with the cube of the room size; sizes whose projected round time (from the
+ * previous size) is over the budget are skipped.
+ * </p>
+ * <p>
+ * It lives in this package for access to the GameRoom/ServerThread internals.
+ * </p>
+ */
+public class RoundResolutionBench {
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+    private static final int WARMUP_ROUNDS = 3;
+
+    private int[] sizes = { 2, 10, 100, 1000, 10000 };
+    private long budgetNanos = 10_000_000_000L;
+    private long seed = 1;
+    private boolean measureRules = true;
+    private boolean measureRoom = true;
+    private final PrintStream out;
+
+    public RoundResolutionBench(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * A RulesEngine loaded with every player ready
+     */
+    private static class SyntheticRules {
+        private final RulesEngine rules = new RulesEngine();
+        private final int[] choices;
+
+        private SyntheticRules(int size, GameMode mode) {
+            String[] codes = mode.getChoices();
+            choices = new int[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                choices[i] = RulesEngine.choiceOrdinal(codes[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                rules.addPlayer(i + 1, RulesEngine.NO_CHOICE, RulesEngine.READY, 0);
+            }
+        }
+
+        /**
+         * Everyone is back in the game with a fresh pick
+         */
+        private void deal(Random random) {
+            for (int i = 0; i < rules.size(); i++) {
+                rules.setFlags(i, RulesEngine.READY);
+                rules.setChoice(i, choices[random.nextInt(choices.length)]);
+            }
+        }
+
+        private void resolve() {
+            rules.resolveRound();
+            rules.clearChoices();
+        }
+    }
+
+    /**
+     * A GameRoom full of unstarted players (resolveRound() doesn't check the phase)
+     */
+    private static class SyntheticRoom {
+        private final GameRoom room;
+        private final List<ServerThread> players = new ArrayList<>();
+        private final String[] choices;
+
+        private SyntheticRoom(int size, GameMode mode) {
+            room = new GameRoom(String.format("bench_%s_%s", mode, size));
+            for (int i = 0; i < size; i++) {
+                ServerThread player = new ServerThread(new Socket(), p -> {
+                });
+                player.setClientId(i + 1);
+                player.setClientName("player" + i);
+                players.add(player);
+            }
+            room.addClients(players);
+            GameModePayload gameMode = new GameModePayload();
+            gameMode.setGameMode(mode);
+            room.handleGameModeChange(players.get(0), gameMode);
+            choices = mode.getChoices();
+        }
+
+        /**
+         * Everyone is back in the game with a fresh pick
+         */
+        private void deal(Random random) {
+            for (ServerThread player : players) {
+                player.setReady(true);
+                player.setEliminated(false);
+                player.setChoice(choices[random.nextInt(choices.length)]);
+            }
+        }
+    }
+
+    public void run() {
+        // the rules log per round/player; keep the numbers about the rules
+        for (LogCategory category : LogCategory.values()) {
+            LoggerUtil.INSTANCE.setLevel(category, Level.OFF);
+        }
+        out.println(String.format("budget=%ss per size and mode, seed=%s", budgetNanos / 1e9, seed));
+        if (measureRules) {
+            out.println();
+            out.println("rules: RulesEngine.resolveRound() + clearChoices() on loaded rows");
+            measure(1, (size, mode) -> {
+                SyntheticRules synthetic = new SyntheticRules(size, mode);
+                return new Round(synthetic::deal, synthetic::resolve);
+            });
+        }
+        if (measureRoom) {
+            out.println();
+            out.println("room: GameRoom.resolveRound(), the rules plus one battle event per pair to every member");
+            measure(3, (size, mode) -> {
+                SyntheticRoom synthetic = new SyntheticRoom(size, mode);
+                return new Round(synthetic::deal, synthetic.room::resolveRound);
+            });
+        }
+    }
+
+    /**
+     * What one measurement sets up for a size and mode: dealing the picks
+     * (untimed) and the timed resolution
+     */
+    private record Round(Consumer<Random> deal, Runnable resolve) {
+    }
+
+    /**
+     * Times rounds for every mode and size and prints a row each
+     *
+     * @param growth exponent of the cost in the room size, for skipping sizes
+     *               projected over the budget
+     * @param setup  builds the Round for a size and mode
+     */
+    private void measure(int growth, BiFunction<Integer, GameMode, Round> setup) {
+        long threadId = Thread.currentThread().threadId();
+        out.println(String.format("%-6s %7s %10s %14s %14s %14s %14s", "mode", "players", "rounds", "mean ms/round",
+                "min ms/round", "max ms/round", "alloc KB/round"));
+        for (GameMode mode : GameMode.values()) {
+            Random random = new Random(seed);
+            double previousMean = 0;
+            int previousSize = 0;
+            for (int size : sizes) {
+                if (previousSize > 0) {
+                    double projected = previousMean * Math.pow((double) size / previousSize, growth);
+                    if (projected > budgetNanos) {
+                        out.println(String.format("%-6s %7s skipped (projected %.1fs per round)", mode, size,
+                                projected / 1e9));
+                        continue;
+                    }
+                }
+                Round round = setup.apply(size, mode);
+                for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                    round.deal().accept(random);
+                    round.resolve().run();
+                }
+                long rounds = 0;
+                long total = 0;
+                long min = Long.MAX_VALUE;
+                long max = 0;
+                long allocated = 0;
+                do {
+                    round.deal().accept(random);
+                    long allocStart = THREADS.getThreadAllocatedBytes(threadId);
+                    long start = System.nanoTime();
+                    round.resolve().run();
+                    long elapsed = System.nanoTime() - start;
+                    allocated += THREADS.getThreadAllocatedBytes(threadId) - allocStart;
+                    total += elapsed;
+                    min = Math.min(min, elapsed);
+                    max = Math.max(max, elapsed);
+                    rounds++;
+                } while (total < budgetNanos);
+                double mean = (double) total / rounds;
+                out.println(String.format("%-6s %7s %10s %14.4f %14.4f %14.4f %14.2f", mode, size, rounds, mean / 1e6,
+                        min / 1e6, max / 1e6, allocated / 1024.0 / rounds));
+                previousMean = mean;
+                previousSize = size;
+            }
+        }
+    }
+
+    private void apply(String arg) {
+        String[] setting = arg.split("=", 2);
+        String value = setting.length > 1 ? setting[1] : "";
+        switch (setting[0]) {
+            case "--sizes":
+                String[] parts = value.split(",");
+                sizes = new int[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    sizes[i] = Math.max(2, Integer.parseInt(parts[i].trim()));
+                }
+                break;
+            case "--budget":
+                budgetNanos = (long) (Double.parseDouble(value) * 1e9);
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            case "--path":
+                if (!value.matches("both|rules|room")) {
+                    throw new IllegalArgumentException("Unknown path " + value);
+                }
+                measureRules = !value.equals("room");
+                measureRoom = !value.equals("rules");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + setting[0]);
+        }
+    }
+
+    public static void main(String[] args) {
+        RoundResolutionBench bench = new RoundResolutionBench(System.out);
+        for (String arg : args) {
+            try {
+                bench.apply(arg);
+            } catch (Exception e) {
+                System.err.println("Ignoring invalid argument " + arg);
+            }
+        }
+        bench.run();
+    }
+}
@@ -0,0 +1,402 @@
+package Project.Server;
+
+import java.util.Arrays;
+
+import Project.Common.GameMode;
+
+/**
+ * The Rock/Paper/Scissors(/Lizard/Spock) rules on plain player state, with no
+ * I/O: GameRoom loads its players, resolves a round and broadcasts the
+ * result, and simulations/benchmarks can run the same rules on their own.
+ * <p>
+ * Players are rows of primitives (id, choice ordinal, flag bits, points). A
+ * round counts the picks per choice, so it's linear in the number of players
+ * rather than a battle per pair. The arrays, including the ones in the
+ * RoundResult, are reused and only grow (until trim() drops them), so it
+ * doesn't allocate in steady state. Not thread safe, use one per room (or
+ * thread).
+ * </p>
+ */
+public class RulesEngine {
+    /** Choice ordinal of a player who didn't pick */
+    public static final int NO_CHOICE = -1;
+    /** Choice ordinal of a pick that isn't one of the RPS_5 codes */
+    public static final int UNKNOWN_CHOICE = 5;
+
+    // player flag bits
+    public static final int READY = 1;
+    public static final int SPECTATOR = 1 << 1;
+    public static final int ELIMINATED = 1 << 2;
+    public static final int AWAY = 1 << 3;
+    // what takes a player out of a round
+    private static final int INACTIVE = SPECTATOR | ELIMINATED | AWAY;
+
+    // choice ordinals follow the RPS_5 codes (RPS_3 is its first three)
+    private static final String[] CODES = GameMode.RPS_5.getChoices();
+    private static final int CHOICES = CODES.length;
+    // BEATS[a][b]: a beats b
+    private static final boolean[][] BEATS = new boolean[CHOICES][CHOICES];
+    // what trim() leaves, addPlayer() grows them again
+    private static final long[] NO_IDS = new long[0];
+    private static final int[] NONE = new int[0];
+    private static final int INITIAL_CAPACITY = 16;
+    static {
+        beats("r", "s", "l"); // Rock beats Scissors & Lizard
+        beats("p", "r", "k"); // Paper beats Rock & Spock
+        beats("s", "p", "l"); // Scissors beats Paper & Lizard
+        beats("l", "k", "p"); // Lizard beats Spock & Paper
+        beats("k", "s", "r"); // Spock beats Scissors & Rock
+    }
+
+    private static void beats(String winner, String... losers) {
+        for (String loser : losers) {
+            BEATS[choiceOrdinal(winner)][choiceOrdinal(loser)] = true;
+        }
+    }
+
+    /**
+     * @param choice a pick as sent by the client
+     * @return its ordinal, NO_CHOICE for null/blank or UNKNOWN_CHOICE
+     */
+    public static int choiceOrdinal(String choice) {
+        if (choice == null || choice.trim().isEmpty()) {
+            return NO_CHOICE;
+        }
+        for (int i = 0; i < CHOICES; i++) {
+            if (CODES[i].equals(choice)) {
+                return i;
+            }
+        }
+        return UNKNOWN_CHOICE;
+    }
+
+    /**
+     * Compares two picks of a battle (first is the earlier player in the room)
+     *
+     * @return positive if first wins, negative if second wins, 0 if tie
+     */
+    public static int compare(int first, int second) {
+        if (first == second || first == UNKNOWN_CHOICE) {
+            return 0;
+        }
+        if (second == UNKNOWN_CHOICE) {
+            // matches the original string comparison: an unknown pick beats an earlier one
+            return -1;
+        }
+        return BEATS[first][second] ? 1 : -1;
+    }
+
+    /**
+     * Outcome of resolveRound(), reused by the next call. Entries are player
+     * indexes in load order.
+     */
+    public static class RoundResult {
+        private int[] nonPickers = NONE;
+        private int nonPickerCount;
+        private int[] active = NONE;
+        private int activeCount;
+        private int[] winners = NONE;
+        private int winnerCount;
+        private int[] losers = NONE;
+        private int loserCount;
+        private int maxWins;
+        private boolean tooFewPlayers;
+        private boolean sessionOver;
+
+        /**
+         * @return number of players eliminated for not picking
+         */
+        public int getNonPickerCount() {
+            return nonPickerCount;
+        }
+
+        public int getNonPicker(int k) {
+            return nonPickers[k];
+        }
+
+        /**
+         * @return number of players who battled this round
+         */
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        public int getActive(int k) {
+            return active[k];
+        }
+
+        /**
+         * @return number of round winners (each got a point)
+         */
+        public int getWinnerCount() {
+            return winnerCount;
+        }
+
+        public int getWinner(int k) {
+            return winners[k];
+        }
+
+        /**
+         * @return number of players eliminated for winning no battle
+         */
+        public int getLoserCount() {
+            return loserCount;
+        }
+
+        public int getLoser(int k) {
+            return losers[k];
+        }
+
+        /**
+         * @return the most battles any player won
+         */
+        public int getMaxWins() {
+            return maxWins;
+        }
+
+        /**
+         * @return true if fewer than 2 players were left to battle (no winners or
+         *         losers then)
+         */
+        public boolean isTooFewPlayers() {
+            return tooFewPlayers;
+        }
+
+        /**
+         * @return true if at most one player is left in the game
+         */
+        public boolean isSessionOver() {
+            return sessionOver;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (active.length < capacity) {
+                nonPickers = Arrays.copyOf(nonPickers, capacity);
+                active = Arrays.copyOf(active, capacity);
+                winners = Arrays.copyOf(winners, capacity);
+                losers = Arrays.copyOf(losers, capacity);
+            }
+        }
+    }
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] choices = new int[INITIAL_CAPACITY];
+    private int[] flags = new int[INITIAL_CAPACITY];
+    private int[] points = new int[INITIAL_CAPACITY];
+    private int[] wins = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private final int[] choiceCounts = new int[CHOICES];
+    private final int[] winsAgainst = new int[CHOICES];
+    private final RoundResult result = new RoundResult();
+    private int[] sessionWinners = new int[INITIAL_CAPACITY];
+    private int sessionWinnerCount = 0;
+    private int topPoints = Integer.MIN_VALUE;
+
+    /**
+     * Removes every player
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Removes every player and gives back the memory of the per-player arrays
+     * (i.e. when the Room hibernates)
+     */
+    public void trim() {
+        clear();
+        ids = NO_IDS;
+        choices = NONE;
+        flags = NONE;
+        points = NONE;
+        wins = NONE;
+        sessionWinners = NONE;
+        result.nonPickers = NONE;
+        result.active = NONE;
+        result.winners = NONE;
+        result.losers = NONE;
+    }
+
+    /**
+     * Adds a player (the load order is the battle order)
+     *
+     * @return the player's index
+     */
+    public int addPlayer(long id, int choice, int playerFlags, int playerPoints) {
+        if (size == ids.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            choices = Arrays.copyOf(choices, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            points = Arrays.copyOf(points, capacity);
+            wins = Arrays.copyOf(wins, capacity);
+            sessionWinners = Arrays.copyOf(sessionWinners, capacity);
+        }
+        ids[size] = id;
+        choices[size] = choice;
+        flags[size] = playerFlags;
+        points[size] = playerPoints;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public int getChoice(int index) {
+        return choices[index];
+    }
+
+    public void setChoice(int index, int choice) {
+        choices[index] = choice;
+    }
+
+    public int getFlags(int index) {
+        return flags[index];
+    }
+
+    public void setFlags(int index, int playerFlags) {
+        flags[index] = playerFlags;
+    }
+
+    public int getPoints(int index) {
+        return points[index];
+    }
+
+    /**
+     * @return battles the player won in the last resolveRound()
+     */
+    public int getWins(int index) {
+        return wins[index];
+    }
+
+    private boolean isActive(int index) {
+        return (flags[index] & READY) != 0 && (flags[index] & INACTIVE) == 0;
+    }
+
+    /**
+     * Resolves a round on the loaded players: eliminates active players without
+     * a pick, battles every remaining active pair, gives each player with the
+     * most wins a point and eliminates those without a win. The players' flags
+     * and points are updated; their choices are left for reporting the battles
+     * (see clearChoices()).
+     *
+     * @return the outcome (reused by the next call)
+     */
+    public RoundResult resolveRound() {
+        RoundResult r = result;
+        r.ensureCapacity(size);
+        r.nonPickerCount = 0;
+        r.activeCount = 0;
+        r.winnerCount = 0;
+        r.loserCount = 0;
+        r.maxWins = 0;
+        Arrays.fill(choiceCounts, 0);
+        for (int i = 0; i < size; i++) {
+            wins[i] = 0;
+            if (!isActive(i)) {
+                continue;
+            }
+            if (choices[i] == NO_CHOICE) {
+                flags[i] |= ELIMINATED;
+                r.nonPickers[r.nonPickerCount++] = i;
+                continue;
+            }
+            r.active[r.activeCount++] = i;
+            if (choices[i] != UNKNOWN_CHOICE) {
+                choiceCounts[choices[i]]++;
+            }
+        }
+        r.tooFewPlayers = r.activeCount < 2;
+        if (!r.tooFewPlayers) {
+            // wins of a pick = players with a pick it beats
+            for (int a = 0; a < CHOICES; a++) {
+                int total = 0;
+                for (int b = 0; b < CHOICES; b++) {
+                    if (BEATS[a][b]) {
+                        total += choiceCounts[b];
+                    }
+                }
+                winsAgainst[a] = total;
+            }
+            int knownSoFar = 0;
+            for (int k = 0; k < r.activeCount; k++) {
+                int i = r.active[k];
+                if (choices[i] == UNKNOWN_CHOICE) {
+                    wins[i] = knownSoFar;
+                } else {
+                    wins[i] = winsAgainst[choices[i]];
+                    knownSoFar++;
+                }
+                r.maxWins = Math.max(r.maxWins, wins[i]);
+            }
+            for (int k = 0; k < r.activeCount; k++) {
+                int i = r.active[k];
+                if (wins[i] == r.maxWins && r.maxWins > 0) {
+                    points[i]++;
+                    r.winners[r.winnerCount++] = i;
+                }
+            }
+            for (int k = 0; k < r.activeCount; k++) {
+                int i = r.active[k];
+                if (wins[i] == 0) {
+                    flags[i] |= ELIMINATED;
+                    r.losers[r.loserCount++] = i;
+                }
+            }
+        }
+        int remaining = 0;
+        for (int i = 0; i < size; i++) {
+            if (isActive(i)) {
+                remaining++;
+            }
+        }
+        r.sessionOver = remaining <= 1;
+        return r;
+    }
+
+    /**
+     * Clears every player's pick for the next round
+     */
+    public void clearChoices() {
+        Arrays.fill(choices, 0, size, NO_CHOICE);
+    }
+
+    /**
+     * Finds the session winners: the spectating/away players excluded, everyone
+     * with the most points
+     *
+     * @return number of winners (0 if nobody contended)
+     */
+    public int findSessionWinners() {
+        topPoints = Integer.MIN_VALUE;
+        sessionWinnerCount = 0;
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & (SPECTATOR | AWAY)) == 0) {
+                topPoints = Math.max(topPoints, points[i]);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & (SPECTATOR | AWAY)) == 0 && points[i] == topPoints) {
+                sessionWinners[sessionWinnerCount++] = i;
+            }
+        }
+        return sessionWinnerCount;
+    }
+
+    public int getSessionWinner(int k) {
+        return sessionWinners[k];
+    }
+
+    /**
+     * @return the winners' points from findSessionWinners() (Integer.MIN_VALUE
+     *         if nobody contended)
+     */
+    public int getTopPoints() {
+        return topPoints;
+    }
+}
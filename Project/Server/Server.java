@@ -3,14 +3,26 @@ package Project.Server;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
+import Project.Common.Constants;
+import Project.Common.AsyncLogHandler;
+import Project.Common.GameClock;
+import Project.Common.GameMode;
+import Project.Common.LogCategory;
 import Project.Common.LoggerUtil;
+import Project.Common.Phase;
 
 import Project.Common.TextFX.Color;
 import Project.Common.TextFX;
+import Project.Common.WhisperPayload;
 import Project.Exceptions.DuplicateRoomException;
 import Project.Exceptions.RoomNotFoundException;
 
@@ -23,6 +35,10 @@ public enum Server {
         config.setFileSizeLimit(2048 * 1024); // 2MB
         config.setFileCount(1);
         config.setLogLocation("server.log");
+        // write the log file from a background thread; under a flood of records drop
+        // (and count) them rather than stall the threads serving clients
+        config.setAsync(true);
+        config.setOverflowPolicy(AsyncLogHandler.OverflowPolicy.DROP);
         // Set the logger configuration
         LoggerUtil.INSTANCE.setConfig(config);
     }
@@ -32,10 +48,36 @@ public enum Server {
     // The key is the unique Room name and the Room is the instance
     private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
     private boolean isRunning = true;
-    private long nextClientId = 0;
+    // every initialized session indexed by id and name (also allocates client ids)
+    private final SessionRegistry sessions = new SessionRegistry();
+    // sessions whose socket dropped but can still be resumed by the client
+    private final ResumableSessions resumableSessions = new ResumableSessions();
+    // optional localhost monitoring endpoint
+    private AdminServer adminServer = null;
+    // optional continuous JFR recording
+    private FlightRecording flightRecording = null;
+    // optional Room monitor contention sampler
+    private RoomWatchdog roomWatchdog = null;
+    // idle time after which a Room hibernates (0 = never)
+    private long hibernateAfterMs = 0;
+    // optional Room snapshots, restored on startup
+    private java.io.File checkpointDirectory = null;
+    private int checkpointSeconds = Checkpointer.DEFAULT_INTERVAL_SECONDS;
+    private Checkpointer checkpointer = null;
+    // optional StateLog (write-ahead log) next to the checkpoints
+    private boolean stateLogEnabled = false;
+    private long stateLogSyncMs = StateLog.DEFAULT_SYNC_INTERVAL_MS;
+    // seats of restored Rooms by session token, until their client reconnects
+    private final ConcurrentHashMap<String, RestoredSeat> restoredSeats = new ConcurrentHashMap<>();
+
+    /**
+     * A member of a restored Room waiting for their client to reconnect
+     */
+    private record RestoredSeat(String roomName, long clientId) {
+    }
 
     private void info(String message) {
-        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Server: %s", message), Color.YELLOW));
+        LoggerUtil.INSTANCE.log(LogCategory.NETWORK, Level.INFO, Color.YELLOW, "Server: %s", message);
     }
 
     private Server() {
@@ -50,6 +92,13 @@ public enum Server {
      */
     private void shutdown() {
         try {
+            if (checkpointer != null) {
+                // last snapshot before the Rooms are emptied
+                checkpointer.stop();
+                StateLog.INSTANCE.close();
+            }
+            // parked sessions won't be resumed anymore
+            resumableSessions.expireAll();
             // chose removeIf over forEach to avoid potential
             // ConcurrentModificationException
             // since empty rooms tell the server to remove themselves
@@ -57,6 +106,18 @@ public enum Server {
                 room.disconnectAll();
                 return true;
             });
+            long dropped = LoggerUtil.INSTANCE.getDroppedCount();
+            if (dropped > 0) {
+                LoggerUtil.INSTANCE.warning(String.format("%s log record(s) were dropped", dropped));
+            }
+            if (adminServer != null) {
+                adminServer.stop();
+            }
+            if (roomWatchdog != null) {
+                roomWatchdog.shutdown();
+            }
+            EventJournal.INSTANCE.close();
+            LoggerUtil.INSTANCE.flush();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -69,6 +130,20 @@ public enum Server {
         // Simplified client connection loop
         try (ServerSocket serverSocket = new ServerSocket(port)) {
             createLobby();// create the lobby as a plain Room (not a GameRoom)
+            if (checkpointDirectory != null) {
+                checkpointer = new Checkpointer(checkpointDirectory, checkpointSeconds);
+                restoreRooms();
+                if (stateLogEnabled) {
+                    recoverStateLog(new java.io.File(checkpointDirectory, "wal"));
+                }
+                checkpointer.start(GameClock.SYSTEM);
+            }
+            if (hibernateAfterMs > 0) {
+                // sweep often enough that a Room hibernates soon after going idle
+                long sweepMs = Math.max(1000, hibernateAfterMs / 4);
+                GameClock.SYSTEM.scheduleAtFixedRate(this::hibernateIdleRooms, sweepMs, sweepMs);
+            }
+            new ServerConsole().start(); // admin commands from stdin
             while (isRunning) {
                 info("Waiting for next client");
                 Socket incomingClient = serverSocket.accept(); // blocking action, waits for a client connection
@@ -90,6 +165,133 @@ public enum Server {
         }
     }
 
+    /**
+     * Hibernates the Rooms nobody acted in for hibernateAfterMs
+     */
+    private void hibernateIdleRooms() {
+        int hibernated = 0;
+        for (Room room : rooms.values()) {
+            try {
+                if (room.hibernate(hibernateAfterMs)) {
+                    hibernated++;
+                }
+            } catch (Exception e) {
+                LoggerUtil.INSTANCE.severe(String.format("Failed to hibernate Room %s", room.getName()), e);
+            }
+        }
+        if (hibernated > 0) {
+            info(String.format("Hibernated %s idle room(s), %s hibernating", hibernated, Room.getHibernatedCount()));
+        }
+    }
+
+    /**
+     * Recreates the GameRooms of the last checkpoint. Their members get their
+     * seat back when their client reconnects with its session token.
+     */
+    private void restoreRooms() {
+        long start = System.nanoTime();
+        int restoredRooms = 0;
+        int restoredMembers = 0;
+        for (Checkpointer.Snapshot snapshot : checkpointer.load()) {
+            final String nameCheck = snapshot.roomName().toLowerCase();
+            if (rooms.containsKey(nameCheck)) {
+                continue;
+            }
+            GameRoom room = new GameRoom(snapshot.roomName());
+            List<Room.MemberState> members;
+            try {
+                members = room.restore(snapshot.state());
+            } catch (IOException e) {
+                LoggerUtil.INSTANCE.severe(String.format("Failed to restore Room %s", snapshot.roomName()), e);
+                continue;
+            }
+            if (members.isEmpty()) {
+                continue;
+            }
+            for (Room.MemberState member : members) {
+                sessions.reserveClientId(member.clientId());
+                if (member.sessionToken() != null) {
+                    restoredSeats.put(member.sessionToken(), new RestoredSeat(room.getName(), member.clientId()));
+                }
+            }
+            rooms.put(nameCheck, room);
+            restoredRooms++;
+            restoredMembers += members.size();
+        }
+        info(String.format("Restored %s room(s) with %s player(s) in %.1fms", restoredRooms, restoredMembers,
+                (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    /**
+     * Replays the StateLog on top of the restored Rooms, then keeps logging to it
+     * 
+     * @param directory
+     */
+    private void recoverStateLog(java.io.File directory) {
+        // Rooms created after the last checkpoint only exist in the log
+        Map<String, GameRoom> created = new HashMap<>();
+        StateLog.Recovery recovery = StateLog.replay(directory, new StateLog.Replayer() {
+            private Room room(String roomName) {
+                final String nameCheck = roomName.toLowerCase();
+                Room room = rooms.get(nameCheck);
+                if (room == null) {
+                    GameRoom recovered = new GameRoom(roomName);
+                    rooms.put(nameCheck, recovered);
+                    created.put(nameCheck, recovered);
+                    room = recovered;
+                }
+                return room;
+            }
+
+            @Override
+            public void member(String roomName, Room.MemberState member) {
+                Room room = room(roomName);
+                room.recoverSeat(member);
+                sessions.reserveClientId(member.clientId());
+                if (member.sessionToken() != null) {
+                    restoredSeats.put(member.sessionToken(), new RestoredSeat(room.getName(), member.clientId()));
+                }
+            }
+
+            @Override
+            public void game(String roomName, Phase phase, int round, GameMode gameMode, boolean cooldown,
+                    boolean gameStarted) {
+                if (room(roomName) instanceof GameRoom room) {
+                    room.recoverGameState(phase, round, gameMode, cooldown, gameStarted);
+                }
+            }
+
+            @Override
+            public void leave(String roomName, long clientId) {
+                Room room = rooms.get(roomName.toLowerCase());
+                if (room != null) {
+                    room.dropSeat(clientId);
+                }
+            }
+        });
+        info(String.format("Replayed %s state log record(s), %.2fMB in %.1fms (%.1fms/MB)%s", recovery.records(),
+                recovery.bytes() / (1024.0 * 1024.0), recovery.nanos() / 1_000_000.0, recovery.msPerMb(),
+                recovery.torn() > 0 ? String.format(", %s torn segment(s)", recovery.torn()) : ""));
+        int recoveredRooms = 0;
+        for (Map.Entry<String, GameRoom> entry : created.entrySet()) {
+            GameRoom room = entry.getValue();
+            if (room.getSeatCount() == 0) {
+                rooms.remove(entry.getKey()); // everyone left again before the restart
+            } else {
+                room.restoreSeats();
+                recoveredRooms++;
+            }
+        }
+        if (recoveredRooms > 0) {
+            info(String.format("Recovered %s room(s) created after the last checkpoint", recoveredRooms));
+        }
+        try {
+            StateLog.INSTANCE.open(directory, stateLogSyncMs);
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe("Failed to open the state log, continuing without it", e);
+        }
+    }
+
     /**
      * Callback passed to ServerThread to inform Server they're ready to receive
      * data
@@ -97,10 +299,56 @@ public enum Server {
      * @param serverThread
      */
     private void onServerThreadInitialized(ServerThread serverThread) {
-        // Generate Server controlled clientId
-        nextClientId = Math.max(++nextClientId, 1);
-        serverThread.setClientId(nextClientId);
-        serverThread.sendClientId();// syncs the data to the Client
+        ServerThread previous = resumableSessions.claim(serverThread.getRequestedSessionToken());
+        if (previous != null) {
+            resumeSession(previous, serverThread);
+            return;
+        }
+        if (sessions.isBanned(serverThread.getClientName())) {
+            rejectSession(serverThread, "You are banned from this server");
+            return;
+        }
+        String token = serverThread.getRequestedSessionToken();
+        RestoredSeat seat = token == null ? null : restoredSeats.remove(token);
+        Room seatRoom = seat == null ? null : rooms.get(seat.roomName().toLowerCase());
+        Room.MemberState member = seatRoom == null ? null : seatRoom.claimSeat(seat.clientId());
+        if (member != null) {
+            // back after a Server restart: same id, points and flags
+            member.applyTo(serverThread);
+        } else {
+            // Generate Server controlled clientId
+            serverThread.setClientId(sessions.nextClientId());
+        }
+        if (!sessions.register(serverThread)) {
+            ServerThread existing = sessions.findByName(serverThread.getClientName());
+            if (existing != null && existing.isDetached()) {
+                // same name logging in without the resume token, the parked session is stale
+                resumableSessions.claim(existing.getSessionToken());
+                existing.expireSession();
+            }
+            if (!sessions.register(serverThread)) {
+                rejectSession(serverThread,
+                        String.format("The name %s is already in use", serverThread.getClientName()));
+                return;
+            }
+        }
+        if (member != null) {
+            serverThread.setSessionToken(token);
+            EventJournal.INSTANCE.resume(serverThread.getClientId(), serverThread.getClientName());
+            serverThread.sendClientId(true);
+            try {
+                joinRoom(seatRoom.getName(), serverThread);
+                info(String.format("*%s reseated in restored Room %s*", serverThread.getDisplayName(),
+                        seatRoom.getName()));
+                return;
+            } catch (RoomNotFoundException e) {
+                // the restored Room closed meanwhile, fall back to the Lobby
+            }
+        } else {
+            serverThread.setSessionToken(resumableSessions.newToken());
+            EventJournal.INSTANCE.connect(serverThread.getClientId(), serverThread.getClientName());
+            serverThread.sendClientId();// syncs the data to the Client
+        }
         // add initialized client to the lobby
         info(String.format("*%s initialized*", serverThread.getDisplayName()));
         try {
@@ -112,6 +360,227 @@ public enum Server {
         }
     }
 
+    /**
+     * Hands the session of a detached ServerThread over to the reconnected one.
+     * The client keeps its id, User state, Room and game seat and only receives
+     * the Payloads it missed (or a full room resync if it missed too many).
+     * 
+     * @param previous     the detached ServerThread
+     * @param serverThread the new connection presenting the session token
+     */
+    private void resumeSession(ServerThread previous, ServerThread serverThread) {
+        // the new connection only gets the session's id once it adopted it
+        EventJournal.INSTANCE.resume(previous.getClientId(), previous.getClientName());
+        sessions.replace(previous, serverThread);
+        Room room = previous.getCurrentRoom();
+        if (room == null || !room.isRunning()) {
+            // the Room went away while they were gone, fall back to the Lobby
+            serverThread.adoptSession(previous);
+            serverThread.sendClientId(true);
+            try {
+                joinRoom(Room.LOBBY, serverThread);
+            } catch (RoomNotFoundException e) {
+                info(String.format("*Error adding %s to Lobby*", serverThread.getDisplayName()));
+                e.printStackTrace();
+            }
+            return;
+        }
+        room.resumeClient(previous, serverThread);
+        info(String.format("*%s resumed their session in Room %s*", serverThread.getDisplayName(), room.getName()));
+    }
+
+    /**
+     * Refuses a connection during the handshake
+     * 
+     * @param serverThread
+     * @param reason       shown to the client
+     */
+    private void rejectSession(ServerThread serverThread, String reason) {
+        info(String.format("Rejecting %s: %s", serverThread.getClientName(), reason));
+        serverThread.sendMessage(Constants.DEFAULT_CLIENT_ID, reason);
+        serverThread.disconnect();
+    }
+
+    /**
+     * Removes a session from the registry once it's fully disconnected
+     * 
+     * @param serverThread
+     */
+    protected void unregisterSession(ServerThread serverThread) {
+        sessions.unregister(serverThread);
+        EventJournal.INSTANCE.disconnect(serverThread.getClientId(), serverThread.getClientName());
+    }
+
+    /**
+     * O(1) lookup of a connected (or parked) client by id
+     * 
+     * @param clientId
+     * @return the ServerThread or null
+     */
+    protected ServerThread findClient(long clientId) {
+        return sessions.findById(clientId);
+    }
+
+    /**
+     * O(1) case-insensitive lookup of a connected (or parked) client by name
+     * 
+     * @param clientName
+     * @return the ServerThread or null
+     */
+    protected ServerThread findClient(String clientName) {
+        return sessions.findByName(clientName);
+    }
+
+    /**
+     * Delivers a private message straight to the target's connection (one send
+     * plus the sender's confirmation, no Room fan-out)
+     * 
+     * @param sender
+     * @param whisper
+     */
+    protected void handleWhisper(ServerThread sender, WhisperPayload whisper) {
+        String message = whisper.getMessage();
+        if (message == null || message.isBlank()) {
+            return;
+        }
+        ServerThread target = sessions.findByName(whisper.getTargetName());
+        if (target == null) {
+            sender.sendMessage(Constants.DEFAULT_CLIENT_ID,
+                    String.format("%s isn't connected", whisper.getTargetName()));
+            return;
+        }
+        if (target == sender) {
+            sender.sendMessage(Constants.DEFAULT_CLIENT_ID, "You can't whisper to yourself");
+            return;
+        }
+        // a parked (reconnecting) target gets it when they resume
+        target.sendWhisper(sender, target.getDisplayName(), message);
+        sender.sendWhisper(sender, target.getDisplayName(), message);
+    }
+
+    /**
+     * Describes where a client is and whether they're reachable
+     * 
+     * @param clientName
+     * @return
+     */
+    protected String getPresence(String clientName) {
+        ServerThread serverThread = sessions.findByName(clientName);
+        if (serverThread == null) {
+            return String.format("%s is offline", clientName);
+        }
+        Room room = serverThread.getCurrentRoom();
+        String status = serverThread.isDetached() ? "reconnecting" : serverThread.isAway() ? "away" : "online";
+        return String.format("%s is %s%s", serverThread.getDisplayName(), status,
+                room == null ? "" : String.format(" in Room %s", room.getName()));
+    }
+
+    /**
+     * Admin action: disconnects a client (their session can't be resumed)
+     * 
+     * @param clientName
+     * @param reason     shown to the client
+     * @return false if nobody by that name is connected
+     */
+    protected boolean kick(String clientName, String reason) {
+        ServerThread target = sessions.findByName(clientName);
+        if (target == null) {
+            return false;
+        }
+        info(String.format("Kicking %s: %s", target.getDisplayName(), reason));
+        if (target.isDetached()) {
+            resumableSessions.claim(target.getSessionToken());
+            target.expireSession();
+            return true;
+        }
+        // nothing can resume it: the token is revoked here and the DISCONNECT for its
+        // own id makes the client drop it instead of reconnecting
+        resumableSessions.claim(target.getSessionToken());
+        target.setSessionToken(null);
+        target.sendMessage(Constants.DEFAULT_CLIENT_ID, reason);
+        target.sendDisconnect(target.getClientId());
+        Room room = target.getCurrentRoom();
+        if (room != null) {
+            room.handleDisconnect(target);
+        } else {
+            target.disconnect();
+        }
+        return true;
+    }
+
+    /**
+     * Admin action: prevents a name from logging in and kicks it if connected
+     * 
+     * @param clientName
+     */
+    protected void ban(String clientName) {
+        sessions.ban(clientName);
+        kick(clientName, "You have been banned from this server");
+    }
+
+    protected boolean unban(String clientName) {
+        return sessions.unban(clientName);
+    }
+
+    protected int getSessionCount() {
+        return sessions.size();
+    }
+
+    protected Collection<ServerThread> getSessions() {
+        return sessions.getSessions();
+    }
+
+    /**
+     * Dumps the continuous flight recording (if --jfr was given)
+     * 
+     * @return a description of the outcome
+     */
+    protected String dumpFlightRecording() {
+        if (flightRecording == null) {
+            return "Flight recording isn't enabled (start the server with --jfr)";
+        }
+        try {
+            return "Recording written to " + flightRecording.dump();
+        } catch (IOException e) {
+            return "Failed to dump the recording: " + e.getMessage();
+        }
+    }
+
+    /**
+     * @return number of sessions parked waiting for their client to resume
+     */
+    protected int getParkedSessionCount() {
+        return resumableSessions.size();
+    }
+
+    /**
+     * @return the Room watchdog (null unless --room-watchdog was given)
+     */
+    protected RoomWatchdog getRoomWatchdog() {
+        return roomWatchdog;
+    }
+
+    /**
+     * @return live (read-only) view of the Rooms
+     */
+    protected Collection<Room> getRooms() {
+        return Collections.unmodifiableCollection(rooms.values());
+    }
+
+    /**
+     * Called by a ServerThread whose socket dropped to keep its session around
+     * for the grace window
+     * 
+     * @param serverThread
+     * @return true if the session was parked
+     */
+    protected boolean parkSession(ServerThread serverThread) {
+        if (!isRunning) {
+            return false;
+        }
+        return resumableSessions.park(serverThread);
+    }
+
     /**
      * Creates the Lobby as a plain Room (not a GameRoom)
      * 
@@ -168,6 +637,46 @@ public enum Server {
         next.addClient(client);
     }
 
+    /**
+     * Moves several clients into a room in one step. Used when a Room closes so
+     * the target Room sends one snapshot per migrating client and one aggregated
+     * delta to its existing members.
+     * <p>
+     * Note: the caller is responsible for releasing the clients from their
+     * previous Room
+     * </p>
+     * 
+     * @param name    the target room
+     * @param clients the clients moving
+     * @throws RoomNotFoundException
+     */
+    protected void migrateClients(String name, List<ServerThread> clients) throws RoomNotFoundException {
+        final String nameCheck = name.toLowerCase();
+        Room next = rooms.get(nameCheck);
+        if (next == null) {
+            throw new RoomNotFoundException(String.format("Room %s wasn't found", name));
+        }
+        next.addClients(clients);
+    }
+
+    /**
+     * Admin action: closes a room and migrates its members to the Lobby
+     * 
+     * @param name
+     * @return false if the room doesn't exist or is the Lobby
+     */
+    protected boolean closeRoom(String name) {
+        if (Room.LOBBY.equalsIgnoreCase(name)) {
+            return false;
+        }
+        Room room = rooms.get(name.toLowerCase());
+        if (room == null) {
+            return false;
+        }
+        room.close();
+        return true;
+    }
+
     /**
      * Join a room as a spectator or normal player.
      *
@@ -248,11 +757,62 @@ public enum Server {
         LoggerUtil.INSTANCE.info("Server Starting");
         Server server = Server.INSTANCE;
         int port = 3000;
-        try {
-            port = Integer.parseInt(args[0]);
-        } catch (Exception e) {
-            // can ignore, will either be index out of bounds or type mismatch
-            // will default to the defined value prior to the try/catch
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("--lane-fairness=")) {
+                    // number of game-state payloads sent before one queued chat/timer payload
+                    OutboundQueue.setDefaultFairnessRatio(Integer.parseInt(arg.split("=", 2)[1]));
+                } else if (arg.startsWith("--outbound-capacity=")) {
+                    // most payloads queued per connection before chat/timer traffic is shed (0 = unbounded)
+                    OutboundQueue.setDefaultCapacity(Integer.parseInt(arg.split("=", 2)[1]));
+                } else if (arg.startsWith("--admin-port=")) {
+                    // localhost HTTP monitoring endpoint (see AdminServer)
+                    server.adminServer = new AdminServer(Integer.parseInt(arg.split("=", 2)[1]));
+                    server.adminServer.start();
+                } else if (arg.equals("--jfr") || arg.startsWith("--jfr=")) {
+                    // continuous flight recording, written to the directory on exit
+                    server.flightRecording = new FlightRecording(
+                            java.nio.file.Paths.get(arg.contains("=") ? arg.split("=", 2)[1] : "jfr"));
+                    server.flightRecording.start();
+                } else if (arg.equals("--room-watchdog") || arg.startsWith("--room-watchdog=")) {
+                    // samples Room monitor holds/waits, stall threshold in ms
+                    server.roomWatchdog = new RoomWatchdog(arg.contains("=") ? Long.parseLong(arg.split("=", 2)[1])
+                            : RoomWatchdog.DEFAULT_THRESHOLD_MS);
+                    server.roomWatchdog.start();
+                } else if (arg.startsWith("--hibernate-after=")) {
+                    // seconds without member activity before a Room hibernates
+                    server.hibernateAfterMs = Long.parseLong(arg.split("=", 2)[1]) * 1000;
+                } else if (arg.startsWith("--checkpoint=")) {
+                    // Room snapshot directory, restored on startup (see Checkpointer)
+                    server.checkpointDirectory = new java.io.File(arg.split("=", 2)[1]);
+                } else if (arg.startsWith("--checkpoint-interval=")) {
+                    // seconds between Room snapshots
+                    server.checkpointSeconds = Integer.parseInt(arg.split("=", 2)[1]);
+                } else if (arg.equals("--wal") || arg.startsWith("--wal=")) {
+                    // write-ahead log of game state between checkpoints, optional fsync
+                    // batching window in ms (negative = never fsync)
+                    server.stateLogEnabled = true;
+                    if (arg.contains("=")) {
+                        server.stateLogSyncMs = Long.parseLong(arg.split("=", 2)[1]);
+                    }
+                } else if (arg.startsWith("--journal=")) {
+                    // structured event journal directory (see EventJournal)
+                    EventJournal.INSTANCE.open(new java.io.File(arg.split("=", 2)[1]));
+                } else if (arg.startsWith("--replays=")) {
+                    // per-Room replay files of the games, for the client's /replay (see MatchRecorder)
+                    MatchRecorder.INSTANCE.open(new java.io.File(arg.split("=", 2)[1]));
+                } else if (arg.startsWith("--log=")) {
+                    // per-category level, i.e. --log=network:off or --log=game:fine
+                    String[] setting = arg.split("=", 2)[1].split(":", 2);
+                    LoggerUtil.INSTANCE.setLevel(LogCategory.valueOf(setting[0].toUpperCase()),
+                            Level.parse(setting[1].toUpperCase()));
+                } else if (!arg.startsWith("--")) {
+                    port = Integer.parseInt(arg);
+                }
+            } catch (Exception e) {
+                // can ignore, will default to the defined value prior to the try/catch
+                LoggerUtil.INSTANCE.warning("Ignoring invalid argument " + arg);
+            }
         }
         server.start(port);
         LoggerUtil.INSTANCE.warning("Server Stopped");
@@ -0,0 +1,94 @@
+package Project.Server;
+
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+import Project.Common.TextFX;
+import Project.Common.TextFX.Color;
+
+/**
+ * Reads admin commands from the server's stdin.
+ * <p>
+ * Commands: kick &lt;name&gt;, ban &lt;name&gt;, unban &lt;name&gt;, whois
+ * &lt;name&gt;, sessions, closeroom &lt;room&gt;, metrics [reset], jfr,
+ * contention
+ * </p>
+ */
+public class ServerConsole extends Thread {
+
+    public ServerConsole() {
+        super("ServerConsole");
+        setDaemon(true);
+    }
+
+    private void info(String message) {
+        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Console: %s", message), Color.GREEN));
+    }
+
+    @Override
+    public void run() {
+        try (Scanner si = new Scanner(System.in)) {
+            while (true) {
+                String line = si.nextLine().trim();
+                if (!line.isEmpty()) {
+                    processCommand(line);
+                }
+            }
+        } catch (NoSuchElementException | IllegalStateException e) {
+            // stdin closed (i.e., server started in the background), nothing to read
+        }
+    }
+
+    /**
+     * Controller for the admin commands
+     *
+     * @param line
+     */
+    protected void processCommand(String line) {
+        String[] parts = line.replaceAll(" +", " ").split(" ", 2);
+        String command = parts[0].toLowerCase();
+        String arg = parts.length > 1 ? parts[1].trim() : "";
+        switch (command) {
+            case "kick":
+                info(Server.INSTANCE.kick(arg, "You have been kicked from the server")
+                        ? String.format("Kicked %s", arg)
+                        : String.format("%s isn't connected", arg));
+                break;
+            case "ban":
+                Server.INSTANCE.ban(arg);
+                info(String.format("Banned %s", arg));
+                break;
+            case "unban":
+                info(Server.INSTANCE.unban(arg) ? String.format("Unbanned %s", arg)
+                        : String.format("%s wasn't banned", arg));
+                break;
+            case "whois":
+                info(Server.INSTANCE.getPresence(arg));
+                break;
+            case "sessions":
+                info(String.format("%s session(s)", Server.INSTANCE.getSessionCount()));
+                break;
+            case "closeroom":
+                info(Server.INSTANCE.closeRoom(arg) ? String.format("Closed %s", arg)
+                        : String.format("Can't close %s", arg));
+                break;
+            case "metrics":
+                // "metrics reset" clears the values after printing them
+                info("Metrics\n" + Metrics.INSTANCE.snapshot("reset".equalsIgnoreCase(arg)));
+                break;
+            case "jfr":
+                info(Server.INSTANCE.dumpFlightRecording());
+                break;
+            case "contention":
+                RoomWatchdog watchdog = Server.INSTANCE.getRoomWatchdog();
+                info(watchdog == null ? "Room watchdog isn't enabled (start the server with --room-watchdog)"
+                        : "Most contended rooms: " + watchdog.getTopContended(10));
+                break;
+            default:
+                info(String.format("Unknown command %s", command));
+                break;
+        }
+    }
+}
@@ -4,12 +4,16 @@ import java.net.Socket;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import Project.Common.TextFX.Color;
 import Project.Common.TimerPayload;
 import Project.Common.TimerType;
+import Project.Common.ClientInfo;
 import Project.Common.ConnectionPayload;
 import Project.Common.Constants;
 import Project.Common.GameModePayload;
+import Project.Common.LogCategory;
 import Project.Common.LoggerUtil;
 import Project.Common.Payload;
 import Project.Common.PayloadType;
@@ -17,8 +21,10 @@ import Project.Common.Phase;
 import Project.Common.PointsPayload;
 import Project.Common.ReadyPayload;
 import Project.Common.RoomAction;
+import Project.Common.RoomMembersPayload;
 import Project.Common.RoomResultPayload;
 import Project.Common.TextFX;
+import Project.Common.WhisperPayload;
 import Project.Exceptions.RoomNotFoundException;
 
 /**
@@ -26,6 +32,7 @@ import Project.Exceptions.RoomNotFoundException;
  */
 public class ServerThread extends BaseServerThread {
     private Consumer<ServerThread> onInitializationComplete; // callback to inform when this object is ready
+    private String requestedSessionToken; // token the client presented to resume a previous session
 
     /**
      * A wrapper method so we don't need to keep typing out the long/complex sysout
@@ -35,8 +42,15 @@ public class ServerThread extends BaseServerThread {
      */
     @Override
     protected void info(String message) {
-        LoggerUtil.INSTANCE
-                .info(TextFX.colorize(String.format("Thread[%s]: %s", this.getClientId(), message), Color.CYAN));
+        LoggerUtil.INSTANCE.log(LogCategory.NETWORK, Level.INFO, Color.CYAN, "Thread[%s]: %s", this.getClientId(),
+                message);
+    }
+
+    @Override
+    protected void info(Supplier<String> message) {
+        if (LoggerUtil.INSTANCE.isLoggable(LogCategory.NETWORK, Level.INFO)) {
+            info(message.get());
+        }
     }
 
     /**
@@ -218,6 +232,23 @@ public class ServerThread extends BaseServerThread {
         return sendToClient(payload);
     }
 
+    /**
+     * Syncs several room members in one Payload
+     * 
+     * @param roomName
+     * @param members
+     * @param isSnapshot true to replace the client's member list, false to add to
+     *                   it
+     * @return true for successful send
+     */
+    protected boolean sendRoomMembers(String roomName, List<ClientInfo> members, boolean isSnapshot) {
+        RoomMembersPayload rmp = new RoomMembersPayload();
+        rmp.setPayloadType(isSnapshot ? PayloadType.ROOM_SNAPSHOT : PayloadType.ROOM_JOIN_BULK);
+        rmp.setMessage(roomName);
+        rmp.setMembers(members);
+        return sendToClient(rmp);
+    }
+
     /**
      * Sends this client's id to the client.
      * This will be a successfully connection handshake
@@ -225,14 +256,34 @@ public class ServerThread extends BaseServerThread {
      * @return true for successful send
      */
     protected boolean sendClientId() {
+        return sendClientId(false);
+    }
+
+    /**
+     * Sends this client's id and session token to the client.
+     * 
+     * @param resumed true if a previous session was restored
+     * @return true for successful send
+     */
+    protected boolean sendClientId(boolean resumed) {
         ConnectionPayload payload = new ConnectionPayload();
         payload.setPayloadType(PayloadType.CLIENT_ID);
         payload.setClientId(getClientId());
         payload.setClientName(getClientName());// Can be used as a Server-side override of username (i.e., profanity
                                                // filter)
+        payload.setSessionToken(getSessionToken());
+        payload.setResumed(resumed);
         return sendToClient(payload);
     }
 
+    /**
+     * @return the session token the client sent with its connect handshake (null
+     *         for a fresh session)
+     */
+    protected String getRequestedSessionToken() {
+        return requestedSessionToken;
+    }
+
     /**
      * Sends a message to the client
      * 
@@ -262,12 +313,30 @@ public class ServerThread extends BaseServerThread {
         return sendToClient(ep);
     }
 
+    /**
+     * Sends a private message to the client
+     * 
+     * @param sender     who it's from
+     * @param targetName who it was addressed to
+     * @param message
+     * @return true for successful send
+     */
+    protected boolean sendWhisper(ServerThread sender, String targetName, String message) {
+        WhisperPayload wp = new WhisperPayload();
+        wp.setClientId(sender.getClientId());
+        wp.setSenderName(sender.getDisplayName());
+        wp.setTargetName(targetName);
+        wp.setMessage(message);
+        return sendToClient(wp);
+    }
+
     // End Send*() Methods
     @Override
     protected void processPayload(Payload incoming) {
 
         switch (incoming.getPayloadType()) {
             case CLIENT_CONNECT:
+                requestedSessionToken = ((ConnectionPayload) incoming).getSessionToken();
                 setClientName(((ConnectionPayload) incoming).getClientName().trim());
 
                 break;
@@ -345,6 +414,13 @@ public class ServerThread extends BaseServerThread {
                     sendMessage(Constants.DEFAULT_CLIENT_ID, "Error setting away status");
                 }
                 break;
+            case WHISPER:
+                try {
+                    Server.INSTANCE.handleWhisper(this, (WhisperPayload) incoming);
+                } catch (Exception e) {
+                    sendMessage(Constants.DEFAULT_CLIENT_ID, "Error sending whisper");
+                }
+                break;
             default:
                 LoggerUtil.INSTANCE.warning(TextFX.colorize("Unknown payload type received", Color.RED));
                 break;
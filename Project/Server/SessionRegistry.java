@@ -0,0 +1,122 @@
+package Project.Server;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-wide index of every initialized session (connected or parked for
+ * resume).
+ * <p>
+ * Lookups by client id and by (case-insensitive) client name are O(1) so
+ * direct messages, admin actions, duplicate-login checks and presence queries
+ * don't need to scan each Room.
+ * </p>
+ */
+public class SessionRegistry {
+    private final AtomicLong nextClientId = new AtomicLong(0);
+    private final ConcurrentHashMap<Long, ServerThread> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ServerThread> byName = new ConcurrentHashMap<>();
+    private final Set<String> bannedNames = ConcurrentHashMap.newKeySet();
+
+    private static String key(String name) {
+        return name == null ? "" : name.trim().toLowerCase();
+    }
+
+    /**
+     * Thread-safe client id allocator
+     *
+     * @return the next unused client id (always positive)
+     */
+    public long nextClientId() {
+        return nextClientId.incrementAndGet();
+    }
+
+    /**
+     * Makes sure future ids are allocated after the given one (i.e., ids restored
+     * from a previous run)
+     *
+     * @param clientId
+     */
+    public void reserveClientId(long clientId) {
+        nextClientId.accumulateAndGet(clientId, Math::max);
+    }
+
+    /**
+     * Indexes an initialized session
+     *
+     * @param serverThread
+     * @return false if the name is already taken by another session
+     */
+    public boolean register(ServerThread serverThread) {
+        ServerThread existing = byName.putIfAbsent(key(serverThread.getClientName()), serverThread);
+        if (existing != null && existing != serverThread) {
+            return false;
+        }
+        byId.put(serverThread.getClientId(), serverThread);
+        return true;
+    }
+
+    /**
+     * Removes a session from the indexes (only if it's still the indexed
+     * instance)
+     *
+     * @param serverThread
+     */
+    public void unregister(ServerThread serverThread) {
+        byId.remove(serverThread.getClientId(), serverThread);
+        byName.remove(key(serverThread.getClientName()), serverThread);
+    }
+
+    /**
+     * Points the indexes at the connection that resumed a session. Keyed by the
+     * previous connection since the resumed one only gets the session's id and
+     * name once it adopted the session.
+     *
+     * @param previous the detached connection (still holding the session)
+     * @param resumed
+     */
+    public void replace(ServerThread previous, ServerThread resumed) {
+        long clientId = previous.getClientId();
+        String name = key(previous.getClientName());
+        byId.remove(clientId, previous);
+        byName.remove(name, previous);
+        byId.put(clientId, resumed);
+        byName.put(name, resumed);
+    }
+
+    public ServerThread findById(long clientId) {
+        return byId.get(clientId);
+    }
+
+    public ServerThread findByName(String name) {
+        return byName.get(key(name));
+    }
+
+    public boolean isOnline(String name) {
+        ServerThread serverThread = findByName(name);
+        return serverThread != null && !serverThread.isDetached();
+    }
+
+    public Collection<ServerThread> getSessions() {
+        return byId.values();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    // bans
+    public void ban(String name) {
+        bannedNames.add(key(name));
+    }
+
+    public boolean unban(String name) {
+        return bannedNames.remove(key(name));
+    }
+
+    public boolean isBanned(String name) {
+        return bannedNames.contains(key(name));
+    }
+}
@@ -0,0 +1,476 @@
+package Project.Server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import Project.Common.GameMode;
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+import Project.Common.Phase;
+
+/**
+ * Write-ahead log of GameRoom state transitions between two checkpoints
+ * (enable with --wal or --wal=syncMs, needs --checkpoint).
+ * <p>
+ * Every record holds the new state, not a delta (a member's whole seat, or a
+ * Room's phase/round/game mode), so replaying a record the snapshot already
+ * contains is harmless. A record is {@code [int length][int crc][body]} in a
+ * {@code wal-<sequence>.log} segment file.
+ * </p>
+ * <p>
+ * Appends only copy the record into the pending buffer; a writer thread
+ * commits the buffer in groups: every record appended while the previous group
+ * was being written and fsynced goes out with the next write and fsync. The
+ * sync interval adds a batching window before each commit (more records per
+ * fsync, at most that much later on disk): 0 commits as soon as anything is
+ * pending, a negative interval never fsyncs and leaves it to the OS.
+ * </p>
+ * <p>
+ * Each checkpoint rolls to a new segment first and deletes the older segments
+ * once every Room was written. On startup the remaining segments are replayed
+ * on top of the restored snapshots; a torn record at the end of a segment
+ * (crash mid-write) ends that segment's replay.
+ * </p>
+ * <p>
+ * The log is disabled (every record call is a no-op) until open() is called,
+ * and again after a failed commit.
+ * </p>
+ */
+public enum StateLog {
+    INSTANCE; // Singleton instance
+
+    public static final String SEGMENT_PREFIX = "wal-";
+    public static final String SEGMENT_SUFFIX = ".log";
+    public static final long DEFAULT_SYNC_INTERVAL_MS = 5;
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    // record types
+    private static final byte MEMBER = 1; // room, MemberState
+    private static final byte GAME = 2; // room, phase, round, game mode, cooldown, game started
+    private static final byte LEAVE = 3; // room, clientId
+
+    private static final Metrics.Counter APPENDS = Metrics.INSTANCE.counter("wal.appends");
+    private static final Metrics.Counter APPENDED_BYTES = Metrics.INSTANCE.counter("wal.bytes");
+    private static final Metrics.Counter COMMITS = Metrics.INSTANCE.counter("wal.commits");
+    private static final Metrics.Histogram GROUP_SIZE = Metrics.INSTANCE.histogram("wal.group_size");
+    private static final Metrics.Histogram FSYNC_NS = Metrics.INSTANCE.histogram("wal.fsync_ns");
+    private static final Metrics.Counter FAILURES = Metrics.INSTANCE.counter("wal.failures");
+
+    /**
+     * Receives the replayed records, in log order
+     */
+    public interface Replayer {
+        void member(String room, Room.MemberState member);
+
+        void game(String room, Phase phase, int round, GameMode gameMode, boolean cooldown, boolean gameStarted);
+
+        void leave(String room, long clientId);
+    }
+
+    /**
+     * Outcome of a replay
+     *
+     * @param records records applied
+     * @param bytes   log bytes read
+     * @param nanos   time spent
+     * @param torn    segments that ended in a torn or corrupt record
+     */
+    public record Recovery(long records, long bytes, long nanos, int torn) {
+        /**
+         * @return replay time per MB of log
+         */
+        public double msPerMb() {
+            return bytes == 0 ? 0 : nanos / 1_000_000.0 / (bytes / (1024.0 * 1024.0));
+        }
+    }
+
+    private File directory;
+    private long syncIntervalMs = DEFAULT_SYNC_INTERVAL_MS;
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+    private volatile boolean enabled = false;
+    // a commit failed and logging stopped (see commit())
+    private boolean failed = false;
+    // appended records waiting for the writer (guarded by pendingLock)
+    private final Object pendingLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(64 * 1024);
+    private ByteArrayOutputStream spare = new ByteArrayOutputStream(64 * 1024);
+    private int pendingRecords = 0;
+    // the writer and roll() use the segment under the enum's monitor
+    private FileChannel channel;
+    private long sequence;
+    private Thread writer;
+
+    /**
+     * Starts logging into the directory, after the newest existing segment (call
+     * replay() before so those are recovered)
+     *
+     * @param directory
+     * @param syncIntervalMs batching window before each group commit, negative to
+     *                       never fsync
+     * @param segmentSize    bytes after which a segment is rolled even without a
+     *                       checkpoint
+     * @throws IOException
+     */
+    public synchronized void open(File directory, long syncIntervalMs, long segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create write-ahead log directory " + directory);
+        }
+        this.directory = directory;
+        this.syncIntervalMs = syncIntervalMs;
+        this.segmentSize = Math.max(1024, segmentSize);
+        long[] existing = listSequences(directory);
+        openSegment(existing.length == 0 ? 0 : existing[existing.length - 1] + 1);
+        enabled = true;
+        writer = new Thread(this::writeLoop, "StateLog-writer");
+        writer.setDaemon(true);
+        writer.start();
+        LoggerUtil.INSTANCE.info(String.format("Write-ahead logging to %s (sync interval %sms)",
+                directory.getAbsolutePath(), syncIntervalMs));
+    }
+
+    public void open(File directory, long syncIntervalMs) throws IOException {
+        open(directory, syncIntervalMs, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Commits what's pending and stops logging
+     */
+    public void close() {
+        Thread stopping;
+        synchronized (this) {
+            if (!enabled) {
+                return;
+            }
+            enabled = false;
+            stopping = writer;
+        }
+        synchronized (pendingLock) {
+            pendingLock.notifyAll();
+        }
+        try {
+            stopping.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                channel.force(false);
+                channel.close();
+                channel = null;
+            } catch (IOException e) {
+                LoggerUtil.INSTANCE.severe("Failed to close the write-ahead log", e);
+            }
+        }
+    }
+
+    // records
+    public void member(String room, ServerThread player) {
+        if (!enabled) {
+            return;
+        }
+        append(MEMBER, room, out -> Room.MemberState.of(player).write(out));
+    }
+
+    public void game(String room, Phase phase, int round, GameMode gameMode, boolean cooldown, boolean gameStarted) {
+        if (!enabled) {
+            return;
+        }
+        append(GAME, room, out -> {
+            out.writeByte(phase.ordinal());
+            out.writeInt(round);
+            out.writeByte(gameMode.ordinal());
+            out.writeBoolean(cooldown);
+            out.writeBoolean(gameStarted);
+        });
+    }
+
+    public void leave(String room, long clientId) {
+        if (!enabled) {
+            return;
+        }
+        append(LEAVE, room, out -> out.writeLong(clientId));
+    }
+    // end records
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(byte type, String room, Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeUTF(room);
+            body.write(out);
+        } catch (IOException e) {
+            FAILURES.increment();
+            LoggerUtil.INSTANCE.severe("Failed to encode a write-ahead log record", e);
+            return;
+        }
+        byte[] record = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        synchronized (pendingLock) {
+            writeInt(pending, record.length);
+            writeInt(pending, (int) crc.getValue());
+            pending.writeBytes(record);
+            if (pendingRecords++ == 0) {
+                pendingLock.notifyAll();
+            }
+        }
+        APPENDS.increment();
+        APPENDED_BYTES.add(record.length + 8);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Group commit loop: waits for pending records, lets the batching window
+     * pass, then writes (and fsyncs) everything pending at once
+     */
+    private void writeLoop() {
+        while (true) {
+            ByteArrayOutputStream group;
+            int records;
+            try {
+                synchronized (pendingLock) {
+                    while (pendingRecords == 0 && enabled) {
+                        pendingLock.wait();
+                    }
+                    if (pendingRecords == 0) {
+                        return; // closed and drained
+                    }
+                }
+                if (syncIntervalMs > 0 && enabled) {
+                    Thread.sleep(syncIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            synchronized (pendingLock) {
+                group = pending;
+                records = pendingRecords;
+                pending = spare;
+                pendingRecords = 0;
+            }
+            if (!commit(group, records)) {
+                return;
+            }
+            group.reset();
+            spare = group;
+        }
+    }
+
+    /**
+     * Writes a group of records. If that fails logging stops: replaying the
+     * records after the lost group would skip state in between, so the next
+     * checkpoint covers everything instead and deletes every segment.
+     *
+     * @return false if the commit failed and logging stopped
+     */
+    private synchronized boolean commit(ByteArrayOutputStream group, int records) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(group.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (syncIntervalMs >= 0) {
+                long start = System.nanoTime();
+                channel.force(false);
+                FSYNC_NS.recordSince(start);
+            }
+            COMMITS.increment();
+            GROUP_SIZE.record(records);
+            if (channel.size() >= segmentSize) {
+                openSegment(sequence + 1);
+            }
+            return true;
+        } catch (IOException e) {
+            FAILURES.increment();
+            LoggerUtil.INSTANCE.severe(String.format(
+                    "Failed to commit %s write-ahead log record(s), write-ahead logging stopped", records), e);
+            enabled = false;
+            failed = true;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already failing
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Starts a new segment. Everything appended before the call is in older
+     * segments or the new one (which is replayed after them).
+     *
+     * @return sequence of the new segment, -1 if the log isn't enabled (or the
+     *         sequence after the last one once logging stopped after a failed
+     *         commit, so the checkpoint deletes them all)
+     */
+    public synchronized long roll() {
+        if (failed) {
+            return sequence + 1;
+        }
+        if (!enabled) {
+            return -1;
+        }
+        try {
+            if (channel.size() == 0) {
+                return sequence; // nothing logged since the last roll
+            }
+            openSegment(sequence + 1);
+        } catch (IOException e) {
+            FAILURES.increment();
+            LoggerUtil.INSTANCE.severe("Failed to roll the write-ahead log", e);
+            return -1;
+        }
+        return sequence;
+    }
+
+    /**
+     * Deletes the segments before the given one (their records are covered by a
+     * checkpoint)
+     *
+     * @param firstKept
+     * @return number of segments deleted
+     */
+    public synchronized int truncateBefore(long firstKept) {
+        if (directory == null || firstKept < 0) {
+            return 0;
+        }
+        int deleted = 0;
+        for (long existing : listSequences(directory)) {
+            if (existing < firstKept && segmentFile(directory, existing).delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private void openSegment(long next) throws IOException {
+        FileChannel previous = channel;
+        channel = FileChannel.open(segmentFile(directory, next).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        sequence = next;
+        if (previous != null) {
+            previous.force(false);
+            previous.close();
+        }
+    }
+
+    /**
+     * Replays every segment in the directory, oldest first (call before open())
+     *
+     * @param directory
+     * @param replayer
+     * @return what was replayed
+     */
+    public static Recovery replay(File directory, Replayer replayer) {
+        long start = System.nanoTime();
+        long records = 0;
+        long bytes = 0;
+        int torn = 0;
+        for (long existing : listSequences(directory)) {
+            File file = segmentFile(directory, existing);
+            byte[] segment;
+            try {
+                segment = Files.readAllBytes(file.toPath());
+            } catch (IOException e) {
+                LoggerUtil.INSTANCE.warning(String.format("Skipping write-ahead log %s: %s", file.getName(),
+                        e.getMessage()));
+                continue;
+            }
+            bytes += segment.length;
+            ByteBuffer buffer = ByteBuffer.wrap(segment);
+            while (buffer.hasRemaining()) {
+                if (!replayRecord(buffer, replayer)) {
+                    torn++;
+                    LoggerUtil.INSTANCE.warning(String.format("Write-ahead log %s ends in a torn record at %s",
+                            file.getName(), buffer.position()));
+                    break;
+                }
+                records++;
+            }
+        }
+        return new Recovery(records, bytes, System.nanoTime() - start, torn);
+    }
+
+    private static boolean replayRecord(ByteBuffer buffer, Replayer replayer) {
+        if (buffer.remaining() < 8) {
+            return false;
+        }
+        int length = buffer.getInt();
+        int expected = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return false;
+        }
+        byte[] record = new byte[length];
+        buffer.get(record);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        if ((int) crc.getValue() != expected) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            byte type = in.readByte();
+            String room = in.readUTF();
+            switch (type) {
+                case MEMBER:
+                    replayer.member(room, Room.MemberState.read(in));
+                    break;
+                case GAME:
+                    replayer.game(room, Phase.values()[in.readByte()], in.readInt(),
+                            GameMode.values()[in.readByte()], in.readBoolean(), in.readBoolean());
+                    break;
+                case LEAVE:
+                    replayer.leave(room, in.readLong());
+                    break;
+                default:
+                    // unknown record from a newer version, skip it
+                    break;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static File segmentFile(File directory, long sequence) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private static long[] listSequences(File directory) {
+        String[] names = directory.list(
+                (dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (names == null) {
+            return new long[0];
+        }
+        return Arrays.stream(names)
+                .map(name -> name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))
+                .filter(number -> number.matches("\\d+"))
+                .mapToLong(Long::parseLong)
+                .sorted()
+                .toArray();
+    }
+}
@@ -0,0 +1,186 @@
+package Project.Server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import Project.Common.GameMode;
+import Project.Common.LogCategory;
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+import Project.Common.Phase;
+
+/**
+ * Benchmark of the StateLog: append throughput with group commit under
+ * different fsync batching windows and appender counts, then the time to replay
+ * what was written.
+ * <p>
+ * Usage: java Project.Server.StateLogBench [--dir=path] [--threads=1,4,16]
+ * [--sync=-1,0,1,5] [--seconds=3] (sync in ms, negative = never fsync)
+ * </p>
+ * <p>
+ * Appenders log member records of unstarted ServerThreads as fast as they can,
+ * as a busy server's Rooms would (but without the Room monitor). Throughput
+ * counts the records once they're committed (close() drains the buffer).
+ * Recovery replays the segments into a no-op Replayer, so it's the cost of
+ * reading, checking and decoding the log. It lives in this package for access
+ * to the Room/ServerThread internals.
+ * </p>
+ */
+public class StateLogBench {
+    private static final Metrics.Counter COMMITS = Metrics.INSTANCE.counter("wal.commits");
+    private static final Metrics.Histogram FSYNC_NS = Metrics.INSTANCE.histogram("wal.fsync_ns");
+
+    private File dir = null;
+    private int[] threads = { 1, 4, 16 };
+    private long[] syncs = { -1, 0, 1, 5 };
+    private long durationNanos = 3_000_000_000L;
+    private final PrintStream out;
+
+    public StateLogBench(PrintStream out) {
+        this.out = out;
+    }
+
+    public void run() throws IOException {
+        // keep the output to the results table
+        for (LogCategory category : LogCategory.values()) {
+            LoggerUtil.INSTANCE.setLevel(category, Level.OFF);
+        }
+        File root = dir != null ? dir : Files.createTempDirectory("statelog-bench").toFile();
+        out.println(String.format("dir=%s, %ss per run", root.getAbsolutePath(), durationNanos / 1e9));
+        out.println(String.format("%6s %7s %12s %8s %9s %10s %10s %9s %10s %9s", "sync", "threads", "appends/s",
+                "MB/s", "commits", "avg group", "fsync us", "log MB", "replay ms", "ms/MB"));
+        for (long sync : syncs) {
+            for (int count : threads) {
+                File directory = new File(root, String.format("sync%s_threads%s", sync, count));
+                run(directory, sync, count);
+            }
+        }
+    }
+
+    private void run(File directory, long sync, int count) throws IOException {
+        long commitsBefore = COMMITS.get();
+        Metrics.HistogramSnapshot fsyncBefore = FSYNC_NS.snapshot(false);
+        StateLog.INSTANCE.open(directory, sync);
+        AtomicLong appends = new AtomicLong(0);
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        List<Thread> appenders = new ArrayList<>();
+        for (int t = 0; t < count; t++) {
+            final int index = t;
+            Thread appender = new Thread(() -> {
+                ServerThread player = new ServerThread(new Socket(), p -> {
+                });
+                player.setClientId(index + 1);
+                player.setClientName("player" + index);
+                player.setSessionToken("token-" + index);
+                String room = "room" + index;
+                long local = 0;
+                while (System.nanoTime() < deadline) {
+                    player.setChoice((local & 1) == 0 ? "r" : "p");
+                    player.setPoints((int) local);
+                    StateLog.INSTANCE.member(room, player);
+                    if ((++local & 63) == 0) {
+                        StateLog.INSTANCE.game(room, Phase.IN_PROGRESS, (int) local, GameMode.RPS_3, false, true);
+                        local++;
+                    }
+                }
+                appends.addAndGet(local);
+            }, "appender-" + t);
+            appenders.add(appender);
+            appender.start();
+        }
+        for (Thread appender : appenders) {
+            try {
+                appender.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        StateLog.INSTANCE.close();
+        long elapsed = System.nanoTime() - start;
+        long commits = COMMITS.get() - commitsBefore;
+        Metrics.HistogramSnapshot fsyncAfter = FSYNC_NS.snapshot(false);
+        long fsyncs = fsyncAfter.getCount() - fsyncBefore.getCount();
+        long fsyncNs = fsyncAfter.getSum() - fsyncBefore.getSum();
+
+        StateLog.Recovery recovery = StateLog.replay(directory, new StateLog.Replayer() {
+            @Override
+            public void member(String room, Room.MemberState member) {
+            }
+
+            @Override
+            public void game(String room, Phase phase, int round, GameMode gameMode, boolean cooldown,
+                    boolean gameStarted) {
+            }
+
+            @Override
+            public void leave(String room, long clientId) {
+            }
+        });
+        double seconds = elapsed / 1e9;
+        double megabytes = recovery.bytes() / (1024.0 * 1024.0);
+        out.println(String.format("%6s %7s %12.0f %8.1f %9s %10.1f %10s %9.1f %10.1f %9.1f", sync, count,
+                appends.get() / seconds, megabytes / seconds, commits,
+                commits == 0 ? 0.0 : (double) appends.get() / commits,
+                fsyncs == 0 ? "-" : String.format("%.0f", fsyncNs / 1000.0 / fsyncs), megabytes,
+                recovery.nanos() / 1e6, recovery.msPerMb()));
+        if (recovery.records() != appends.get()) {
+            out.println(String.format("  replayed %s of %s records", recovery.records(), appends.get()));
+        }
+        StateLog.INSTANCE.truncateBefore(Long.MAX_VALUE);
+    }
+
+    private static long[] parseLongs(String value) {
+        String[] parts = value.split(",");
+        long[] values = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Long.parseLong(parts[i].trim());
+        }
+        return values;
+    }
+
+    private void apply(String arg) {
+        String[] setting = arg.split("=", 2);
+        String value = setting.length > 1 ? setting[1] : "";
+        switch (setting[0]) {
+            case "--dir":
+                dir = new File(value);
+                break;
+            case "--threads":
+                long[] parsed = parseLongs(value);
+                threads = new int[parsed.length];
+                for (int i = 0; i < parsed.length; i++) {
+                    threads[i] = (int) Math.max(1, parsed[i]);
+                }
+                break;
+            case "--sync":
+                syncs = parseLongs(value);
+                break;
+            case "--seconds":
+                durationNanos = (long) (Double.parseDouble(value) * 1e9);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + setting[0]);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        StateLogBench bench = new StateLogBench(System.out);
+        for (String arg : args) {
+            try {
+                bench.apply(arg);
+            } catch (Exception e) {
+                System.err.println("Ignoring invalid argument " + arg);
+            }
+        }
+        bench.run();
+    }
+}
@@ -0,0 +1,214 @@
+package Project.Server;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+
+import Project.Common.GameMode;
+import Project.Common.GameModePayload;
+import Project.Common.LogCategory;
+import Project.Common.LoggerUtil;
+import Project.Common.Phase;
+import Project.Common.VirtualClock;
+
+/**
+ * Plays complete GameRoom sessions (ready timer, rounds, round timers, game
+ * over) on VirtualClocks, far faster than real time and deterministically.
+ * <p>
+ * Usage: java Project.Server.VirtualSessionBench [--sessions=2000]
+ * [--players=6] [--mode=RPS_3] [--no-pick=0.05] [--max-rounds=200]
+ * [--seed=1] [--repeat=2]
+ * </p>
+ * <p>
+ * Each session gets a fresh GameRoom with its own VirtualClock and a Random
+ * seeded from --seed and the session number, and the bots pick from another
+ * one. Every player readies up, the ready timer is played out, then each
+ * round every bot picks (or, with the --no-pick probability, lets the round
+ * timer run out) until the game is over. Players are ServerThreads that are
+ * never started, so every send is a no-op.
+ * </p>
+ * <p>
+ * The whole batch runs --repeat times; every run has to produce the same
+ * digest (rounds and final points of every session) and leave no timer
+ * pending. It lives in this package for access to the GameRoom/ServerThread
+ * internals.
+ * </p>
+ */
+public class VirtualSessionBench {
+    private static final long TIMER_MS = 30_000;
+
+    private int sessions = 2000;
+    private int players = 6;
+    private GameMode mode = GameMode.RPS_3;
+    private double noPick = 0.05;
+    private int maxRounds = 200;
+    private long seed = 1;
+    private int repeat = 2;
+    private final PrintStream out;
+
+    public VirtualSessionBench(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Outcome of one run of the batch
+     */
+    private static class Run {
+        private long digest = 1;
+        private long rounds = 0;
+        private long simulatedMs = 0;
+        private int unfinished = 0;
+        private int pendingTimers = 0;
+        private long nanos;
+    }
+
+    /**
+     * Plays one session to its game over
+     */
+    private void play(int session, Run run) {
+        VirtualClock clock = new VirtualClock();
+        GameRoom room = new GameRoom("sim_" + session, clock, new Random(seed * 31 + session));
+        Random bots = new Random(seed * 17 + session);
+        List<ServerThread> members = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            ServerThread player = new ServerThread(new Socket(), p -> {
+            });
+            player.setClientId(i + 1);
+            player.setClientName("bot" + i);
+            members.add(player);
+        }
+        room.addClients(members);
+        if (mode != GameMode.RPS_3) {
+            GameModePayload gameMode = new GameModePayload();
+            gameMode.setGameMode(mode);
+            room.handleGameModeChange(members.get(0), gameMode);
+        }
+        String[] choices = mode.getChoices();
+        members.forEach(room::handleReady);
+        while (room.currentPhase == Phase.READY && clock.advanceToNext() > 0) {
+            // the ready timer counts down
+        }
+        int rounds = 0;
+        while (room.currentPhase == Phase.IN_PROGRESS && rounds < maxRounds) {
+            rounds++;
+            for (ServerThread player : members) {
+                if (room.currentPhase != Phase.IN_PROGRESS) {
+                    break; // the last pick ended the game
+                }
+                if (player.isEliminated() || player.isSpectator() || bots.nextDouble() < noPick) {
+                    continue;
+                }
+                room.handlePlayerPick(player, choices[bots.nextInt(choices.length)]);
+            }
+            if (room.currentPhase == Phase.IN_PROGRESS && (int) room.getStatus().get("round") == rounds) {
+                // someone didn't pick, the round timer ends the round
+                clock.advance(TIMER_MS);
+            }
+        }
+        if (room.currentPhase != Phase.READY) {
+            run.unfinished++;
+        }
+        run.rounds += rounds;
+        run.simulatedMs += clock.millis();
+        run.pendingTimers += clock.getPendingCount();
+        run.digest = run.digest * 31 + rounds;
+        for (ServerThread player : members) {
+            run.digest = run.digest * 31 + player.getPoints();
+        }
+    }
+
+    private Run runBatch() {
+        Run run = new Run();
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            play(i, run);
+        }
+        run.nanos = System.nanoTime() - start;
+        return run;
+    }
+
+    public void run() {
+        for (LogCategory category : LogCategory.values()) {
+            LoggerUtil.INSTANCE.setLevel(category, Level.OFF);
+        }
+        out.println(String.format("sessions=%s players=%s mode=%s no-pick=%s seed=%s", sessions, players, mode,
+                noPick, seed));
+        out.println(String.format("%-4s %10s %12s %12s %14s %10s %8s %18s", "run", "rounds", "rounds/game",
+                "wall ms", "sessions/s", "sim hours", "pending", "digest"));
+        // the timers print every tick to stdout
+        PrintStream stdout = System.out;
+        Long expected = null;
+        boolean deterministic = true;
+        for (int r = 1; r <= repeat; r++) {
+            Run run;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                run = runBatch();
+            } finally {
+                System.setOut(stdout);
+            }
+            out.println(String.format("%-4s %10s %12.2f %12.1f %14.0f %10.1f %8s %18x", r, run.rounds,
+                    (double) run.rounds / sessions, run.nanos / 1e6, sessions / (run.nanos / 1e9),
+                    run.simulatedMs / 3_600_000.0, run.pendingTimers, run.digest));
+            if (run.unfinished > 0) {
+                out.println(String.format("%s session(s) still going after %s rounds", run.unfinished, maxRounds));
+            }
+            if (expected != null && expected != run.digest) {
+                deterministic = false;
+            }
+            expected = run.digest;
+        }
+        if (repeat > 1) {
+            out.println(deterministic ? "deterministic: every run produced the same games"
+                    : "NOT deterministic: the runs produced different games");
+        }
+    }
+
+    private void apply(String arg) {
+        String[] setting = arg.split("=", 2);
+        String value = setting.length > 1 ? setting[1] : "";
+        switch (setting[0]) {
+            case "--sessions":
+                sessions = Math.max(1, Integer.parseInt(value));
+                break;
+            case "--players":
+                players = Math.max(2, Integer.parseInt(value));
+                break;
+            case "--mode":
+                mode = GameMode.valueOf(value.toUpperCase());
+                break;
+            case "--no-pick":
+                noPick = Math.max(0, Math.min(1, Double.parseDouble(value)));
+                break;
+            case "--max-rounds":
+                maxRounds = Math.max(1, Integer.parseInt(value));
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            case "--repeat":
+                repeat = Math.max(1, Integer.parseInt(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + setting[0] + " (modes: "
+                        + Arrays.toString(GameMode.values()) + ")");
+        }
+    }
+
+    public static void main(String[] args) {
+        VirtualSessionBench bench = new VirtualSessionBench(System.out);
+        for (String arg : args) {
+            try {
+                bench.apply(arg);
+            } catch (Exception e) {
+                System.err.println("Ignoring invalid argument " + arg);
+            }
+        }
+        bench.run();
+    }
+}
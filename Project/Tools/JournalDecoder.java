@@ -0,0 +1,114 @@
+package Project.Tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import Project.Common.PayloadType;
+import Project.Common.TimerType;
+import Project.Server.EventJournal;
+import Project.Server.EventJournal.EventType;
+
+/**
+ * Prints the records of EventJournal segment files as JSON lines.
+ * <p>
+ * Usage: java Project.Tools.JournalDecoder &lt;journal directory or segment
+ * file&gt;...
+ * </p>
+ */
+public class JournalDecoder {
+    private static final EventType[] EVENT_TYPES = EventType.values();
+    private static final PayloadType[] PAYLOAD_TYPES = PayloadType.values();
+    private static final TimerType[] TIMER_TYPES = TimerType.values();
+
+    private final PrintStream out;
+
+    public JournalDecoder(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Decodes every segment of a directory (oldest first) or a single segment
+     * file
+     *
+     * @param path
+     * @return number of records printed
+     * @throws IOException
+     */
+    public long decode(File path) throws IOException {
+        if (!path.isDirectory()) {
+            return decodeSegment(path);
+        }
+        long count = 0;
+        for (long sequence : EventJournal.listSequences(path)) {
+            count += decodeSegment(EventJournal.segmentFile(path, sequence));
+        }
+        return count;
+    }
+
+    private long decodeSegment(File segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.toPath()));
+        long count = 0;
+        for (int base = 0; base + EventJournal.RECORD_SIZE <= buffer.limit(); base += EventJournal.RECORD_SIZE) {
+            long time = buffer.getLong(base + EventJournal.RECORD_TIME);
+            if (time == 0) {
+                continue; // unused (or never completed) slot
+            }
+            out.println(toJson(buffer, base, time));
+            count++;
+        }
+        return count;
+    }
+
+    private static String toJson(ByteBuffer buffer, int base, long time) {
+        int type = buffer.get(base + EventJournal.RECORD_TYPE);
+        int payloadType = buffer.get(base + EventJournal.RECORD_PAYLOAD_TYPE);
+        int flags = buffer.getShort(base + EventJournal.RECORD_FLAGS);
+        int aux = buffer.getInt(base + EventJournal.RECORD_AUX);
+        EventType event = type >= 0 && type < EVENT_TYPES.length ? EVENT_TYPES[type] : null;
+
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"time\":").append(time);
+        json.append(",\"event\":\"").append(event == null ? "UNKNOWN_" + type : event.name()).append('"');
+        json.append(",\"clientId\":").append(buffer.getLong(base + EventJournal.RECORD_CLIENT_ID));
+        if (payloadType >= 0 && payloadType < PAYLOAD_TYPES.length) {
+            json.append(",\"payloadType\":\"").append(PAYLOAD_TYPES[payloadType].name()).append('"');
+        }
+        if (event == EventType.TIMER_FIRED && aux >= 0 && aux < TIMER_TYPES.length) {
+            json.append(",\"timer\":\"").append(TIMER_TYPES[aux].name()).append('"');
+        } else if (event == EventType.ROUND_RESULT) {
+            json.append(",\"round\":").append(aux);
+            json.append(",\"roundWinner\":").append((flags & 1) != 0);
+        }
+        json.append(",\"value\":").append(buffer.getLong(base + EventJournal.RECORD_VALUE));
+        json.append(",\"text\":\"");
+        for (int i = 0; i < EventJournal.TEXT_SIZE; i++) {
+            char c = (char) buffer.get(base + EventJournal.RECORD_TEXT + i);
+            if (c == 0) {
+                break;
+            }
+            if (c == '"' || c == '\\') {
+                json.append('\\');
+            }
+            json.append(c < 32 ? '?' : c);
+        }
+        return json.append("\"}").toString();
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java Project.Tools.JournalDecoder <journal directory or segment file>...");
+            System.exit(1);
+        }
+        JournalDecoder decoder = new JournalDecoder(System.out);
+        for (String arg : args) {
+            try {
+                decoder.decode(new File(arg));
+            } catch (IOException e) {
+                System.err.println("Failed to read " + arg + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,550 @@
+package Project.Tools;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import Project.Common.AwayPayload;
+import Project.Common.ConnectionPayload;
+import Project.Common.Constants;
+import Project.Common.GameMode;
+import Project.Common.GameModePayload;
+import Project.Common.Metrics;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
+import Project.Common.Phase;
+import Project.Common.ReadyPayload;
+import Project.Common.TimerPayload;
+import Project.Common.TimerType;
+import Project.Common.TraceContext;
+
+/**
+ * Headless bot swarm that speaks the real client protocol (the same Payload
+ * classes over ObjectStreams) to load a running server.
+ * <p>
+ * Usage: java Project.Tools.LoadGenerator [--host=localhost] [--port=3000]
+ * [--bots=100] [--room-size=4] [--duration=60] [--ramp-up=10]
+ * [--chat-per-min=6] [--churn-per-min=0.5] [--away-per-min=0.5]
+ * [--game-mode=RPS_3] [--report=10] [--timeout=10] [--session=0]
+ * (durations in seconds; with a session length bots reconnect as a new client
+ * after that long)
+ * </p>
+ * <p>
+ * Every bot runs on virtual threads (one for its script, one reading). Bots
+ * are grouped into GameRooms of room-size: the first of each group creates the
+ * room and sets the game mode, the rest join it, everyone readies up and picks
+ * a random choice at a random moment of each round timer. On top of that bots
+ * chat, toggle away and churn between rooms at the configured rates.
+ * </p>
+ * <p>
+ * Latency is measured per sent payload type from the send to the first
+ * payload the server answers with that carries the same trace id (see
+ * TraceContext), so it covers the whole request/response path. Sends without
+ * an answer within the timeout are counted as unanswered.
+ * </p>
+ */
+public class LoadGenerator {
+    private static final PayloadType[] TYPES = PayloadType.values();
+    private static final long TICK_MS = 100;
+
+    // scenario
+    private String host = "localhost";
+    private int port = 3000;
+    private int bots = 100;
+    private int roomSize = 4;
+    private long durationMs = 60_000;
+    private long rampUpMs = 10_000;
+    private double chatPerMinute = 6;
+    private double churnPerMinute = 0.5;
+    private double awayPerMinute = 0.5;
+    private GameMode gameMode = GameMode.RPS_3;
+    private long reportIntervalMs = 10_000;
+    private long timeoutMs = 10_000;
+    private long sessionMs = 0; // 0 keeps every bot connected for the whole run
+
+    private final String runId = Long.toString(System.currentTimeMillis() % 100_000, 36);
+    private final PrintStream out;
+
+    private final Metrics.Counter[] sent = Metrics.INSTANCE.counters("load.sent.", TYPES);
+    private final Metrics.Counter[] received = Metrics.INSTANCE.counters("load.received.", TYPES);
+    private final Metrics.Histogram[] latency = Metrics.INSTANCE.histograms("load.latency_us.", TYPES);
+    private final Metrics.Counter connectFailures = Metrics.INSTANCE.counter("load.errors.connect");
+    private final Metrics.Counter sendFailures = Metrics.INSTANCE.counter("load.errors.send");
+    private final Metrics.Counter dropped = Metrics.INSTANCE.counter("load.errors.disconnected");
+    private final Metrics.Counter unanswered = Metrics.INSTANCE.counter("load.errors.unanswered");
+    private final Metrics.Counter notices = Metrics.INSTANCE.counter("load.server_notices");
+    private final AtomicInteger connected = new AtomicInteger();
+
+    public LoadGenerator(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * A sent payload waiting for its answer
+     */
+    private record Pending(PayloadType type, long sentNanos) {
+    }
+
+    /**
+     * One simulated client
+     */
+    private class Bot implements Runnable {
+        private final int index;
+        private final String name;
+        private final String homeRoom;
+        private final boolean leader;
+        private final long deadline;
+        private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+        private Socket socket;
+        private ObjectOutputStream writer;
+        // not a monitor: a virtual thread blocked in a socket write while holding one
+        // pins its carrier, and a backed up server would stall every bot's reader
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private volatile boolean running = true;
+        private volatile long clientId = Constants.DEFAULT_CLIENT_ID;
+        private volatile String room = null;
+        private volatile Phase phase = Phase.READY;
+        private volatile boolean ready = false;
+        private volatile GameMode mode = GameMode.RPS_3;
+        // next round pick (0 when none is due)
+        private volatile long pickAt = 0;
+        private volatile int lastRoundTime = Integer.MAX_VALUE;
+        private volatile boolean picked = false;
+        // script state, only touched by the script thread
+        private long awayUntil = 0;
+        private long nextJoinAttempt = 0;
+        private int churned = 0;
+
+        private Bot(int index, int session, long deadline) {
+            this.index = index;
+            this.name = session == 0 ? String.format("bot%s_%s", runId, index)
+                    : String.format("bot%s_%s_%s", runId, index, session);
+            this.homeRoom = String.format("load%s_%s", runId, index / roomSize);
+            this.leader = index % roomSize == 0;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            try {
+                socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), (int) timeoutMs);
+                socket.setTcpNoDelay(true);
+                writer = new ObjectOutputStream(socket.getOutputStream());
+                ObjectInputStream reader = new ObjectInputStream(socket.getInputStream());
+                Thread.ofVirtual().name(name + "-reader").start(() -> listen(reader));
+            } catch (IOException e) {
+                connectFailures.increment();
+                close();
+                return;
+            }
+            connected.incrementAndGet();
+            try {
+                ConnectionPayload connect = new ConnectionPayload();
+                connect.setPayloadType(PayloadType.CLIENT_CONNECT);
+                connect.setClientName(name);
+                send(connect);
+                while (running && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(TICK_MS);
+                    step(System.currentTimeMillis());
+                    expirePending();
+                }
+                if (running) {
+                    Payload disconnect = new Payload();
+                    disconnect.setPayloadType(PayloadType.DISCONNECT);
+                    send(disconnect);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                connected.decrementAndGet();
+                close();
+            }
+        }
+
+        /**
+         * One tick of the script
+         */
+        private void step(long now) {
+            if (clientId == Constants.DEFAULT_CLIENT_ID) {
+                return; // still waiting for CLIENT_ID
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (room == null || Constants.LOBBY.equalsIgnoreCase(room)) {
+                if (now >= nextJoinAttempt) {
+                    // followers give the leader a moment to create the room
+                    nextJoinAttempt = now + 1000 + random.nextLong(1000);
+                    sendRoom(leader && churned == 0 ? PayloadType.ROOM_CREATE : PayloadType.ROOM_JOIN, homeRoom);
+                }
+                return;
+            }
+            if (phase == Phase.READY && !ready && awayUntil == 0) {
+                ready = true; // optimistic, corrected by the server's READY/RESET_READY
+                send(new ReadyPayload());
+            }
+            if (pickAt > 0 && now >= pickAt) {
+                pickAt = 0;
+                picked = true;
+                String[] choices = mode.getChoices();
+                Payload pick = new Payload();
+                pick.setPayloadType(PayloadType.PLAYER_PICK);
+                pick.setMessage(choices[random.nextInt(choices.length)]);
+                send(pick);
+            }
+            if (chance(chatPerMinute)) {
+                Payload message = new Payload();
+                message.setPayloadType(PayloadType.MESSAGE);
+                message.setMessage(String.format("hello from %s #%s", name, random.nextInt(1000)));
+                send(message);
+            }
+            if (awayUntil > 0 && now >= awayUntil) {
+                awayUntil = 0;
+                sendAway(false);
+            } else if (awayUntil == 0 && chance(awayPerMinute)) {
+                awayUntil = now + 2000 + random.nextLong(3000);
+                sendAway(true);
+            }
+            if (chance(churnPerMinute)) {
+                churned++;
+                if (random.nextBoolean()) {
+                    // hop to another group's room
+                    int group = random.nextInt(Math.max(1, (bots + roomSize - 1) / roomSize));
+                    sendRoom(PayloadType.ROOM_JOIN, String.format("load%s_%s", runId, group));
+                } else {
+                    // create a short-lived room of our own
+                    sendRoom(PayloadType.ROOM_CREATE, String.format("load%s_%s_%s", runId, index, churned));
+                }
+            }
+        }
+
+        private boolean chance(double perMinute) {
+            return perMinute > 0 && ThreadLocalRandom.current().nextDouble() < perMinute * TICK_MS / 60_000.0;
+        }
+
+        private void sendRoom(PayloadType type, String roomName) {
+            Payload payload = new Payload();
+            payload.setPayloadType(type);
+            payload.setMessage(roomName);
+            send(payload);
+        }
+
+        private void sendAway(boolean away) {
+            AwayPayload payload = new AwayPayload();
+            payload.setAway(away);
+            payload.setClientId(clientId);
+            send(payload);
+        }
+
+        private void send(Payload payload) {
+            if (!running) {
+                return;
+            }
+            TraceContext trace = TraceContext.start();
+            payload.setTrace(trace);
+            pending.put(trace.getTraceId(), new Pending(payload.getPayloadType(), System.nanoTime()));
+            try {
+                writeLock.lock();
+                try {
+                    writer.writeObject(payload);
+                    writer.flush();
+                } finally {
+                    writeLock.unlock();
+                }
+                sent[payload.getPayloadType().ordinal()].increment();
+            } catch (IOException e) {
+                pending.remove(trace.getTraceId());
+                sendFailures.increment();
+                close();
+            }
+        }
+
+        private void expirePending() {
+            long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            pending.values().removeIf(p -> {
+                boolean expired = p.sentNanos() < cutoff;
+                if (expired) {
+                    unanswered.increment();
+                }
+                return expired;
+            });
+        }
+
+        private void listen(ObjectInputStream reader) {
+            try {
+                while (running) {
+                    Payload payload = (Payload) reader.readObject();
+                    received[payload.getPayloadType().ordinal()].increment();
+                    TraceContext trace = payload.getTrace();
+                    if (trace != null) {
+                        Pending answered = pending.remove(trace.getTraceId());
+                        if (answered != null) {
+                            latency[answered.type().ordinal()]
+                                    .record((System.nanoTime() - answered.sentNanos()) / 1_000);
+                        }
+                    }
+                    process(payload);
+                }
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                if (running && System.currentTimeMillis() < deadline) {
+                    dropped.increment();
+                }
+                close();
+            }
+        }
+
+        /**
+         * Keeps just enough state for the script to react
+         */
+        private void process(Payload payload) {
+            switch (payload.getPayloadType()) {
+                case CLIENT_ID:
+                    clientId = payload.getClientId();
+                    break;
+                case ROOM_JOIN:
+                    if (payload.getClientId() == clientId) {
+                        room = payload.getMessage();
+                        ready = false;
+                        pickAt = 0;
+                        if (leader && homeRoom.equalsIgnoreCase(room)) {
+                            GameModePayload gameModePayload = new GameModePayload();
+                            gameModePayload.setGameMode(gameMode);
+                            send(gameModePayload);
+                        }
+                    }
+                    break;
+                case GAME_MODE:
+                    mode = ((GameModePayload) payload).getGameMode();
+                    break;
+                case PHASE:
+                    phase = Phase.valueOf(payload.getMessage());
+                    if (phase == Phase.READY) {
+                        ready = false;
+                        pickAt = 0;
+                    }
+                    break;
+                case READY:
+                    if (payload.getClientId() == clientId) {
+                        ready = ((ReadyPayload) payload).isReady();
+                    }
+                    break;
+                case RESET_READY:
+                    ready = false;
+                    break;
+                case TIME:
+                    TimerPayload timer = (TimerPayload) payload;
+                    if (timer.getTimerType() == TimerType.ROUND) {
+                        if (timer.getTime() > lastRoundTime) {
+                            picked = false; // timer went back up, so it's a new round
+                        }
+                        lastRoundTime = timer.getTime();
+                        if (!picked && pickAt == 0 && timer.getTime() > 1) {
+                            pickAt = System.currentTimeMillis()
+                                    + ThreadLocalRandom.current().nextLong((timer.getTime() - 1) * 1000L);
+                        }
+                    }
+                    break;
+                case MESSAGE:
+                    if (payload.getClientId() == Constants.DEFAULT_CLIENT_ID) {
+                        notices.increment(); // room/server messages (joins, rejections like "Current phase is ...")
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void close() {
+            running = false;
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    /**
+     * Runs the scenario and prints interval and final reports
+     *
+     * @throws InterruptedException
+     */
+    public void run() throws InterruptedException {
+        out.println(String.format(
+                "Starting %s bots against %s:%s in rooms of %s for %ss (ramp-up %ss, %s, chat %s/min, churn %s/min, away %s/min)",
+                bots, host, port, roomSize, durationMs / 1000, rampUpMs / 1000, gameMode, chatPerMinute,
+                churnPerMinute, awayPerMinute));
+        long start = System.currentTimeMillis();
+        long deadline = start + rampUpMs + durationMs;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Thread reporter = Thread.ofVirtual().name("load-reporter").start(() -> report(start, deadline));
+            for (int i = 0; i < bots; i++) {
+                long startAt = start + rampUpMs * i / bots;
+                long wait = startAt - System.currentTimeMillis();
+                if (wait > 0) {
+                    Thread.sleep(wait);
+                }
+                final int index = i;
+                executor.submit(() -> runSessions(index, deadline));
+            }
+            reporter.join();
+        }
+        printSummary(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Runs one bot as consecutive sessions of the configured length
+     */
+    private void runSessions(int index, long deadline) {
+        int session = 0;
+        long now;
+        while ((now = System.currentTimeMillis()) < deadline) {
+            long end = sessionMs > 0 ? Math.min(deadline, now + sessionMs) : deadline;
+            new Bot(index, session++, end).run();
+            if (System.currentTimeMillis() < end) {
+                // couldn't connect or got dropped, don't hammer the server
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void report(long start, long deadline) {
+        long[] lastSent = new long[TYPES.length];
+        long[] lastReceived = new long[TYPES.length];
+        long last = start;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(Math.min(reportIntervalMs, Math.max(1, deadline - System.currentTimeMillis())));
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long sentDelta = 0;
+            long receivedDelta = 0;
+            for (int i = 0; i < TYPES.length; i++) {
+                long s = sent[i].get();
+                long r = received[i].get();
+                sentDelta += s - lastSent[i];
+                receivedDelta += r - lastReceived[i];
+                lastSent[i] = s;
+                lastReceived[i] = r;
+            }
+            double seconds = Math.max(1, now - last) / 1000.0;
+            last = now;
+            out.println(String.format("[%4ss] connected=%s sent/s=%.0f received/s=%.0f errors=%s unanswered=%s",
+                    (now - start) / 1000, connected.get(), sentDelta / seconds, receivedDelta / seconds, errors(),
+                    unanswered.get()));
+        }
+    }
+
+    private long errors() {
+        return connectFailures.get() + sendFailures.get() + dropped.get();
+    }
+
+    private void printSummary(long elapsedMs) {
+        double seconds = Math.max(1, elapsedMs) / 1000.0;
+        out.println(String.format("Finished in %.1fs", seconds));
+        out.println(String.format("%-14s %10s %10s %10s %10s %10s %10s %10s", "type", "sent", "sent/s", "answered",
+                "p50(us)", "p90(us)", "p99(us)", "max(us)"));
+        for (int i = 0; i < TYPES.length; i++) {
+            if (sent[i].get() == 0) {
+                continue;
+            }
+            Metrics.HistogramSnapshot snapshot = latency[i].snapshot(false);
+            out.println(String.format("%-14s %10s %10.1f %10s %10s %10s %10s %10s", TYPES[i], sent[i].get(),
+                    sent[i].get() / seconds, snapshot.getCount(), snapshot.getPercentile(50),
+                    snapshot.getPercentile(90), snapshot.getPercentile(99), snapshot.getMax()));
+        }
+        long totalReceived = 0;
+        for (Metrics.Counter counter : received) {
+            totalReceived += counter.get();
+        }
+        out.println(String.format("received %s payload(s) (%.1f/s)", totalReceived, totalReceived / seconds));
+        out.println(String.format(
+                "errors: connect=%s send=%s disconnected=%s unanswered=%s (server notices=%s)",
+                connectFailures.get(), sendFailures.get(), dropped.get(), unanswered.get(), notices.get()));
+        out.println("(percentiles are the upper bound of their power-of-two bucket)");
+    }
+
+    /**
+     * Applies one --option=value (also used by SoakTest)
+     *
+     * @param arg
+     * @throws IllegalArgumentException for unknown options
+     */
+    void apply(String arg) {
+        String[] setting = arg.split("=", 2);
+        String value = setting.length > 1 ? setting[1] : "";
+        switch (setting[0]) {
+            case "--host":
+                host = value;
+                break;
+            case "--port":
+                port = Integer.parseInt(value);
+                break;
+            case "--bots":
+                bots = Integer.parseInt(value);
+                break;
+            case "--room-size":
+                roomSize = Math.max(1, Integer.parseInt(value));
+                break;
+            case "--duration":
+                durationMs = Long.parseLong(value) * 1000;
+                break;
+            case "--ramp-up":
+                rampUpMs = Long.parseLong(value) * 1000;
+                break;
+            case "--chat-per-min":
+                chatPerMinute = Double.parseDouble(value);
+                break;
+            case "--churn-per-min":
+                churnPerMinute = Double.parseDouble(value);
+                break;
+            case "--away-per-min":
+                awayPerMinute = Double.parseDouble(value);
+                break;
+            case "--game-mode":
+                gameMode = GameMode.valueOf(value.toUpperCase());
+                break;
+            case "--report":
+                reportIntervalMs = Long.parseLong(value) * 1000;
+                break;
+            case "--session":
+                sessionMs = Long.parseLong(value) * 1000;
+                break;
+            case "--timeout":
+                timeoutMs = Long.parseLong(value) * 1000;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + setting[0]);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator(System.out);
+        for (String arg : args) {
+            try {
+                generator.apply(arg);
+            } catch (Exception e) {
+                System.err.println("Ignoring invalid argument " + arg);
+            }
+        }
+        generator.run();
+    }
+}
@@ -0,0 +1,371 @@
+package Project.Tools;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import Project.Common.GameMode;
+import Project.Server.RulesEngine;
+
+/**
+ * Offline match simulator: plays complete sessions through the server's
+ * RulesEngine, without a server, for balancing and capacity planning.
+ * <p>
+ * Usage: java Project.Tools.MatchSimulator [--sessions=100000]
+ * [--players=2,4,8,16,64] [--modes=RPS_3,RPS_5] [--strategy=uniform]
+ * [--no-pick=0] [--pick-window=10] [--rooms=1000] [--max-rounds=200]
+ * [--seed=1] [--parallelism=cores]
+ * </p>
+ * <p>
+ * Strategies: uniform (random pick), biased (half the picks are rock), sticky
+ * (repeats the last pick 70% of the time), counter (picks what beats the last
+ * round's most common pick, with some noise) and mixed (each bot gets one of
+ * the others). With --no-pick a bot lets the round timer run out with that
+ * probability, which eliminates it.
+ * </p>
+ * <p>
+ * For every mode and player count it reports the session length
+ * distribution (rounds), the share of sessions ending in a tie, the
+ * elimination curve (mean players left after each round) and the projected
+ * message volume. Message volume counts the payloads GameRoom sends to the
+ * members for the ready phase, each round (start, picks, timer ticks, battles,
+ * points, eliminations) and the game over; timings assume the 30 second
+ * ready/round timers and picks arriving uniformly within the pick window, and
+ * payloads/s is for --rooms rooms playing sessions back to back.
+ * </p>
+ * <p>
+ * Sessions are split into fixed chunks, each with its own RulesEngine and a
+ * random seeded from --seed and the chunk, which run on a parallel stream
+ * (the common fork/join pool); results are the same for any parallelism.
+ * </p>
+ */
+public class MatchSimulator {
+    /**
+     * How a bot picks
+     */
+    public enum Strategy {
+        UNIFORM, BIASED, STICKY, COUNTER, MIXED
+    }
+
+    private static final int TIMER_SECONDS = 30;
+    private static final int CHUNK = 1024;
+    // rounds shown in the elimination curve
+    private static final int CURVE_ROUNDS = 12;
+
+    private int sessions = 100_000;
+    private int[] players = { 2, 4, 8, 16, 64 };
+    private GameMode[] modes = GameMode.values();
+    private Strategy strategy = Strategy.UNIFORM;
+    private double noPick = 0;
+    private double pickWindowSeconds = 10;
+    private int rooms = 1000;
+    private int maxRounds = 200;
+    private long seed = 1;
+    private final PrintStream out;
+
+    public MatchSimulator(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Totals of a batch of sessions, merged across chunks
+     */
+    private static class Stats {
+        private final long[] roundCounts; // sessions by length in rounds
+        private final double[] remaining; // players left after each round, summed
+        private long sessions;
+        private long ties;
+        private long capped;
+        private double payloads;
+        private double seconds;
+
+        private Stats(int maxRounds) {
+            roundCounts = new long[maxRounds + 1];
+            remaining = new double[CURVE_ROUNDS + 1];
+        }
+
+        private Stats merge(Stats other) {
+            for (int i = 0; i < roundCounts.length; i++) {
+                roundCounts[i] += other.roundCounts[i];
+            }
+            for (int i = 0; i < remaining.length; i++) {
+                remaining[i] += other.remaining[i];
+            }
+            sessions += other.sessions;
+            ties += other.ties;
+            capped += other.capped;
+            payloads += other.payloads;
+            seconds += other.seconds;
+            return this;
+        }
+
+        private int percentile(double p) {
+            long target = (long) Math.ceil(sessions * p / 100.0);
+            long seen = 0;
+            for (int i = 0; i < roundCounts.length; i++) {
+                seen += roundCounts[i];
+                if (seen >= Math.max(1, target)) {
+                    return i;
+                }
+            }
+            return roundCounts.length - 1;
+        }
+
+        private double meanRounds() {
+            double total = 0;
+            for (int i = 0; i < roundCounts.length; i++) {
+                total += (double) i * roundCounts[i];
+            }
+            return sessions == 0 ? 0 : total / sessions;
+        }
+
+        private int maxRounds() {
+            for (int i = roundCounts.length - 1; i >= 0; i--) {
+                if (roundCounts[i] > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Plays one chunk of sessions on a single thread
+     */
+    private Stats simulate(GameMode mode, int size, int chunk, int count) {
+        SplittableRandom random = new SplittableRandom(seed * 1_000_003L + chunk);
+        RulesEngine rules = new RulesEngine();
+        int options = mode.getOptionCount();
+        // choice ordinals follow the RPS_5 codes, so each mode's picks map directly
+        int[] ordinals = new int[options];
+        for (int i = 0; i < options; i++) {
+            ordinals[i] = RulesEngine.choiceOrdinal(mode.getChoices()[i]);
+        }
+        Strategy[] strategies = new Strategy[size];
+        int[] lastPick = new int[size];
+        int[] pickCounts = new int[RulesEngine.UNKNOWN_CHOICE];
+        Stats stats = new Stats(maxRounds);
+        for (int s = 0; s < count; s++) {
+            rules.clear();
+            for (int i = 0; i < size; i++) {
+                rules.addPlayer(i + 1, RulesEngine.NO_CHOICE, RulesEngine.READY, 0);
+                strategies[i] = strategy == Strategy.MIXED
+                        ? Strategy.values()[random.nextInt(Strategy.MIXED.ordinal())]
+                        : strategy;
+                lastPick[i] = ordinals[random.nextInt(options)];
+            }
+            int mostCommon = ordinals[random.nextInt(options)];
+            // ready phase: every ready status to everyone, the ready timer's ticks,
+            // the phase change
+            double payloads = (double) size * size + (TIMER_SECONDS + 2) * size + size;
+            double seconds = TIMER_SECONDS;
+            int rounds = 0;
+            boolean over = false;
+            while (!over && rounds < maxRounds) {
+                rounds++;
+                Arrays.fill(pickCounts, 0);
+                double roundSeconds = 0;
+                int picks = 0;
+                for (int i = 0; i < size; i++) {
+                    if ((rules.getFlags(i) & RulesEngine.ELIMINATED) != 0) {
+                        continue;
+                    }
+                    if (random.nextDouble() < noPick) {
+                        roundSeconds = TIMER_SECONDS;
+                        continue;
+                    }
+                    int pick = pick(strategies[i], ordinals, lastPick[i], mostCommon, random);
+                    rules.setChoice(i, pick);
+                    lastPick[i] = pick;
+                    pickCounts[pick]++;
+                    picks++;
+                    roundSeconds = Math.max(roundSeconds, random.nextDouble() * pickWindowSeconds);
+                }
+                RulesEngine.RoundResult result = rules.resolveRound();
+                rules.clearChoices();
+                int active = result.getActiveCount();
+                // turn status reset, round start event, a timer tick per second plus the
+                // cancel, a "has selected" event per pick, a battle event per pair, points
+                // and an event per winner, elimination status and an event per eliminated
+                double perMember = 2 + ((int) roundSeconds + 1) + 1 + picks
+                        + (result.isTooFewPlayers() ? 1 : (double) active * (active - 1) / 2)
+                        + 2 * result.getWinnerCount()
+                        + 2 * (result.getLoserCount() + result.getNonPickerCount());
+                payloads += perMember * size;
+                seconds += roundSeconds;
+                if (rounds <= CURVE_ROUNDS) {
+                    stats.remaining[rounds] += size - countEliminated(rules);
+                }
+                if (picks > 0) {
+                    for (int c = 0; c < pickCounts.length; c++) {
+                        if (pickCounts[c] > pickCounts[mostCommon]) {
+                            mostCommon = c;
+                        }
+                    }
+                }
+                over = result.isSessionOver();
+            }
+            int left = size - countEliminated(rules);
+            for (int r = rounds + 1; r <= CURVE_ROUNDS; r++) {
+                stats.remaining[r] += left;
+            }
+            if (!over) {
+                stats.capped++;
+            }
+            if (rules.findSessionWinners() > 1) {
+                stats.ties++;
+            }
+            // game over event, scoreboard (3 lines, a line per player, 1 line), ready,
+            // turn and elimination resets, the phase change
+            payloads += (1 + 3 + size + 1 + 2 + (size - left) + 1) * (double) size;
+            stats.roundCounts[rounds]++;
+            stats.payloads += payloads;
+            stats.seconds += seconds;
+            stats.sessions++;
+        }
+        return stats;
+    }
+
+    private static int countEliminated(RulesEngine rules) {
+        int eliminated = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            if ((rules.getFlags(i) & RulesEngine.ELIMINATED) != 0) {
+                eliminated++;
+            }
+        }
+        return eliminated;
+    }
+
+    private static int pick(Strategy strategy, int[] ordinals, int last, int mostCommon, SplittableRandom random) {
+        switch (strategy) {
+            case BIASED:
+                return random.nextBoolean() ? ordinals[0] : ordinals[random.nextInt(ordinals.length)];
+            case STICKY:
+                return random.nextDouble() < 0.7 ? last : ordinals[random.nextInt(ordinals.length)];
+            case COUNTER:
+                if (random.nextDouble() < 0.8) {
+                    for (int candidate : ordinals) {
+                        if (RulesEngine.compare(candidate, mostCommon) > 0) {
+                            return candidate;
+                        }
+                    }
+                }
+                return ordinals[random.nextInt(ordinals.length)];
+            default:
+                return ordinals[random.nextInt(ordinals.length)];
+        }
+    }
+
+    private Stats run(GameMode mode, int size) {
+        int chunks = (sessions + CHUNK - 1) / CHUNK;
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> simulate(mode, size, chunk, Math.min(CHUNK, sessions - chunk * CHUNK)))
+                .reduce(Stats::merge).orElseGet(() -> new Stats(maxRounds));
+    }
+
+    public void run() {
+        out.println(String.format("sessions=%s strategy=%s no-pick=%s pick-window=%ss rooms=%s seed=%s", sessions,
+                strategy, noPick, pickWindowSeconds, rooms, seed));
+        out.println(String.format("%-6s %7s %8s %8s %5s %5s %5s %5s %7s %10s %9s %12s", "mode", "players", "time(s)",
+                "mean", "p50", "p90", "p99", "max", "ties%", "msgs/sess", "sess(s)", "msgs/s"));
+        List<String> curves = new ArrayList<>();
+        for (GameMode mode : modes) {
+            for (int size : players) {
+                long start = System.nanoTime();
+                Stats stats = run(mode, size);
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                double payloadsPerSession = stats.payloads / stats.sessions;
+                double secondsPerSession = stats.seconds / stats.sessions;
+                out.println(String.format("%-6s %7s %8.2f %8.2f %5s %5s %5s %5s %7.2f %10.0f %9.1f %12.0f", mode, size,
+                        elapsed, stats.meanRounds(), stats.percentile(50), stats.percentile(90),
+                        stats.percentile(99), stats.maxRounds(), 100.0 * stats.ties / stats.sessions,
+                        payloadsPerSession, secondsPerSession, rooms * payloadsPerSession / secondsPerSession));
+                if (stats.capped > 0) {
+                    out.println(String.format("       %s session(s) hit --max-rounds=%s", stats.capped, maxRounds));
+                }
+                StringBuilder curve = new StringBuilder(String.format("%-6s %7s ", mode, size));
+                for (int r = 1; r <= CURVE_ROUNDS; r++) {
+                    curve.append(String.format(" %6.2f", stats.remaining[r] / stats.sessions));
+                }
+                curves.add(curve.toString());
+            }
+        }
+        out.println();
+        StringBuilder header = new StringBuilder(String.format("%-6s %7s ", "mode", "players"));
+        for (int r = 1; r <= CURVE_ROUNDS; r++) {
+            header.append(String.format(" %6s", "r" + r));
+        }
+        out.println("players left after each round (mean)");
+        out.println(header);
+        curves.forEach(out::println);
+    }
+
+    private static int[] parseList(String value) {
+        String[] parts = value.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Math.max(2, Integer.parseInt(parts[i].trim()));
+        }
+        return values;
+    }
+
+    private void apply(String arg) {
+        String[] setting = arg.split("=", 2);
+        String value = setting.length > 1 ? setting[1] : "";
+        switch (setting[0]) {
+            case "--sessions":
+                sessions = Math.max(1, Integer.parseInt(value));
+                break;
+            case "--players":
+                players = parseList(value);
+                break;
+            case "--modes":
+                String[] names = value.split(",");
+                modes = new GameMode[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    modes[i] = GameMode.valueOf(names[i].trim().toUpperCase());
+                }
+                break;
+            case "--strategy":
+                strategy = Strategy.valueOf(value.toUpperCase());
+                break;
+            case "--no-pick":
+                noPick = Math.max(0, Math.min(1, Double.parseDouble(value)));
+                break;
+            case "--pick-window":
+                pickWindowSeconds = Math.max(0, Math.min(TIMER_SECONDS, Double.parseDouble(value)));
+                break;
+            case "--rooms":
+                rooms = Math.max(1, Integer.parseInt(value));
+                break;
+            case "--max-rounds":
+                maxRounds = Math.max(1, Integer.parseInt(value));
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            case "--parallelism":
+                // read when the common pool starts, so before the first parallel stream
+                System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism",
+                        Integer.toString(Math.max(1, Integer.parseInt(value))));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + setting[0]);
+        }
+    }
+
+    public static void main(String[] args) {
+        MatchSimulator simulator = new MatchSimulator(System.out);
+        for (String arg : args) {
+            try {
+                simulator.apply(arg);
+            } catch (Exception e) {
+                System.err.println("Ignoring invalid argument " + arg);
+            }
+        }
+        simulator.run();
+    }
+}
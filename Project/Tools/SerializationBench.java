@@ -0,0 +1,302 @@
+package Project.Tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import Project.Common.ConnectionPayload;
+import Project.Common.GameMode;
+import Project.Common.GameModePayload;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
+import Project.Common.ReadyPayload;
+import Project.Common.RoomResultPayload;
+import Project.Common.TimerPayload;
+import Project.Common.TimerType;
+import Project.Common.TraceContext;
+
+/**
+ * Micro-benchmark of the Payload serialization hot path.
+ * <p>
+ * Usage: java Project.Tools.SerializationBench [--batch=1000] [--warmup=2]
+ * [--time=3] [--trace] [--filter=text] (times in seconds)
+ * </p>
+ * <p>
+ * For every Payload shape the server sends it measures encode and decode
+ * throughput, bytes per message and bytes allocated per message with three
+ * ways of using Java serialization:
+ * <ul>
+ * <li>fresh: a new ObjectOutputStream/ObjectInputStream per message</li>
+ * <li>long-lived: one stream per connection (what ServerThread and Client do)
+ * </li>
+ * <li>long-lived+reset: one stream, reset() after every message</li>
+ * </ul>
+ * Each iteration encodes (and then decodes) a batch of distinct Payload
+ * instances, like a connection would. Iterations repeat for the warmup time,
+ * then for the measured time. Allocation comes from the JVM's per-thread
+ * allocation counter, so run it on a quiet JVM.
+ * </p>
+ */
+public class SerializationBench {
+    /**
+     * How the stream is used across messages
+     */
+    public enum Mode {
+        FRESH("fresh"), LONG_LIVED("long-lived"), LONG_LIVED_RESET("long-lived+reset");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * A Payload shape and how to build one
+     */
+    private record Shape(String name, Supplier<Payload> factory) {
+    }
+
+    /**
+     * Measured numbers for one shape and mode
+     */
+    private record Result(double encodeOpsPerSecond, double decodeOpsPerSecond, double bytesPerMessage,
+            double encodeAllocPerMessage, double decodeAllocPerMessage) {
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    private int batch = 1000;
+    private long warmupNanos = 2_000_000_000L;
+    private long timeNanos = 3_000_000_000L;
+    private boolean traced = false;
+    private String filter = null;
+    private final PrintStream out;
+    // keeps the JIT from discarding decoded objects
+    private long sink = 0;
+
+    public SerializationBench(PrintStream out) {
+        this.out = out;
+    }
+
+    private List<Shape> shapes() {
+        List<Shape> shapes = new ArrayList<>();
+        shapes.add(new Shape("Payload", () -> {
+            Payload p = new Payload();
+            p.setPayloadType(PayloadType.MESSAGE);
+            p.setClientId(42);
+            p.setMessage("bench message with a typical length of chat text");
+            return p;
+        }));
+        shapes.add(new Shape("ReadyPayload", () -> {
+            ReadyPayload p = new ReadyPayload();
+            p.setClientId(42);
+            p.setReady(true);
+            return p;
+        }));
+        shapes.add(new Shape("TimerPayload", () -> {
+            TimerPayload p = new TimerPayload();
+            p.setTimerType(TimerType.ROUND);
+            p.setTime(17);
+            return p;
+        }));
+        shapes.add(new Shape("ConnectionPayload", () -> {
+            ConnectionPayload p = new ConnectionPayload();
+            p.setPayloadType(PayloadType.ROOM_JOIN);
+            p.setClientId(42);
+            p.setClientName("bench_user");
+            p.setMessage("bench_room");
+            return p;
+        }));
+        for (int rooms : new int[] { 10, 100, 1000 }) {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < rooms; i++) {
+                names.add("room_" + i);
+            }
+            shapes.add(new Shape("RoomResultPayload[" + rooms + "]", () -> {
+                RoomResultPayload p = new RoomResultPayload();
+                p.setPayloadType(PayloadType.ROOM_LIST);
+                // same String instances every time, like the Room names the server lists
+                p.setRooms(new ArrayList<>(names));
+                return p;
+            }));
+        }
+        shapes.add(new Shape("GameModePayload", () -> {
+            GameModePayload p = new GameModePayload();
+            p.setGameMode(GameMode.RPS_5);
+            p.setCooldownEnabled(true);
+            return p;
+        }));
+        return shapes;
+    }
+
+    private Payload[] build(Shape shape) {
+        Payload[] payloads = new Payload[batch];
+        for (int i = 0; i < batch; i++) {
+            payloads[i] = shape.factory().get();
+            if (traced) {
+                payloads[i].setTrace(TraceContext.start());
+            }
+        }
+        return payloads;
+    }
+
+    /**
+     * Encodes a batch
+     *
+     * @return one byte[] per message for FRESH, a single element with the whole
+     *         stream otherwise
+     */
+    private byte[][] encode(Payload[] payloads, Mode mode) throws IOException {
+        if (mode == Mode.FRESH) {
+            byte[][] messages = new byte[payloads.length][];
+            for (int i = 0; i < payloads.length; i++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+                try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                    oos.writeObject(payloads[i]);
+                }
+                messages[i] = bytes.toByteArray();
+            }
+            return messages;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * payloads.length);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            for (Payload payload : payloads) {
+                oos.writeObject(payload);
+                if (mode == Mode.LONG_LIVED_RESET) {
+                    oos.reset();
+                }
+                oos.flush(); // what a connection does after every message
+            }
+        }
+        return new byte[][] { bytes.toByteArray() };
+    }
+
+    private void decode(byte[][] encoded, int count) throws IOException, ClassNotFoundException {
+        if (encoded.length > 1 || count == 1) {
+            for (byte[] message : encoded) {
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(message))) {
+                    sink += ((Payload) ois.readObject()).getClientId();
+                }
+            }
+            return;
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(encoded[0]))) {
+            for (int i = 0; i < count; i++) {
+                sink += ((Payload) ois.readObject()).getClientId();
+            }
+        }
+    }
+
+    private static long size(byte[][] encoded) {
+        long size = 0;
+        for (byte[] message : encoded) {
+            size += message.length;
+        }
+        return size;
+    }
+
+    private Result measure(Shape shape, Mode mode) throws IOException, ClassNotFoundException {
+        long threadId = Thread.currentThread().threadId();
+        Payload[] payloads = build(shape);
+        byte[][] encoded = encode(payloads, mode);
+        // warmup both directions
+        long end = System.nanoTime() + warmupNanos;
+        while (System.nanoTime() < end) {
+            decode(encode(payloads, mode), batch);
+        }
+        // encode
+        long messages = 0;
+        long start = System.nanoTime();
+        long allocStart = THREADS.getThreadAllocatedBytes(threadId);
+        end = start + timeNanos / 2;
+        do {
+            encoded = encode(payloads, mode);
+            messages += batch;
+        } while (System.nanoTime() < end);
+        double encodeAlloc = (double) (THREADS.getThreadAllocatedBytes(threadId) - allocStart) / messages;
+        double encodeRate = messages / ((System.nanoTime() - start) / 1e9);
+        double bytesPerMessage = (double) size(encoded) / batch;
+        // decode
+        messages = 0;
+        start = System.nanoTime();
+        allocStart = THREADS.getThreadAllocatedBytes(threadId);
+        end = start + timeNanos / 2;
+        do {
+            decode(encoded, batch);
+            messages += batch;
+        } while (System.nanoTime() < end);
+        double decodeAlloc = (double) (THREADS.getThreadAllocatedBytes(threadId) - allocStart) / messages;
+        double decodeRate = messages / ((System.nanoTime() - start) / 1e9);
+        return new Result(encodeRate, decodeRate, bytesPerMessage, encodeAlloc, decodeAlloc);
+    }
+
+    public void run() throws IOException, ClassNotFoundException {
+        out.println(String.format("batch=%s warmup=%ss time=%ss traced=%s", batch, warmupNanos / 1e9, timeNanos / 1e9,
+                traced));
+        out.println(String.format("%-24s %-17s %12s %12s %10s %12s %12s", "payload", "mode", "encode/s", "decode/s",
+                "bytes/msg", "enc B/msg", "dec B/msg"));
+        for (Shape shape : shapes()) {
+            if (filter != null && !shape.name().toLowerCase().contains(filter)) {
+                continue;
+            }
+            for (Mode mode : Mode.values()) {
+                Result result = measure(shape, mode);
+                out.println(String.format("%-24s %-17s %12.0f %12.0f %10.1f %12.1f %12.1f", shape.name(),
+                        mode.getLabel(), result.encodeOpsPerSecond(), result.decodeOpsPerSecond(),
+                        result.bytesPerMessage(), result.encodeAllocPerMessage(), result.decodeAllocPerMessage()));
+            }
+        }
+        if (sink == 42) {
+            out.println(); // never true, but the JIT can't know that
+        }
+    }
+
+    private void apply(String arg) {
+        String[] setting = arg.split("=", 2);
+        String value = setting.length > 1 ? setting[1] : "";
+        switch (setting[0]) {
+            case "--batch":
+                batch = Math.max(1, Integer.parseInt(value));
+                break;
+            case "--warmup":
+                warmupNanos = (long) (Double.parseDouble(value) * 1e9);
+                break;
+            case "--time":
+                timeNanos = (long) (Double.parseDouble(value) * 1e9);
+                break;
+            case "--trace":
+                traced = true;
+                break;
+            case "--filter":
+                filter = value.toLowerCase();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + setting[0]);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        SerializationBench bench = new SerializationBench(System.out);
+        for (String arg : args) {
+            try {
+                bench.apply(arg);
+            } catch (Exception e) {
+                System.err.println("Ignoring invalid argument " + arg);
+            }
+        }
+        bench.run();
+    }
+}
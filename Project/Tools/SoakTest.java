@@ -0,0 +1,279 @@
+package Project.Tools;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Long-running soak test: drives a server with LoadGenerator bots for hours
+ * while sampling the server's admin endpoint, then fails if resource usage
+ * keeps growing.
+ * <p>
+ * Usage: java Project.Tools.SoakTest --admin=127.0.0.1:8081 [--sample=30]
+ * [--warmup=300] [--max-heap-slope=32] [--max-thread-slope=20]
+ * [--max-per-session-slope=16] [--max-gc-share=5] [--csv=file] [LoadGenerator
+ * options, i.e. --duration=14400 --bots=500 --session=600]
+ * </p>
+ * <p>
+ * The server must run with --admin-port. Every sample records heap used, heap
+ * after the last GC, live threads, sessions, GC count/time and the heap per
+ * session (heap after GC / sessions). Once the warmup is over, the least
+ * squares slope per hour of heap after GC (MB/h), threads (/h) and heap per
+ * session (KB/h) must stay under their limits, as must the share of wall time
+ * spent in GC (%). The exit code is 1 when any of them doesn't. Use a
+ * LoadGenerator --session length so connections churn; that's what exposes
+ * per-connection leaks.
+ * </p>
+ * <p>
+ * Heap per session is only a proxy for what a connection retains: it includes
+ * everything else on the heap, so it moves with the session count alone. Its
+ * slope only uses the samples whose session count is within 10% of the median
+ * (the steady load); the check is skipped if fewer than 3 are.
+ * </p>
+ */
+public class SoakTest {
+    private static final Pattern GAUGE = Pattern.compile("\"([a-z_]+)\":(-?\\d+)");
+
+    /**
+     * One reading of the server's gauges
+     */
+    private record Sample(double seconds, long heapUsed, long heapAfterGc, long threads, long sessions,
+            long gcCount, long gcTimeMs) {
+        /**
+         * @return heap after GC / sessions (the whole heap, not what a session
+         *         retains)
+         */
+        double heapPerSession() {
+            return sessions == 0 ? 0 : (double) heapAfterGc / sessions;
+        }
+    }
+
+    private String admin = null;
+    private long sampleMs = 30_000;
+    private long warmupMs = 300_000;
+    private double maxHeapSlope = 32; // MB per hour
+    private double maxThreadSlope = 20; // threads per hour
+    private double maxPerSessionSlope = 16; // KB per session per hour
+    private double maxGcShare = 5; // % of wall time
+    private String csv = null;
+    private final LoadGenerator generator;
+    private final PrintStream out;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final List<Sample> samples = new ArrayList<>();
+
+    public SoakTest(PrintStream out) {
+        this.out = out;
+        this.generator = new LoadGenerator(out);
+    }
+
+    private Sample sample(double seconds) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + admin + "/status"))
+                .timeout(Duration.ofSeconds(10)).build();
+        String body = http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        int start = body.indexOf("\"gauges\":{");
+        int end = body.indexOf('}', start);
+        if (start < 0 || end < 0) {
+            throw new IOException("No gauges in the admin status");
+        }
+        Map<String, Long> gauges = new HashMap<>();
+        Matcher matcher = GAUGE.matcher(body.substring(start, end));
+        while (matcher.find()) {
+            gauges.put(matcher.group(1), Long.parseLong(matcher.group(2)));
+        }
+        return new Sample(seconds, gauges.getOrDefault("heap_used_bytes", 0L),
+                gauges.getOrDefault("heap_after_gc_bytes", 0L), gauges.getOrDefault("threads", 0L),
+                gauges.getOrDefault("sessions", 0L), gauges.getOrDefault("gc_count", 0L),
+                gauges.getOrDefault("gc_time_ms", 0L));
+    }
+
+    /**
+     * @return least squares slope of y over x (0 with fewer than two points)
+     */
+    static double slope(double[] x, double[] y) {
+        int n = x.length;
+        if (n < 2) {
+            return 0;
+        }
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < n; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= n;
+        meanY /= n;
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < n; i++) {
+            covariance += (x[i] - meanX) * (y[i] - meanY);
+            variance += (x[i] - meanX) * (x[i] - meanX);
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+
+    /**
+     * Samples until the load is done
+     *
+     * @return true if every slope stayed under its limit
+     */
+    public boolean run() throws InterruptedException {
+        if (admin == null) {
+            throw new IllegalArgumentException("--admin=host:port is required (start the server with --admin-port)");
+        }
+        Thread load = new Thread(() -> {
+            try {
+                generator.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "SoakLoad");
+        load.start();
+        long start = System.currentTimeMillis();
+        try (PrintWriter writer = csv == null ? null : new PrintWriter(new FileWriter(csv))) {
+            if (writer != null) {
+                writer.println("seconds,heap_used_bytes,heap_after_gc_bytes,threads,sessions,gc_count,gc_time_ms");
+            }
+            do {
+                load.join(sampleMs);
+                // the last sample comes after the bots left; show it but keep it out of the slopes
+                boolean loaded = load.isAlive();
+                double seconds = (System.currentTimeMillis() - start) / 1000.0;
+                try {
+                    Sample sample = sample(seconds);
+                    if (loaded) {
+                        samples.add(sample);
+                    }
+                    out.println(String.format(
+                            "[soak %6.0fs] heap=%.1fMB afterGC=%.1fMB threads=%s sessions=%s heap/session=%.1fKB gc=%s (%sms)%s",
+                            seconds, sample.heapUsed() / 1048576.0, sample.heapAfterGc() / 1048576.0,
+                            sample.threads(), sample.sessions(), sample.heapPerSession() / 1024.0,
+                            sample.gcCount(), sample.gcTimeMs(), loaded ? "" : " after the load"));
+                    if (writer != null) {
+                        writer.println(String.format("%.1f,%s,%s,%s,%s,%s,%s", seconds, sample.heapUsed(),
+                                sample.heapAfterGc(), sample.threads(), sample.sessions(), sample.gcCount(),
+                                sample.gcTimeMs()));
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    out.println("[soak] Failed to sample the admin endpoint: " + e.getMessage());
+                }
+            } while (load.isAlive());
+        } catch (IOException e) {
+            out.println("[soak] Can't write " + csv + ": " + e.getMessage());
+        }
+        return verdict();
+    }
+
+    private boolean verdict() {
+        List<Sample> steady = samples.stream().filter(s -> s.seconds() * 1000 >= warmupMs).toList();
+        if (steady.size() < 3) {
+            out.println(String.format("[soak] Only %s sample(s) after the warmup, can't judge growth", steady.size()));
+            return false;
+        }
+        double[] hours = new double[steady.size()];
+        double[] heap = new double[steady.size()];
+        double[] threads = new double[steady.size()];
+        for (int i = 0; i < steady.size(); i++) {
+            Sample sample = steady.get(i);
+            hours[i] = sample.seconds() / 3600.0;
+            heap[i] = sample.heapAfterGc() / 1048576.0;
+            threads[i] = sample.threads();
+        }
+        // heap per session is only comparable at about the same load
+        long median = steady.stream().mapToLong(Sample::sessions).sorted().skip(steady.size() / 2).findFirst()
+                .orElse(0);
+        List<Sample> stable = steady.stream()
+                .filter(s -> median > 0 && Math.abs(s.sessions() - median) <= median / 10).toList();
+        double[] stableHours = new double[stable.size()];
+        double[] perSession = new double[stable.size()];
+        for (int i = 0; i < stable.size(); i++) {
+            stableHours[i] = stable.get(i).seconds() / 3600.0;
+            perSession[i] = stable.get(i).heapPerSession() / 1024.0;
+        }
+        Sample first = steady.get(0);
+        Sample last = steady.get(steady.size() - 1);
+        double wallMs = (last.seconds() - first.seconds()) * 1000;
+        double gcShare = wallMs <= 0 ? 0 : 100.0 * (last.gcTimeMs() - first.gcTimeMs()) / wallMs;
+        long collections = last.gcCount() - first.gcCount();
+        boolean ok = true;
+        ok &= check("heap after GC", slope(hours, heap), maxHeapSlope, "MB/h");
+        ok &= check("live threads", slope(hours, threads), maxThreadSlope, "/h");
+        if (stable.size() >= 3) {
+            ok &= check("heap per session", slope(stableHours, perSession), maxPerSessionSlope, "KB/h");
+        } else {
+            out.println(String.format("[soak] %-24s skipped, only %s sample(s) near the median of %s sessions",
+                    "heap per session", stable.size(), median));
+        }
+        ok &= check("time in GC", gcShare, maxGcShare, "%");
+        out.println(String.format("[soak] %s collection(s) after warmup, mean pause %.1fms", collections,
+                collections == 0 ? 0.0 : (double) (last.gcTimeMs() - first.gcTimeMs()) / collections));
+        out.println(ok ? "[soak] PASSED" : "[soak] FAILED");
+        return ok;
+    }
+
+    private boolean check(String label, double value, double limit, String unit) {
+        boolean ok = value <= limit;
+        out.println(String.format("[soak] %-24s %10.2f%s (limit %.2f%s) %s", label, value, unit, limit, unit,
+                ok ? "ok" : "TOO HIGH"));
+        return ok;
+    }
+
+    private void apply(String arg) {
+        String[] setting = arg.split("=", 2);
+        String value = setting.length > 1 ? setting[1] : "";
+        switch (setting[0]) {
+            case "--admin":
+                admin = value;
+                break;
+            case "--sample":
+                sampleMs = (long) (Double.parseDouble(value) * 1000);
+                break;
+            case "--warmup":
+                warmupMs = (long) (Double.parseDouble(value) * 1000);
+                break;
+            case "--max-heap-slope":
+                maxHeapSlope = Double.parseDouble(value);
+                break;
+            case "--max-thread-slope":
+                maxThreadSlope = Double.parseDouble(value);
+                break;
+            case "--max-per-session-slope":
+                maxPerSessionSlope = Double.parseDouble(value);
+                break;
+            case "--max-gc-share":
+                maxGcShare = Double.parseDouble(value);
+                break;
+            case "--csv":
+                csv = value;
+                break;
+            default:
+                // everything else configures the bots
+                generator.apply(arg);
+                break;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        SoakTest soak = new SoakTest(System.out);
+        for (String arg : args) {
+            try {
+                soak.apply(arg);
+            } catch (Exception e) {
+                System.err.println("Ignoring invalid argument " + arg);
+            }
+        }
+        System.exit(soak.run() ? 0 : 1);
+    }
+}